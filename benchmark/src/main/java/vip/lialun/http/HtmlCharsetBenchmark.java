@@ -0,0 +1,75 @@
+package vip.lialun.http;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.benchmark.LoopbackServer;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从html的meta标签中识别编码：原实现（整体解码后用Jsoup解析DOM）与{@link HtmlCharsetSniffer}的对比，
+ * 使用与{@link vip.lialun.http.benchmark.LargeBodyBenchmark}相同的html
+ * <p>
+ * {@link HtmlCharsetSniffer}不是public，所以放在vip.lialun.http包中
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlCharsetBenchmark {
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = LoopbackServer.generateHtml(size);
+    }
+
+    /**
+     * 原实现：以默认编码解码整个content，解析DOM后查找head中的meta
+     */
+    @Benchmark
+    public Charset jsoup() {
+        Element page = Jsoup.parse(new String(body, StandardCharsets.UTF_8));
+        Elements metas = Optional.ofNullable(page.getElementsByTag("head").first())
+                .map(o -> o.getElementsByTag("meta")).orElse(null);
+        if (metas != null) {
+            for (Element meta : metas) {
+                if (meta.hasAttr("charset")) {
+                    return Charset.forName(meta.attr("charset"));
+                }
+                if (HttpConstants.HEADER_CONTENT_TYPE.equalsIgnoreCase(meta.attr("http-equiv"))) {
+                    String charset = HtmlCharsetSniffer.extractCharsetFromContent(meta.attr("content"));
+                    return charset == null ? null : Charset.forName(charset);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Charset sniff() {
+        return HtmlCharsetSniffer.sniff(body);
+    }
+}
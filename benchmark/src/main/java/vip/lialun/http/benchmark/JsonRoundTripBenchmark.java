@@ -0,0 +1,89 @@
+package vip.lialun.http.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.methods.HttpPost;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON请求的往返：对象序列化为请求体，服务端原样返回，response反序列化为对象
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonRoundTripBenchmark {
+    /**
+     * 请求对象中item的数量
+     */
+    @Param({"1", "100", "1000"})
+    public int items;
+
+    private LoopbackServer server;
+    private HttpClient client;
+    private String url;
+    private Order order;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        client = HttpClient.builder().setMaxResponseContentLength(Integer.MAX_VALUE).build();
+        url = server.url("/json");
+        order = new Order();
+        order.id = 1;
+        order.customer = "krupp";
+        order.items = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Item item = new Item();
+            item.sku = "sku-" + i;
+            item.quantity = i % 10 + 1;
+            item.price = i * 1.5;
+            order.items.add(item);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Order roundTrip() {
+        HttpPost post = client.post(url);
+        post.setJsonEntity(order);
+        return post.send().as(Order.class);
+    }
+
+    public static class Order {
+        public long id;
+        public String customer;
+        public List<Item> items;
+    }
+
+    public static class Item {
+        public String sku;
+        public int quantity;
+        public double price;
+    }
+}
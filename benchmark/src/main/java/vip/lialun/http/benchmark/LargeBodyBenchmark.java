@@ -0,0 +1,74 @@
+package vip.lialun.http.benchmark;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大response的读取及解码：通过回环服务下载并解码，以及在内存中构建{@link HttpResponse}并解码（不含网络开销）
+ * <p>
+ * Content-Type中不声明编码，解码时需要从html的meta标签中识别编码，识别编码本身与原实现的对比见{@link vip.lialun.http.HtmlCharsetBenchmark}。
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeBodyBenchmark {
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private LoopbackServer server;
+    private HttpClient client;
+    private String url;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        client = HttpClient.builder().setMaxResponseContentLength(Integer.MAX_VALUE).build();
+        url = server.url("/large?size=" + size);
+        body = LoopbackServer.generateHtml(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String download() {
+        return client.get(url).send().getString();
+    }
+
+    @Benchmark
+    public String decode() {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new ByteArrayEntity(body, ContentType.create("text/html")));
+        return new HttpResponse(response, new BasicHttpContext(), client.getDefaultRequestConfig()).getString();
+    }
+}
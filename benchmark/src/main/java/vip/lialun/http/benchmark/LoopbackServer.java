@@ -0,0 +1,127 @@
+package vip.lialun.http.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试使用的本地回环http服务，基于JDK HttpServer
+ * <ul>
+ * <li>/small：返回固定的128字节</li>
+ * <li>/large?size=：返回指定大小的html，不在Content-Type中声明编码</li>
+ * <li>/json：原样返回请求体，Content-Type为application/json</li>
+ * <li>/upload：读取请求体，返回其字节数</li>
+ * <li>/flaky：奇数次请求返回503，偶数次返回200</li>
+ * </ul>
+ *
+ * @author lialun
+ */
+public final class LoopbackServer implements Closeable {
+    private static final byte[] SMALL_BODY = new byte[128];
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "LoopbackServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Integer, byte[]> largeBodies = new ConcurrentHashMap<>();
+    private final AtomicLong flakyCount = new AtomicLong();
+
+    public LoopbackServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        handle("/small", exchange -> respond(exchange, 200, "application/octet-stream", SMALL_BODY));
+        handle("/large", exchange -> {
+            int size = Integer.parseInt(exchange.getRequestURI().getQuery().replace("size=", ""));
+            respond(exchange, 200, "text/html", largeBodies.computeIfAbsent(size, LoopbackServer::generateHtml));
+        });
+        handle("/json", exchange -> respond(exchange, 200, "application/json", readBody(exchange)));
+        handle("/upload", exchange -> {
+            long length;
+            try (InputStream in = exchange.getRequestBody()) {
+                length = in.transferTo(OutputStream.nullOutputStream());
+            }
+            respond(exchange, 200, "text/plain", String.valueOf(length).getBytes(StandardCharsets.US_ASCII));
+        });
+        handle("/flaky", exchange -> {
+            readBody(exchange);
+            respond(exchange, flakyCount.incrementAndGet() % 2 == 1 ? 503 : 200, "text/plain", EMPTY);
+        });
+        server.start();
+    }
+
+    private void handle(String path, HttpHandler handler) {
+        server.createContext(path, exchange -> {
+            try {
+                handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * 生成不小于指定大小（超出不到一行）的html，编码通过meta标签声明，content中包含多字节字符
+     */
+    public static byte[] generateHtml(int size) {
+        byte[] head = "<html><head><meta charset=\"utf-8\"><title>benchmark</title></head><body>\n".getBytes(StandardCharsets.UTF_8);
+        byte[] line = "<p>krupp http benchmark 基准测试 0123456789</p>\n".getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "</body></html>".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream html = new ByteArrayOutputStream(size + line.length);
+        html.writeBytes(head);
+        while (html.size() + tail.length < size) {
+            html.writeBytes(line);
+        }
+        html.writeBytes(tail);
+        return html.toByteArray();
+    }
+
+    /**
+     * 重置/flaky的请求计数，使下一次请求返回503
+     */
+    public void resetFlaky() {
+        flakyCount.set(0);
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
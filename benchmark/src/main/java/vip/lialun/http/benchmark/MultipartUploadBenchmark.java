@@ -0,0 +1,75 @@
+package vip.lialun.http.benchmark;
+
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.methods.HttpPost;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * multipart上传：文本字段及指定大小的文件，分别测试同步及异步发送（异步需要将较大的multipart预先写入内存）
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultipartUploadBenchmark {
+    @Param({"1024", "1048576", "16777216"})
+    public int size;
+
+    private LoopbackServer server;
+    private HttpClient client;
+    private String url;
+    private byte[] file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        client = HttpClient.builder().build();
+        url = server.url("/upload");
+        file = new byte[size];
+        new Random(size).nextBytes(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private HttpPost createRequest() {
+        HttpPost post = client.post(url);
+        post.addMultiPartEntity("name", "krupp");
+        post.addMultiPartEntity("file", file, ContentType.APPLICATION_OCTET_STREAM, "benchmark.bin");
+        return post;
+    }
+
+    @Benchmark
+    public String upload() {
+        return createRequest().send().getString();
+    }
+
+    @Benchmark
+    public String uploadAsync() {
+        return createRequest().sendAsync().join().getString();
+    }
+}
@@ -0,0 +1,93 @@
+package vip.lialun.http.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池竞争：1~256个线程并发请求同一个route，route最大连接数小于线程数时线程在获取连接时等待
+ * <p>
+ * 关注吞吐量随线程数的变化，以及{@link vip.lialun.http.RouteMetrics}中连接池等待时间的分布。
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoolContentionBenchmark {
+    @Param({"8", "64", "256"})
+    public int maxConnectionPerRoute;
+
+    private LoopbackServer server;
+    private HttpClient client;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        client = HttpClient.builder()
+                .setMaxConnection(maxConnectionPerRoute)
+                .setMaxConnectionPerRoute(maxConnectionPerRoute)
+                .build();
+        url = server.url("/small");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private HttpResponse send() {
+        return client.get(url).send();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public HttpResponse threads1() {
+        return send();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public HttpResponse threads4() {
+        return send();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public HttpResponse threads16() {
+        return send();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public HttpResponse threads64() {
+        return send();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public HttpResponse threads256() {
+        return send();
+    }
+}
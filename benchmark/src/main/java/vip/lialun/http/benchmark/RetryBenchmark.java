@@ -0,0 +1,68 @@
+package vip.lialun.http.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试的开销：每次发送先得到503，重试一次后得到200，重试间隔为0，只包含重试逻辑本身及第二次请求的耗时
+ * <p>
+ * /flaky按请求顺序交替返回503及200，所以只能单线程运行。
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class RetryBenchmark {
+    private LoopbackServer server;
+    private HttpClient client;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        client = HttpClient.builder().build();
+        url = server.url("/flaky");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetFlaky() {
+        server.resetFlaky();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public HttpResponse retry() {
+        return client.get(url).setRetryableStatus(statusCode -> statusCode == 503).send(1, 0);
+    }
+
+    @Benchmark
+    public HttpResponse retryAsync() {
+        return client.get(url).setRetryableStatus(statusCode -> statusCode == 503).sendAsync(1, 0).join();
+    }
+}
@@ -0,0 +1,70 @@
+package vip.lialun.http.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpProtocol;
+import vip.lialun.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小请求GET的吞吐量，包括请求构建、连接池复用及response解析，分别测试HTTP/1.1及HTTP/2传输
+ *
+ * @author lialun
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmallGetBenchmark {
+    @Param({"HTTP_1_1", "HTTP_2"})
+    public HttpProtocol protocol;
+
+    private LoopbackServer server;
+    private HttpClient client;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        client = HttpClient.builder().setProtocol(protocol).build();
+        url = server.url("/small");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public HttpResponse send() {
+        return client.get(url).send();
+    }
+
+    @Benchmark
+    public HttpResponse sendWithParams() {
+        return client.get(url).addParam("query", "krupp http").addParam("page", "1")
+                .addHeader("X-Request-Id", "benchmark").send();
+    }
+
+    @Benchmark
+    public HttpResponse sendAsync() {
+        return client.get(url).sendAsync().join();
+    }
+}
@@ -0,0 +1,59 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试等待策略
+ *
+ * @author lialun
+ */
+@FunctionalInterface
+public interface BackoffPolicy {
+
+    /**
+     * 计算下一次重试前的等待时间
+     *
+     * @param retryTime     第几次重试，从1开始
+     * @param retryInterval 配置的重试间隔{@link HttpRequestConfig#getRetryInterval()}，单位为ms
+     * @param previousDelay 上一次重试前的等待时间，第一次重试时为0，单位为ms
+     * @return 等待时间，单位为ms
+     */
+    long nextDelay(int retryTime, long retryInterval, long previousDelay);
+
+    /**
+     * 固定间隔，每次等待retryInterval
+     */
+    static BackoffPolicy fixed() {
+        return (retryTime, retryInterval, previousDelay) -> retryInterval;
+    }
+
+    /**
+     * 指数退避，第n次重试等待retryInterval * 2^(n-1)，最多等待maxDelay
+     *
+     * @param maxDelay 最大等待时间，单位为ms
+     */
+    static BackoffPolicy exponential(long maxDelay) {
+        Preconditions.checkArgument(maxDelay >= 0, "maxDelay must not be negative");
+        return (retryTime, retryInterval, previousDelay) -> {
+            int shift = Math.min(retryTime - 1, 30);
+            return Math.min(maxDelay, retryInterval << shift);
+        };
+    }
+
+    /**
+     * 去相关抖动（decorrelated jitter），等待时间在[retryInterval, previousDelay * 3]之间随机，最多等待maxDelay
+     * 相比固定的指数退避，可以避免大量客户端在同一时刻重试
+     *
+     * @param maxDelay 最大等待时间，单位为ms
+     */
+    static BackoffPolicy decorrelatedJitter(long maxDelay) {
+        Preconditions.checkArgument(maxDelay >= 0, "maxDelay must not be negative");
+        return (retryTime, retryInterval, previousDelay) -> {
+            long upper = Math.max(retryInterval, previousDelay * 3);
+            long delay = upper > retryInterval ? ThreadLocalRandom.current().nextLong(retryInterval, upper + 1) : retryInterval;
+            return Math.min(maxDelay, delay);
+        };
+    }
+}
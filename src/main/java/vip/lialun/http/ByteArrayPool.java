@@ -0,0 +1,54 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 有界的定长byte数组池
+ * <p>
+ * 用于读取response body时的临时缓冲区，避免高并发下每次请求都分配、回收大数组。
+ * 池满时归还的数组直接丢弃，池空时直接分配新数组，所以不会阻塞。
+ *
+ * @author lialun
+ */
+final class ByteArrayPool {
+    private final int bufferSize;
+    private final ArrayBlockingQueue<byte[]> buffers;
+
+    /**
+     * @param bufferSize 每个数组的大小
+     * @param maxPooled  池中最多保留的数组数量
+     */
+    ByteArrayPool(int bufferSize, int maxPooled) {
+        Preconditions.checkArgument(bufferSize > 0, "bufferSize must be greater than 0");
+        Preconditions.checkArgument(maxPooled > 0, "maxPooled must be greater than 0");
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 获取数组，数组中可能残留之前的数据
+     */
+    byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * 归还数组，归还后调用方不能再使用该数组
+     */
+    void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    int getPooledCount() {
+        return buffers.size();
+    }
+}
@@ -0,0 +1,269 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+import vip.lialun.logging.Log;
+import vip.lialun.logging.LogFactory;
+import vip.lialun.thread.SimpleThreadFactory;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带缓存的DNS解析，通过{@link HttpClientBuilder#setDnsResolver(DnsResolver)}使用
+ * <p>
+ * 解析结果缓存ttl时间，超过ttl的3/4后被访问时在后台刷新，刷新期间继续使用缓存；
+ * 缓存过期后maxStale时间内直接返回过期的结果并在后台刷新，不等待解析（即使delegate很慢或者不可用）；
+ * 超过maxStale或者没有缓存时同步解析，同一个域名并发的解析只执行一次。
+ * 一个域名有多个地址（A/AAAA记录）时，每次解析按{@link Selection}调整地址顺序，建立连接时优先使用靠前的地址。
+ * <p>
+ * JDK的解析接口不提供DNS记录本身的TTL，缓存时间以ttl为准，delegate（如系统解析）自身的缓存时间应当不超过ttl。
+ *
+ * @author lialun
+ */
+public class CachingDnsResolver implements DnsResolver, Closeable {
+    private static final Log log = LogFactory.getLog(CachingDnsResolver.class);
+    /**
+     * 缓存数量超过该值时清理过期的缓存
+     */
+    private static final int MAX_ENTRIES = 10_000;
+
+    /**
+     * 多个地址的选择策略
+     */
+    public enum Selection {
+        /**
+         * 轮流使用每个地址
+         */
+        ROUND_ROBIN,
+        /**
+         * 优先使用已建立连接最少的地址，连接数量相同时轮流使用
+         */
+        LEAST_CONNECTIONS
+    }
+
+    private final DnsResolver delegate;
+    private final long ttl;
+    private final long refreshAfter;
+    private final long maxStale;
+    private final Selection selection;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    /**
+     * 正在同步解析的域名
+     */
+    private final Map<String, CompletableFuture<Entry>> resolving = new ConcurrentHashMap<>();
+    /**
+     * 每个地址已建立的连接数量
+     */
+    private final Map<InetAddress, Integer> connectionCounts = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+
+    /**
+     * 使用系统解析，轮流使用每个地址
+     *
+     * @param ttl 缓存时间，单位为ms
+     */
+    public CachingDnsResolver(long ttl) {
+        this(SystemDefaultDnsResolver.INSTANCE, ttl, ttl, Selection.ROUND_ROBIN);
+    }
+
+    /**
+     * @param delegate  实际执行解析的resolver
+     * @param ttl       缓存时间，单位为ms
+     * @param maxStale  过期后继续使用过期结果（同时在后台刷新）的时间，单位为ms
+     * @param selection 多个地址的选择策略
+     */
+    public CachingDnsResolver(DnsResolver delegate, long ttl, long maxStale, Selection selection) {
+        Preconditions.checkArgument(ttl > 0, "ttl must be positive");
+        Preconditions.checkArgument(maxStale >= 0, "maxStale must not be negative");
+        this.delegate = Preconditions.checkNotNull(delegate);
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.refreshAfter = this.ttl / 4 * 3;
+        this.maxStale = TimeUnit.MILLISECONDS.toNanos(maxStale);
+        this.selection = Preconditions.checkNotNull(selection);
+        ThreadFactory threadFactory = new SimpleThreadFactory("CachingDnsResolver");
+        this.refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = threadFactory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        String key = host.toLowerCase(Locale.ROOT);
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            long age = System.nanoTime() - entry.resolvedAt;
+            if (age < ttl) {
+                hitCount.increment();
+                if (age >= refreshAfter) {
+                    refreshAsync(key, entry);
+                }
+                return select(entry);
+            }
+            if (age < ttl + maxStale) {
+                staleCount.increment();
+                refreshAsync(key, entry);
+                return select(entry);
+            }
+        }
+        missCount.increment();
+        return select(resolveShared(key, entry));
+    }
+
+    /**
+     * 同步解析，同一个域名并发的解析共享同一个结果
+     */
+    private Entry resolveShared(String key, Entry previous) throws UnknownHostException {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = resolving.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UnknownHostException unknownHostException) {
+                    throw unknownHostException;
+                }
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+            }
+        }
+        try {
+            Entry entry = refresh(key, previous);
+            future.complete(entry);
+            return entry;
+        } catch (UnknownHostException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            resolving.remove(key, future);
+        }
+    }
+
+    private void refreshAsync(String key, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh(key, entry);
+                } catch (Exception e) {
+                    log.warn("dns background refresh failure, host: " + key + ", message: " + e.getMessage());
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            //已关闭，超过maxStale后同步解析
+            entry.refreshing.set(false);
+        }
+    }
+
+    private Entry refresh(String key, Entry previous) throws UnknownHostException {
+        InetAddress[] addresses = delegate.resolve(key);
+        if (addresses == null || addresses.length == 0) {
+            throw new UnknownHostException(key);
+        }
+        //保留轮询位置，刷新后继续轮流使用
+        Entry entry = new Entry(addresses.clone(), System.nanoTime(), previous == null ? 0 : previous.next.get());
+        if (cache.size() >= MAX_ENTRIES) {
+            long now = System.nanoTime();
+            cache.values().removeIf(e -> now - e.resolvedAt >= ttl + maxStale);
+        }
+        cache.put(key, entry);
+        return entry;
+    }
+
+    private InetAddress[] select(Entry entry) {
+        InetAddress[] addresses = entry.addresses;
+        int length = addresses.length;
+        if (length == 1) {
+            return addresses.clone();
+        }
+        int start = Math.floorMod(entry.next.getAndIncrement(), length);
+        InetAddress[] selected = new InetAddress[length];
+        for (int i = 0; i < length; i++) {
+            selected[i] = addresses[(start + i) % length];
+        }
+        if (selection == Selection.LEAST_CONNECTIONS) {
+            //稳定排序，连接数量相同时保持轮询顺序
+            Arrays.sort(selected, Comparator.comparingInt(this::getConnectionCount));
+        }
+        return selected;
+    }
+
+    /**
+     * 清除所有缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 获取到地址已建立的连接数量，只统计同步client的连接
+     */
+    public int getConnectionCount(InetAddress address) {
+        return connectionCounts.getOrDefault(address, 0);
+    }
+
+    void connectionOpened(InetAddress address) {
+        connectionCounts.merge(address, 1, Integer::sum);
+    }
+
+    void connectionClosed(InetAddress address) {
+        connectionCounts.computeIfPresent(address, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 使用过期结果的次数
+     */
+    public long getStaleCount() {
+        return staleCount.sum();
+    }
+
+    @Override
+    public void close() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private static final class Entry {
+        private final InetAddress[] addresses;
+        private final long resolvedAt;
+        private final AtomicInteger next;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(InetAddress[] addresses, long resolvedAt, int next) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+            this.next = new AtomicInteger(next);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+import vip.lialun.logging.Log;
+import vip.lialun.logging.LogFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 熔断器，每个route（scheme://host:port）一个
+ * <p>
+ * CLOSED：正常放行请求，在最近windowSize次请求组成的滑动窗口中统计失败率和慢请求率，
+ * 请求数量达到minimumCalls且任一比例达到阈值时进入OPEN。
+ * OPEN：直接拒绝请求，不从连接池获取连接，经过openDuration后进入HALF_OPEN。
+ * HALF_OPEN：只放行halfOpenCalls个试探请求，全部完成后重新计算比例，达到阈值时回到OPEN，否则回到CLOSED。
+ * <p>
+ * 请求抛出IO异常或者返回5xx时记为失败，耗时达到slowCallDuration时记为慢请求。
+ *
+ * @author lialun
+ */
+public final class CircuitBreaker {
+    private static final Log log = LogFactory.getLog(CircuitBreaker.class);
+    private static final byte OUTCOME_FAILURE = 1;
+    private static final byte OUTCOME_SLOW = 2;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 熔断器状态变化的回调，在触发状态变化的线程中执行，不能阻塞
+     */
+    @FunctionalInterface
+    public interface StateListener {
+        void onStateChange(CircuitBreaker circuitBreaker, State from, State to);
+    }
+
+    private final String route;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private volatile State state = State.CLOSED;
+    /**
+     * 以下字段均由this保护
+     */
+    private final byte[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int failureCount;
+    private int slowCount;
+    private long openedTime;
+    private int halfOpenPermitted;
+
+    /**
+     * @param route                 熔断器对应的route
+     * @param failureRateThreshold  失败率阈值，百分比
+     * @param slowCallRateThreshold 慢请求率阈值，百分比
+     * @param slowCallDuration      慢请求的耗时，单位为ms
+     * @param windowSize            滑动窗口大小，即统计最近多少次请求
+     * @param minimumCalls          计算比例所需的最少请求数量
+     * @param openDuration          OPEN状态的持续时间，单位为ms
+     * @param halfOpenCalls         HALF_OPEN状态放行的试探请求数量
+     */
+    public CircuitBreaker(String route, int failureRateThreshold, int slowCallRateThreshold, int slowCallDuration,
+                          int windowSize, int minimumCalls, int openDuration, int halfOpenCalls) {
+        Preconditions.checkArgument(failureRateThreshold > 0 && failureRateThreshold <= 100,
+                "failureRateThreshold must be in (0, 100]");
+        Preconditions.checkArgument(slowCallRateThreshold > 0 && slowCallRateThreshold <= 100,
+                "slowCallRateThreshold must be in (0, 100]");
+        Preconditions.checkArgument(windowSize > 0, "windowSize must be positive");
+        Preconditions.checkArgument(halfOpenCalls > 0, "halfOpenCalls must be positive");
+        this.route = route;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+        this.window = new byte[windowSize];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * 请求发送前调用
+     *
+     * @return 是否放行请求，放行后必须调用{@link #record(long, boolean)}或{@link #release()}
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        boolean permitted;
+        boolean toHalfOpen = false;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedTime >= openDurationNanos) {
+                state = State.HALF_OPEN;
+                resetWindow();
+                toHalfOpen = true;
+            }
+            if (state == State.HALF_OPEN) {
+                permitted = halfOpenPermitted < halfOpenCalls;
+                if (permitted) {
+                    halfOpenPermitted++;
+                }
+            } else {
+                permitted = state == State.CLOSED;
+            }
+        }
+        if (toHalfOpen) {
+            fireStateChange(State.OPEN, State.HALF_OPEN);
+        }
+        if (!permitted) {
+            rejectedCount.increment();
+        }
+        return permitted;
+    }
+
+    /**
+     * 记录放行请求的结果
+     *
+     * @param durationNanos 请求耗时，单位为ns
+     * @param failure       请求是否失败
+     */
+    public void record(long durationNanos, boolean failure) {
+        byte outcome = (byte) ((failure ? OUTCOME_FAILURE : 0) | (durationNanos >= slowCallDurationNanos ? OUTCOME_SLOW : 0));
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            if (from == State.OPEN) {
+                //进入OPEN之前已经发出的请求
+                return;
+            }
+            add(outcome);
+            if (from == State.HALF_OPEN) {
+                if (windowCount < halfOpenCalls) {
+                    return;
+                }
+                to = isThresholdExceeded() ? State.OPEN : State.CLOSED;
+            } else if (windowCount >= minimumCalls && isThresholdExceeded()) {
+                to = State.OPEN;
+            } else {
+                return;
+            }
+            state = to;
+            resetWindow();
+            if (to == State.OPEN) {
+                openedTime = System.nanoTime();
+            }
+        }
+        fireStateChange(from, to);
+    }
+
+    /**
+     * 放行的请求没有结果（如被对冲请求中断）时调用，归还HALF_OPEN状态的试探名额
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermitted > 0) {
+            halfOpenPermitted--;
+        }
+    }
+
+    private void add(byte outcome) {
+        if (windowCount == window.length) {
+            byte removed = window[windowIndex];
+            failureCount -= removed & OUTCOME_FAILURE;
+            slowCount -= (removed & OUTCOME_SLOW) >> 1;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = outcome;
+        windowIndex = (windowIndex + 1) % window.length;
+        failureCount += outcome & OUTCOME_FAILURE;
+        slowCount += (outcome & OUTCOME_SLOW) >> 1;
+    }
+
+    private boolean isThresholdExceeded() {
+        return failureCount * 100 >= failureRateThreshold * windowCount
+                || slowCount * 100 >= slowCallRateThreshold * windowCount;
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        failureCount = 0;
+        slowCount = 0;
+        halfOpenPermitted = 0;
+    }
+
+    private void fireStateChange(State from, State to) {
+        for (StateListener listener : listeners) {
+            try {
+                listener.onStateChange(this, from, to);
+            } catch (RuntimeException e) {
+                log.warn("circuit breaker listener failure, route: " + route, e);
+            }
+        }
+    }
+
+    /**
+     * 添加状态变化的回调
+     */
+    public void addListener(StateListener listener) {
+        listeners.add(Preconditions.checkNotNull(listener));
+    }
+
+    /**
+     * 强制回到CLOSED状态并清空统计
+     */
+    public void reset() {
+        State from;
+        synchronized (this) {
+            from = state;
+            state = State.CLOSED;
+            resetWindow();
+        }
+        if (from != State.CLOSED) {
+            fireStateChange(from, State.CLOSED);
+        }
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 当前窗口内的失败率，百分比，请求数量为0时返回0
+     */
+    public synchronized float getFailureRate() {
+        return windowCount == 0 ? 0 : failureCount * 100f / windowCount;
+    }
+
+    /**
+     * 当前窗口内的慢请求率，百分比，请求数量为0时返回0
+     */
+    public synchronized float getSlowCallRate() {
+        return windowCount == 0 ? 0 : slowCount * 100f / windowCount;
+    }
+
+    /**
+     * 累计被拒绝的请求数量
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{route=" + route + ", state=" + state + '}';
+    }
+}
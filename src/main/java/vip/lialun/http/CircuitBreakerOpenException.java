@@ -0,0 +1,19 @@
+package vip.lialun.http;
+
+/**
+ * 熔断器处于打开状态，请求被直接拒绝，没有发送到服务端
+ *
+ * @author lialun
+ */
+public class CircuitBreakerOpenException extends HttpException {
+    private final String route;
+
+    public CircuitBreakerOpenException(String route) {
+        super("Circuit breaker is open, route: " + route);
+        this.route = route;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+}
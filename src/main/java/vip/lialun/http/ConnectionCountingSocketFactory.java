@@ -0,0 +1,74 @@
+package vip.lialun.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * 统计每个地址已建立连接数量的socket factory，用于{@link CachingDnsResolver.Selection#LEAST_CONNECTIONS}
+ * <p>
+ * 连接建立成功后计数，socket关闭时（包括在其上建立的TLS socket关闭时）减少计数。
+ *
+ * @author lialun
+ */
+final class ConnectionCountingSocketFactory implements LayeredConnectionSocketFactory {
+    private final ConnectionSocketFactory delegate;
+    private final CachingDnsResolver dnsResolver;
+
+    ConnectionCountingSocketFactory(ConnectionSocketFactory delegate, CachingDnsResolver dnsResolver) {
+        this.delegate = delegate;
+        this.dnsResolver = dnsResolver;
+    }
+
+    /**
+     * 代替delegate创建未连接的socket，Plain及SSL socket factory创建的都是未经设置的普通socket
+     */
+    @Override
+    public Socket createSocket(HttpContext context) {
+        return new CountingSocket();
+    }
+
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                InetSocketAddress localAddress, HttpContext context) throws IOException {
+        Socket connected = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        if (socket instanceof CountingSocket) {
+            ((CountingSocket) socket).opened(remoteAddress.getAddress());
+        }
+        return connected;
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+        return ((LayeredConnectionSocketFactory) delegate).createLayeredSocket(socket, target, port, context);
+    }
+
+    private final class CountingSocket extends Socket {
+        private InetAddress address;
+
+        synchronized void opened(InetAddress address) {
+            if (!isClosed()) {
+                this.address = address;
+                dnsResolver.connectionOpened(address);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (address != null) {
+                    dnsResolver.connectionClosed(address);
+                    address = null;
+                }
+            }
+        }
+    }
+}
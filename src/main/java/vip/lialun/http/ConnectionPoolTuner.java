@@ -0,0 +1,84 @@
+package vip.lialun.http;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 连接池自动调整，定时采样每个route的连接池状态并调整route的最大连接数
+ * <p>
+ * 有请求排队等待连接时，最大连接数增加一半（至少增加1），不超过上限；
+ * 连续{@link #SHRINK_AFTER_ROUNDS}次采样中使用的连接都不到最大连接数的一半时，减少四分之一，不低于默认的route最大连接数。
+ * 单独设置过最大连接数的route不参与调整。
+ *
+ * @author lialun
+ */
+final class ConnectionPoolTuner implements Runnable {
+    static final int SHRINK_AFTER_ROUNDS = 5;
+
+    private final ConnPoolControl<HttpRoute> pool;
+    private final Supplier<Set<HttpRoute>> routes;
+    private final IntSupplier upperLimit;
+    private final Predicate<HttpRoute> pinned;
+    /**
+     * 每个route连续空闲的采样次数
+     */
+    private final Map<HttpRoute, Integer> idleRounds = new ConcurrentHashMap<>();
+
+    /**
+     * @param pool       连接池
+     * @param routes     连接池中已有的route
+     * @param upperLimit route最大连接数的上限
+     * @param pinned     单独设置过最大连接数的route
+     */
+    ConnectionPoolTuner(ConnPoolControl<HttpRoute> pool, Supplier<Set<HttpRoute>> routes, IntSupplier upperLimit,
+                        Predicate<HttpRoute> pinned) {
+        this.pool = pool;
+        this.routes = routes;
+        this.upperLimit = upperLimit;
+        this.pinned = pinned;
+    }
+
+    @Override
+    public void run() {
+        Set<HttpRoute> currentRoutes = routes.get();
+        idleRounds.keySet().retainAll(currentRoutes);
+        for (HttpRoute route : currentRoutes) {
+            if (!pinned.test(route)) {
+                tune(route);
+            }
+        }
+    }
+
+    private void tune(HttpRoute route) {
+        PoolStats stats = pool.getStats(route);
+        int max = stats.getMax();
+        int lowerLimit = pool.getDefaultMaxPerRoute();
+        int upper = Math.max(lowerLimit, Math.min(upperLimit.getAsInt(), pool.getMaxTotal()));
+        if (stats.getPending() > 0) {
+            idleRounds.remove(route);
+            if (max < upper) {
+                pool.setMaxPerRoute(route, Math.min(upper, max + Math.max(1, max / 2)));
+            }
+            return;
+        }
+        if (max <= lowerLimit || stats.getLeased() * 2 >= max) {
+            idleRounds.remove(route);
+            return;
+        }
+        int rounds = idleRounds.merge(route, 1, Integer::sum);
+        if (rounds >= SHRINK_AFTER_ROUNDS) {
+            idleRounds.remove(route);
+            int newMax = Math.max(lowerLimit, max - Math.max(1, max / 4));
+            //恢复到默认值时移除route的单独设置，之后随默认值变化
+            pool.setMaxPerRoute(route, newMax == lowerLimit ? -1 : newMax);
+        }
+    }
+}
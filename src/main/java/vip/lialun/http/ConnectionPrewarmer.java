@@ -0,0 +1,90 @@
+package vip.lialun.http;
+
+import vip.lialun.logging.Log;
+import vip.lialun.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接预热，预先建立并验证到指定route的连接（包括TLS握手），并保持空闲连接数量不低于下限
+ * <p>
+ * 从连接池租用足够数量的连接，其中已有的空闲连接检查是否已被服务端关闭，新连接完成握手后全部归还连接池。
+ *
+ * @author lialun
+ */
+final class ConnectionPrewarmer implements Runnable {
+    private static final Log log = LogFactory.getLog(ConnectionPrewarmer.class);
+
+    private final PoolingHttpClientConnectionManager connMgr;
+    private final List<HttpRoute> routes;
+    private final int minIdlePerRoute;
+    private final int connectTimeout;
+
+    /**
+     * @param connMgr         连接池
+     * @param routes          需要预热的route
+     * @param minIdlePerRoute 每个route的空闲连接数量下限
+     * @param connectTimeout  建立连接及从连接池获取连接的超时时间，单位为ms
+     */
+    ConnectionPrewarmer(PoolingHttpClientConnectionManager connMgr, List<HttpRoute> routes, int minIdlePerRoute,
+                        int connectTimeout) {
+        this.connMgr = connMgr;
+        this.routes = routes;
+        this.minIdlePerRoute = minIdlePerRoute;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * 补充所有route的空闲连接，失败时只记录日志
+     */
+    @Override
+    public void run() {
+        for (HttpRoute route : routes) {
+            try {
+                warmUp(route);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("connection prewarm failure, route: " + route, e);
+            }
+        }
+    }
+
+    private void warmUp(HttpRoute route) throws InterruptedException, ExecutionException, IOException {
+        PoolStats stats = connMgr.getStats(route);
+        if (stats.getAvailable() >= minIdlePerRoute) {
+            return;
+        }
+        // 同时持有所有连接，保证新租用的连接不会复用刚刚建立的连接
+        int count = Math.min(minIdlePerRoute, stats.getMax() - stats.getLeased());
+        List<HttpClientConnection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                HttpClientConnection connection = connMgr.requestConnection(route, null).get(connectTimeout, TimeUnit.MILLISECONDS);
+                connections.add(connection);
+                if (!connection.isOpen()) {
+                    HttpClientContext context = HttpClientContext.create();
+                    connMgr.connect(connection, route, connectTimeout, context);
+                    connMgr.routeComplete(connection, route, context);
+                } else if (connection.isStale()) {
+                    //已被服务端关闭的空闲连接，归还时丢弃
+                    connection.close();
+                }
+            }
+        } finally {
+            for (HttpClientConnection connection : connections) {
+                connMgr.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
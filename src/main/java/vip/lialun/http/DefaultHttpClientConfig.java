@@ -1,5 +1,12 @@
 package vip.lialun.http;
 
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
 /**
  * HttpClient配置信息
  *
@@ -11,11 +18,71 @@ public class DefaultHttpClientConfig
     private static final int DEFAULT_MAX_CONNECTION = 200;
     private static final int DEFAULT_MAX_CONNECTION_PER_ROUTE = 100;
     private static final int DEFAULT_SSL_SO_TIMEOUT = 5_000;
+    private static final boolean DEFAULT_CACHE_ENABLED = false;
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_CACHE_MAX_OBJECT_SIZE = 1024 * 1024;
+    private static final boolean DEFAULT_REQUEST_COALESCING_ENABLED = false;
+    private static final double DEFAULT_RETRY_BUDGET_RATIO = 0;
+    private static final int DEFAULT_RETRY_BUDGET_MIN_PER_SECOND = 10;
+    private static final boolean DEFAULT_CIRCUIT_BREAKER_ENABLED = false;
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = 50;
+    private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD = 100;
+    private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION = 10_000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 100;
+    private static final int DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = 20;
+    private static final int DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30_000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS = 5;
+    private static final double DEFAULT_RATE_LIMIT_PER_SECOND = 0;
+    private static final int DEFAULT_RATE_LIMIT_BURST = 1;
+    private static final double DEFAULT_HEDGE_BUDGET_RATIO = 0.1;
+    private static final boolean DEFAULT_METRICS_ENABLED = true;
+    private static final boolean DEFAULT_POOL_AUTO_TUNE_ENABLED = false;
+    private static final int DEFAULT_POOL_AUTO_TUNE_INTERVAL = 1000;
+    private static final int DEFAULT_POOL_AUTO_TUNE_MAX_PER_ROUTE = 0;
+    private static final int DEFAULT_PREWARM_CONNECTIONS_PER_ROUTE = 0;
+    private static final int DEFAULT_SSL_SESSION_CACHE_SIZE = 1000;
+    private static final int DEFAULT_SSL_SESSION_TIMEOUT = 24 * 60 * 60 * 1000;
+    private static final HttpProtocol DEFAULT_PROTOCOL = HttpProtocol.HTTP_1_1;
+    private static final int DEFAULT_CONNECTION_TIME_TO_LIVE = 0;
+    private static final int DEFAULT_CONNECTION_MAX_IDLE_TIME = 0;
 
     private boolean trustAllSslCertificate = DEFAULT_TRUST_ALL_SSL_CERTIFICATE;
     private int maxConnection = DEFAULT_MAX_CONNECTION;
     private int maxConnectionPerRoute = DEFAULT_MAX_CONNECTION_PER_ROUTE;
     private int sslSoTimeout = DEFAULT_SSL_SO_TIMEOUT;
+    private boolean cacheEnabled = DEFAULT_CACHE_ENABLED;
+    private int cacheMaxEntries = DEFAULT_CACHE_MAX_ENTRIES;
+    private long cacheMaxObjectSize = DEFAULT_CACHE_MAX_OBJECT_SIZE;
+    private Path cacheDirectory = null;
+    private boolean requestCoalescingEnabled = DEFAULT_REQUEST_COALESCING_ENABLED;
+    private double retryBudgetRatio = DEFAULT_RETRY_BUDGET_RATIO;
+    private int retryBudgetMinPerSecond = DEFAULT_RETRY_BUDGET_MIN_PER_SECOND;
+    private boolean circuitBreakerEnabled = DEFAULT_CIRCUIT_BREAKER_ENABLED;
+    private int circuitBreakerFailureRateThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD;
+    private int circuitBreakerSlowCallRateThreshold = DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD;
+    private int circuitBreakerSlowCallDuration = DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION;
+    private int circuitBreakerWindowSize = DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+    private int circuitBreakerMinimumCalls = DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS;
+    private int circuitBreakerOpenDuration = DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION;
+    private int circuitBreakerHalfOpenCalls = DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS;
+    private CircuitBreaker.StateListener circuitBreakerListener = null;
+    private double rateLimitPerSecond = DEFAULT_RATE_LIMIT_PER_SECOND;
+    private int rateLimitBurst = DEFAULT_RATE_LIMIT_BURST;
+    private double hedgeBudgetRatio = DEFAULT_HEDGE_BUDGET_RATIO;
+    private boolean metricsEnabled = DEFAULT_METRICS_ENABLED;
+    private Map<String, Integer> routeMaxConnections = null;
+    private boolean poolAutoTuneEnabled = DEFAULT_POOL_AUTO_TUNE_ENABLED;
+    private int poolAutoTuneInterval = DEFAULT_POOL_AUTO_TUNE_INTERVAL;
+    private int poolAutoTuneMaxPerRoute = DEFAULT_POOL_AUTO_TUNE_MAX_PER_ROUTE;
+    private List<String> prewarmRoutes = null;
+    private int prewarmConnectionsPerRoute = DEFAULT_PREWARM_CONNECTIONS_PER_ROUTE;
+    private int sslSessionCacheSize = DEFAULT_SSL_SESSION_CACHE_SIZE;
+    private int sslSessionTimeout = DEFAULT_SSL_SESSION_TIMEOUT;
+    private DnsResolver dnsResolver = null;
+    private HttpProtocol protocol = DEFAULT_PROTOCOL;
+    private int connectionTimeToLive = DEFAULT_CONNECTION_TIME_TO_LIVE;
+    private int connectionMaxIdleTime = DEFAULT_CONNECTION_MAX_IDLE_TIME;
+    private ConnectionKeepAliveStrategy keepAliveStrategy = null;
 
     @Override
     public boolean isTrustAllSslCertificate() {
@@ -60,4 +127,367 @@ public class DefaultHttpClientConfig
         this.sslSoTimeout = sslSoTimeout;
         return this;
     }
+
+    @Override
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+        return this;
+    }
+
+    @Override
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+        return this;
+    }
+
+    @Override
+    public long getCacheMaxObjectSize() {
+        return cacheMaxObjectSize;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCacheMaxObjectSize(long cacheMaxObjectSize) {
+        this.cacheMaxObjectSize = cacheMaxObjectSize;
+        return this;
+    }
+
+    @Override
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
+    @Override
+    public boolean isRequestCoalescingEnabled() {
+        return requestCoalescingEnabled;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setRequestCoalescingEnabled(boolean requestCoalescingEnabled) {
+        this.requestCoalescingEnabled = requestCoalescingEnabled;
+        return this;
+    }
+
+    @Override
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+        return this;
+    }
+
+    @Override
+    public int getRetryBudgetMinPerSecond() {
+        return retryBudgetMinPerSecond;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setRetryBudgetMinPerSecond(int retryBudgetMinPerSecond) {
+        this.retryBudgetMinPerSecond = retryBudgetMinPerSecond;
+        return this;
+    }
+
+    @Override
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerFailureRateThreshold() {
+        return circuitBreakerFailureRateThreshold;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerFailureRateThreshold(int circuitBreakerFailureRateThreshold) {
+        this.circuitBreakerFailureRateThreshold = circuitBreakerFailureRateThreshold;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerSlowCallRateThreshold() {
+        return circuitBreakerSlowCallRateThreshold;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerSlowCallRateThreshold(int circuitBreakerSlowCallRateThreshold) {
+        this.circuitBreakerSlowCallRateThreshold = circuitBreakerSlowCallRateThreshold;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerSlowCallDuration() {
+        return circuitBreakerSlowCallDuration;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerSlowCallDuration(int circuitBreakerSlowCallDuration) {
+        this.circuitBreakerSlowCallDuration = circuitBreakerSlowCallDuration;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerWindowSize() {
+        return circuitBreakerWindowSize;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerWindowSize(int circuitBreakerWindowSize) {
+        this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerMinimumCalls() {
+        return circuitBreakerMinimumCalls;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerMinimumCalls(int circuitBreakerMinimumCalls) {
+        this.circuitBreakerMinimumCalls = circuitBreakerMinimumCalls;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerOpenDuration() {
+        return circuitBreakerOpenDuration;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerOpenDuration(int circuitBreakerOpenDuration) {
+        this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+        return this;
+    }
+
+    @Override
+    public int getCircuitBreakerHalfOpenCalls() {
+        return circuitBreakerHalfOpenCalls;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerHalfOpenCalls(int circuitBreakerHalfOpenCalls) {
+        this.circuitBreakerHalfOpenCalls = circuitBreakerHalfOpenCalls;
+        return this;
+    }
+
+    @Override
+    public CircuitBreaker.StateListener getCircuitBreakerListener() {
+        return circuitBreakerListener;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setCircuitBreakerListener(CircuitBreaker.StateListener circuitBreakerListener) {
+        this.circuitBreakerListener = circuitBreakerListener;
+        return this;
+    }
+
+    @Override
+    public double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setRateLimitPerSecond(double rateLimitPerSecond) {
+        this.rateLimitPerSecond = rateLimitPerSecond;
+        return this;
+    }
+
+    @Override
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+        return this;
+    }
+
+    @Override
+    public double getHedgeBudgetRatio() {
+        return hedgeBudgetRatio;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setHedgeBudgetRatio(double hedgeBudgetRatio) {
+        this.hedgeBudgetRatio = hedgeBudgetRatio;
+        return this;
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    @Override
+    public Map<String, Integer> getRouteMaxConnections() {
+        return routeMaxConnections;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setRouteMaxConnections(Map<String, Integer> routeMaxConnections) {
+        this.routeMaxConnections = routeMaxConnections;
+        return this;
+    }
+
+    @Override
+    public boolean isPoolAutoTuneEnabled() {
+        return poolAutoTuneEnabled;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setPoolAutoTuneEnabled(boolean poolAutoTuneEnabled) {
+        this.poolAutoTuneEnabled = poolAutoTuneEnabled;
+        return this;
+    }
+
+    @Override
+    public int getPoolAutoTuneInterval() {
+        return poolAutoTuneInterval;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setPoolAutoTuneInterval(int poolAutoTuneInterval) {
+        this.poolAutoTuneInterval = poolAutoTuneInterval;
+        return this;
+    }
+
+    @Override
+    public int getPoolAutoTuneMaxPerRoute() {
+        return poolAutoTuneMaxPerRoute;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setPoolAutoTuneMaxPerRoute(int poolAutoTuneMaxPerRoute) {
+        this.poolAutoTuneMaxPerRoute = poolAutoTuneMaxPerRoute;
+        return this;
+    }
+
+    @Override
+    public List<String> getPrewarmRoutes() {
+        return prewarmRoutes;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setPrewarmRoutes(List<String> prewarmRoutes) {
+        this.prewarmRoutes = prewarmRoutes;
+        return this;
+    }
+
+    @Override
+    public int getPrewarmConnectionsPerRoute() {
+        return prewarmConnectionsPerRoute;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setPrewarmConnectionsPerRoute(int prewarmConnectionsPerRoute) {
+        this.prewarmConnectionsPerRoute = prewarmConnectionsPerRoute;
+        return this;
+    }
+
+    @Override
+    public int getSslSessionCacheSize() {
+        return sslSessionCacheSize;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setSslSessionCacheSize(int sslSessionCacheSize) {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+        return this;
+    }
+
+    @Override
+    public int getSslSessionTimeout() {
+        return sslSessionTimeout;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setSslSessionTimeout(int sslSessionTimeout) {
+        this.sslSessionTimeout = sslSessionTimeout;
+        return this;
+    }
+
+    @Override
+    public DnsResolver getDnsResolver() {
+        return dnsResolver;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setDnsResolver(DnsResolver dnsResolver) {
+        this.dnsResolver = dnsResolver;
+        return this;
+    }
+
+    @Override
+    public HttpProtocol getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setProtocol(HttpProtocol protocol) {
+        this.protocol = protocol;
+        return this;
+    }
+
+    @Override
+    public int getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setConnectionTimeToLive(int connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+        return this;
+    }
+
+    @Override
+    public int getConnectionMaxIdleTime() {
+        return connectionMaxIdleTime;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setConnectionMaxIdleTime(int connectionMaxIdleTime) {
+        this.connectionMaxIdleTime = connectionMaxIdleTime;
+        return this;
+    }
+
+    @Override
+    public ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+        return keepAliveStrategy;
+    }
+
+    @Override
+    public DefaultHttpClientConfig setKeepAliveStrategy(ConnectionKeepAliveStrategy keepAliveStrategy) {
+        this.keepAliveStrategy = keepAliveStrategy;
+        return this;
+    }
 }
@@ -1,15 +1,22 @@
 package vip.lialun.http;
 
 import org.apache.http.HttpHost;
+import org.apache.http.NoHttpResponseException;
 import org.apache.http.client.config.CookieSpecs;
 import org.springframework.beans.BeanUtils;
 
+import javax.net.ssl.SSLException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 import static vip.lialun.http.HttpConstants.UA_CHROME;
 
-
 /**
  * Http请求配置信息
  *
@@ -32,6 +39,19 @@ public class DefaultHttpRequestConfig implements HttpRequestConfig, HttpRequestC
     private static final boolean DEFAULT_REDIRECTS_ENABLED = true;
     private static final int DEFAULT_MAX_REDIRECTS = 20;
     private static final String DEFAULT_COOKIE_SPECS = CookieSpecs.DEFAULT;
+    private static final boolean DEFAULT_EXPECT_CONTINUE_ENABLED = false;
+    private static final BackoffPolicy DEFAULT_BACKOFF_POLICY = BackoffPolicy.fixed();
+    private static final IntPredicate DEFAULT_RETRYABLE_STATUS = statusCode -> statusCode / 100 == 4 || statusCode / 100 == 5;
+    private static final Predicate<Exception> DEFAULT_RETRYABLE_EXCEPTION = e -> e instanceof UnknownHostException
+            || e instanceof InterruptedIOException || e instanceof ConnectException || e instanceof SSLException
+            || e instanceof NoHttpResponseException;
+    private static final boolean DEFAULT_RESPECT_RETRY_AFTER = true;
+    private static final int DEFAULT_MAX_RETRY_AFTER = 30_000;
+    private static final int DEFAULT_RATE_LIMIT_TIMEOUT = -1;
+    private static final boolean DEFAULT_HEDGING_ENABLED = false;
+    private static final int DEFAULT_HEDGE_DELAY = -1;
+    private static final boolean DEFAULT_REQUEST_COMPRESSION_ENABLED = false;
+    private static final int DEFAULT_REQUEST_COMPRESSION_THRESHOLD = 1024;
 
     private int soTimeout = DEFAULT_SO_TIMEOUT;
     private int connTimeout = DEFAULT_CONN_TIMEOUT;
@@ -49,6 +69,18 @@ public class DefaultHttpRequestConfig implements HttpRequestConfig, HttpRequestC
     private boolean redirectsEnabled = DEFAULT_REDIRECTS_ENABLED;
     private int maxRedirects = DEFAULT_MAX_REDIRECTS;
     private String cookieSpecs = DEFAULT_COOKIE_SPECS;
+    private boolean expectContinueEnabled = DEFAULT_EXPECT_CONTINUE_ENABLED;
+    private BackoffPolicy backoffPolicy = DEFAULT_BACKOFF_POLICY;
+    private IntPredicate retryableStatus = DEFAULT_RETRYABLE_STATUS;
+    private Predicate<Exception> retryableException = DEFAULT_RETRYABLE_EXCEPTION;
+    private boolean respectRetryAfter = DEFAULT_RESPECT_RETRY_AFTER;
+    private int maxRetryAfter = DEFAULT_MAX_RETRY_AFTER;
+    private Duration deadline = null;
+    private int rateLimitTimeout = DEFAULT_RATE_LIMIT_TIMEOUT;
+    private boolean hedgingEnabled = DEFAULT_HEDGING_ENABLED;
+    private int hedgeDelay = DEFAULT_HEDGE_DELAY;
+    private boolean requestCompressionEnabled = DEFAULT_REQUEST_COMPRESSION_ENABLED;
+    private int requestCompressionThreshold = DEFAULT_REQUEST_COMPRESSION_THRESHOLD;
 
     public DefaultHttpRequestConfig() {
     }
@@ -239,4 +271,136 @@ public class DefaultHttpRequestConfig implements HttpRequestConfig, HttpRequestC
         this.cookieSpecs = cookieSpecs;
         return this;
     }
+
+    @Override
+    public boolean isExpectContinueEnabled() {
+        return expectContinueEnabled;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setExpectContinueEnabled(boolean expectContinueEnabled) {
+        this.expectContinueEnabled = expectContinueEnabled;
+        return this;
+    }
+
+    @Override
+    public BackoffPolicy getBackoffPolicy() {
+        return backoffPolicy;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setBackoffPolicy(BackoffPolicy backoffPolicy) {
+        this.backoffPolicy = backoffPolicy;
+        return this;
+    }
+
+    @Override
+    public IntPredicate getRetryableStatus() {
+        return retryableStatus;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setRetryableStatus(IntPredicate retryableStatus) {
+        this.retryableStatus = retryableStatus;
+        return this;
+    }
+
+    @Override
+    public Predicate<Exception> getRetryableException() {
+        return retryableException;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setRetryableException(Predicate<Exception> retryableException) {
+        this.retryableException = retryableException;
+        return this;
+    }
+
+    @Override
+    public boolean isRespectRetryAfter() {
+        return respectRetryAfter;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setRespectRetryAfter(boolean respectRetryAfter) {
+        this.respectRetryAfter = respectRetryAfter;
+        return this;
+    }
+
+    @Override
+    public int getMaxRetryAfter() {
+        return maxRetryAfter;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setMaxRetryAfter(int maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+        return this;
+    }
+
+    @Override
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setDeadline(Duration deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    @Override
+    public int getRateLimitTimeout() {
+        return rateLimitTimeout;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setRateLimitTimeout(int rateLimitTimeout) {
+        this.rateLimitTimeout = rateLimitTimeout;
+        return this;
+    }
+
+    @Override
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+        return this;
+    }
+
+    @Override
+    public int getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setHedgeDelay(int hedgeDelay) {
+        this.hedgeDelay = hedgeDelay;
+        return this;
+    }
+
+    @Override
+    public boolean isRequestCompressionEnabled() {
+        return requestCompressionEnabled;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        this.requestCompressionEnabled = requestCompressionEnabled;
+        return this;
+    }
+
+    @Override
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    @Override
+    public DefaultHttpRequestConfig setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        return this;
+    }
 }
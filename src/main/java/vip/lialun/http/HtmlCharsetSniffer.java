@@ -0,0 +1,313 @@
+package vip.lialun.http;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 从Html的meta标签中获取编码
+ * <p>
+ * 参考WHATWG的prescan算法，只扫描content前{@link #PRESCAN_LIMIT}字节，
+ * 直接在byte上进行匹配，无需解码content，也无需构建DOM。
+ * 支持{@code <meta charset="...">}和{@code <meta http-equiv="Content-Type" content="...; charset=...">}两种写法。
+ *
+ * @author lialun
+ */
+final class HtmlCharsetSniffer {
+    /**
+     * 最多扫描的字节数
+     */
+    static final int PRESCAN_LIMIT = 4096;
+
+    private final byte[] bytes;
+    private final int end;
+    private int position;
+
+    private HtmlCharsetSniffer(byte[] bytes) {
+        this.bytes = bytes;
+        this.end = Math.min(bytes.length, PRESCAN_LIMIT);
+    }
+
+    /**
+     * 获取Html中声明的编码
+     *
+     * @return Html中声明的编码，未声明或不支持时返回null
+     */
+    static Charset sniff(byte[] content) {
+        if (content == null || content.length == 0) {
+            return null;
+        }
+        return new HtmlCharsetSniffer(content).prescan();
+    }
+
+    private Charset prescan() {
+        while (position < end) {
+            if (startsWith("<!--")) {
+                // 注释结束的"-->"可以与开始的"<!--"共用"-"
+                int close = indexOf("-->", position + 2);
+                if (close < 0) {
+                    return null;
+                }
+                position = close + 3;
+                continue;
+            }
+            if (startsWithIgnoreCase("<meta") && position + 5 < end && isSpaceOrSlash(bytes[position + 5])) {
+                position += 5;
+                Charset charset = processMeta();
+                if (charset != null) {
+                    return charset;
+                }
+            } else if (bytes[position] == '<' && position + 1 < end && isAsciiLetter(bytes[position + 1])
+                    || startsWith("</") && position + 2 < end && isAsciiLetter(bytes[position + 2])) {
+                // 跳过其他标签及其属性，避免属性值中的"<meta"被误判
+                while (position < end && !isSpace(bytes[position]) && bytes[position] != '>') {
+                    position++;
+                }
+                while (getAttribute() != null) {
+                    // skip
+                }
+            } else if (startsWith("<!") || startsWith("</") || startsWith("<?")) {
+                int close = indexOf(">", position);
+                if (close < 0) {
+                    return null;
+                }
+                position = close;
+            }
+            position++;
+        }
+        return null;
+    }
+
+    private Charset processMeta() {
+        Set<String> attributeNames = new HashSet<>();
+        boolean gotPragma = false;
+        Boolean needPragma = null;
+        Charset charset = null;
+        String[] attribute;
+        while ((attribute = getAttribute()) != null) {
+            String name = attribute[0];
+            String value = attribute[1];
+            if (!attributeNames.add(name)) {
+                continue;
+            }
+            switch (name) {
+                case "http-equiv":
+                    if ("content-type".equals(value)) {
+                        gotPragma = true;
+                    }
+                    break;
+                case "content":
+                    if (charset == null) {
+                        charset = toCharset(extractCharsetFromContent(value));
+                        if (charset != null) {
+                            needPragma = true;
+                        }
+                    }
+                    break;
+                case "charset":
+                    // 已经从content中得到编码时不再覆盖
+                    if (charset == null) {
+                        charset = toCharset(value);
+                        needPragma = false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (needPragma == null || needPragma && !gotPragma || charset == null) {
+            return null;
+        }
+        // 能被ASCII方式扫描到meta说明content不可能是UTF-16
+        if (charset.name().startsWith("UTF-16")) {
+            return StandardCharsets.UTF_8;
+        }
+        return charset;
+    }
+
+    /**
+     * 读取一个属性，属性名和属性值均转为小写
+     *
+     * @return [name, value]，没有属性或超出扫描范围时返回null
+     */
+    private String[] getAttribute() {
+        while (position < end && (isSpace(bytes[position]) || bytes[position] == '/')) {
+            position++;
+        }
+        if (position >= end || bytes[position] == '>') {
+            return null;
+        }
+        StringBuilder name = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        // 属性名
+        while (true) {
+            if (position >= end) {
+                return null;
+            }
+            byte b = bytes[position];
+            if (b == '=' && name.length() > 0) {
+                position++;
+                break;
+            } else if (isSpace(b)) {
+                skipSpaces();
+                if (position >= end) {
+                    return null;
+                }
+                if (bytes[position] != '=') {
+                    return new String[]{name.toString(), ""};
+                }
+                position++;
+                break;
+            } else if (b == '/' || b == '>') {
+                return new String[]{name.toString(), ""};
+            } else {
+                name.append(toLowerCase(b));
+            }
+            position++;
+        }
+        // 属性值
+        skipSpaces();
+        if (position >= end) {
+            return null;
+        }
+        byte b = bytes[position];
+        if (b == '"' || b == '\'') {
+            position++;
+            while (true) {
+                if (position >= end) {
+                    return null;
+                }
+                if (bytes[position] == b) {
+                    position++;
+                    return new String[]{name.toString(), value.toString()};
+                }
+                value.append(toLowerCase(bytes[position]));
+                position++;
+            }
+        } else if (b == '>') {
+            return new String[]{name.toString(), ""};
+        }
+        while (true) {
+            if (position >= end) {
+                return null;
+            }
+            b = bytes[position];
+            if (isSpace(b) || b == '>') {
+                return new String[]{name.toString(), value.toString()};
+            }
+            value.append(toLowerCase(b));
+            position++;
+        }
+    }
+
+    /**
+     * 从content属性（如"text/html; charset=utf-8"）中获取编码名称
+     */
+    static String extractCharsetFromContent(String content) {
+        int index = 0;
+        while (true) {
+            index = content.toLowerCase(Locale.ROOT).indexOf("charset", index);
+            if (index < 0) {
+                return null;
+            }
+            index += 7;
+            while (index < content.length() && isSpace((byte) content.charAt(index))) {
+                index++;
+            }
+            if (index < content.length() && content.charAt(index) == '=') {
+                break;
+            }
+        }
+        index++;
+        while (index < content.length() && isSpace((byte) content.charAt(index))) {
+            index++;
+        }
+        if (index >= content.length()) {
+            return null;
+        }
+        char c = content.charAt(index);
+        if (c == '"' || c == '\'') {
+            int close = content.indexOf(c, index + 1);
+            return close < 0 ? null : content.substring(index + 1, close);
+        }
+        int start = index;
+        while (index < content.length() && !isSpace((byte) content.charAt(index)) && content.charAt(index) != ';') {
+            index++;
+        }
+        return index == start ? null : content.substring(start, index);
+    }
+
+    private static Charset toCharset(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        try {
+            return Charset.forName(name.trim());
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+
+    private void skipSpaces() {
+        while (position < end && isSpace(bytes[position])) {
+            position++;
+        }
+    }
+
+    private boolean startsWith(String prefix) {
+        if (position + prefix.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[position + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWithIgnoreCase(String prefix) {
+        if (position + prefix.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (toLowerCase(bytes[position + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String target, int from) {
+        for (int i = from; i + target.length() <= end; i++) {
+            int j = 0;
+            while (j < target.length() && bytes[i + j] == target.charAt(j)) {
+                j++;
+            }
+            if (j == target.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == 0x09 || b == 0x0A || b == 0x0C || b == 0x0D || b == 0x20;
+    }
+
+    private static boolean isSpaceOrSlash(byte b) {
+        return isSpace(b) || b == '/';
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+    }
+
+    private static char toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (char) (b + 0x20) : (char) (b & 0xFF);
+    }
+}
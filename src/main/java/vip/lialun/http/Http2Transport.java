@@ -0,0 +1,255 @@
+package vip.lialun.http;
+
+import vip.lialun.thread.SimpleThreadFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 基于JDK java.net.http的HTTP/2传输，通过{@link HttpClientBuilder#setProtocol(HttpProtocol)}开启
+ * <p>
+ * 同一个origin的请求在少量连接上以多路复用的stream并发发送；服务端不支持HTTP/2时，https通过ALPN协商、http通过Upgrade自动使用HTTP/1.1。
+ * 请求及response仍然使用Apache HttpClient的对象表示，超时、重试、熔断、限流等由HttpMethod处理，与HTTP/1.1保持一致。
+ * <p>
+ * 连接超时、代理及是否跟随重定向在创建时取默认请求配置，不能按请求修改；不使用client的cookie store和{@link HttpClientConfig#getDnsResolver()}。
+ *
+ * @author lialun
+ */
+public final class Http2Transport implements Closeable {
+    /**
+     * JDK不允许设置或HTTP/2不允许出现的header
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+            "upgrade", "keep-alive", "proxy-connection", "transfer-encoding", "te");
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    private final java.net.http.HttpClient client;
+    private final ExecutorService executor;
+
+    Http2Transport(HttpRequestConfig defaultRequestConfig, SSLContext sslContext) {
+        ThreadFactory threadFactory = new SimpleThreadFactory("HttpClientHttp2");
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = threadFactory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_2)
+                .followRedirects(defaultRequestConfig.isRedirectsEnabled()
+                        ? java.net.http.HttpClient.Redirect.ALWAYS : java.net.http.HttpClient.Redirect.NEVER)
+                .sslContext(sslContext)
+                .executor(executor);
+        if (defaultRequestConfig.getConnTimeout() > 0) {
+            builder.connectTimeout(Duration.ofMillis(defaultRequestConfig.getConnTimeout()));
+        }
+        HttpHost proxy = defaultRequestConfig.getProxy();
+        if (proxy != null) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxy.getHostName(), proxy.getPort())));
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * 异步发送请求，获取到response header后完成，content需要通过{@link #toHttpResponse}读取
+     *
+     * @param request 请求
+     * @param timeout 获取到response header的超时时间，单位为ms，小于等于0时不限制
+     */
+    public CompletableFuture<java.net.http.HttpResponse<InputStream>> send(HttpEntityEnclosingRequestBase request, int timeout) {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(request.getURI())
+                .method(request.getMethod(), toBodyPublisher(request.getEntity()));
+        if (timeout > 0) {
+            builder.timeout(Duration.ofMillis(timeout));
+        }
+        if (request.getConfig() != null) {
+            builder.expectContinue(request.getConfig().isExpectContinueEnabled());
+        }
+        for (Header header : request.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+        HttpEntity entity = request.getEntity();
+        if (entity != null) {
+            if (entity.getContentType() != null && !request.containsHeader(HttpHeaders.CONTENT_TYPE)) {
+                builder.header(HttpHeaders.CONTENT_TYPE, entity.getContentType().getValue());
+            }
+            if (entity.getContentEncoding() != null && !request.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, entity.getContentEncoding().getValue());
+            }
+        }
+        return client.sendAsync(builder.build(), BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * 中断请求，已经获取到response时关闭content
+     */
+    public static void abort(CompletableFuture<java.net.http.HttpResponse<InputStream>> future) {
+        future.cancel(true);
+        future.thenAccept(response -> closeQuietly(response.body()));
+    }
+
+    /**
+     * 读取content并转换为{@link HttpResponse}，gzip及deflate编码的content自动解压
+     */
+    public static HttpResponse toHttpResponse(java.net.http.HttpResponse<InputStream> response, HttpRequestConfig config) throws HttpException {
+        InputStream body = response.body();
+        try {
+            int statusCode = response.statusCode();
+            ProtocolVersion version = response.version() == java.net.http.HttpClient.Version.HTTP_2
+                    ? HTTP_2 : org.apache.http.HttpVersion.HTTP_1_1;
+            BasicHttpResponse apacheResponse = new BasicHttpResponse(new BasicStatusLine(version, statusCode,
+                    EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH)));
+            String contentEncoding = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse("").toLowerCase(Locale.ROOT);
+            boolean decompress = "gzip".equals(contentEncoding) || "x-gzip".equals(contentEncoding) || "deflate".equals(contentEncoding);
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                String name = header.getKey();
+                //与Apache HttpClient解压后一样移除编码及长度
+                if (name.startsWith(":") || decompress && (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                        || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name))) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    apacheResponse.addHeader(name, value);
+                }
+            }
+            BasicHttpEntity entity = new BasicHttpEntity();
+            if (decompress) {
+                entity.setContent(contentEncoding.equals("deflate") ? new InflaterInputStream(body) : new GZIPInputStream(body));
+                entity.setContentLength(-1);
+            } else {
+                entity.setContent(body);
+                entity.setContentLength(response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1));
+            }
+            response.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(entity::setContentType);
+            apacheResponse.setEntity(entity);
+            BasicHttpContext context = new BasicHttpContext();
+            context.setAttribute(HttpCoreContext.HTTP_REQUEST, new HttpGet(response.uri()));
+            return new HttpResponse(apacheResponse, context, config);
+        } catch (IOException e) {
+            closeQuietly(body);
+            throw new HttpException("Generate http response failure, message: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            //content超长等读取失败时关闭stream，释放HTTP/2 stream
+            closeQuietly(body);
+            throw e;
+        }
+    }
+
+    /**
+     * 可重复读取的请求体按需读取，无法通过{@link HttpEntity#getContent()}读取的请求体（如较大的multipart）预先写入内存，
+     * 压缩的请求体在发送时通过管道边压缩边发送
+     */
+    private BodyPublisher toBodyPublisher(HttpEntity entity) {
+        if (entity == null) {
+            return BodyPublishers.noBody();
+        }
+        long length = entity.getContentLength();
+        if (length == 0) {
+            return BodyPublishers.noBody();
+        }
+        if (entity instanceof GzipCompressingEntity) {
+            return BodyPublishers.ofInputStream(() -> pipe(entity));
+        }
+        if (entity.isRepeatable()) {
+            try {
+                entity.getContent().close();
+            } catch (UnsupportedOperationException | IOException e) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try {
+                    entity.writeTo(buffer);
+                } catch (IOException ex) {
+                    throw new HttpException("Http request entity write failure", ex);
+                }
+                return BodyPublishers.ofByteArray(buffer.toByteArray());
+            }
+        }
+        BodyPublisher publisher = BodyPublishers.ofInputStream(() -> {
+            try {
+                return entity.getContent();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return length > 0 ? BodyPublishers.fromPublisher(publisher, length) : publisher;
+    }
+
+    /**
+     * 在线程池中通过{@link HttpEntity#writeTo}写入管道，写入失败时关闭读取端，使请求以异常结束而不是发送不完整的请求体
+     */
+    private InputStream pipe(HttpEntity entity) {
+        PipedInputStream in = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream out;
+        try {
+            out = new PipedOutputStream(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        executor.execute(() -> {
+            try {
+                entity.writeTo(out);
+                out.close();
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(in);
+            }
+        });
+        return in;
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 读取content的线程池，同时作为JDK client的executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -1,31 +1,72 @@
 package vip.lialun.http;
 
 import vip.lialun.http.methods.*;
+import vip.lialun.thread.HashedWheelTimer;
 import vip.lialun.thread.SimpleThreadFactory;
+import org.apache.http.HttpHost;
 import org.apache.http.client.CookieStore;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.client.cache.FileResourceFactory;
+import org.apache.http.impl.client.cache.ManagedHttpCacheStorage;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
 
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * http 请求工具类
@@ -34,59 +75,325 @@ import java.util.concurrent.TimeUnit;
  * @author lialun
  */
 public final class HttpClient implements Closeable {
+    private static final int LATENCY_SAMPLE_SIZE = 512;
+    /**
+     * 检查预热route空闲连接数量的间隔，单位为s
+     */
+    private static final int PREWARM_INTERVAL_IN_SECONDS = 10;
+    /**
+     * 关闭过期连接的间隔，设置了最长空闲时间时取其一半，不小于{@link #MIN_EVICT_INTERVAL_IN_MILLS}，单位为ms
+     */
+    private static final long EVICT_INTERVAL_IN_MILLS = 30_000;
+    private static final long MIN_EVICT_INTERVAL_IN_MILLS = 1_000;
+    /**
+     * 清理磁盘缓存中已失效文件的间隔，单位为s
+     */
+    private static final int CACHE_CLEAN_INTERVAL_IN_SECONDS = 10;
 
     private final CloseableHttpClient closeableHttpClient;
     private PoolingHttpClientConnectionManager connMgr = null;
+    /**
+     * 缓存到磁盘时的缓存存储，需要定时清理已失效的文件，未设置缓存目录时为null
+     */
+    private ManagedHttpCacheStorage cacheStorage = null;
+    /**
+     * 基于NIO的异步client，首次使用时创建
+     */
+    private volatile CloseableHttpAsyncClient closeableHttpAsyncClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnMgr = null;
     private final CookieStore cookieStore;
+    /**
+     * 同步及异步client共享的SSLContext，TLS会话缓存也因此共享
+     */
+    private final SSLContext sslContext;
+    /**
+     * HTTP/2传输，协议为HTTP/1.1时为null
+     */
+    private final Http2Transport http2Transport;
     private final HttpClientConfig clientConfig;
     private final HttpRequestConfig defaultRequestConfig;
     ScheduledExecutorService connectionManagerTimer = new ScheduledThreadPoolExecutor(1,
             new SimpleThreadFactory("HttpClientConnectionManager"));
+    /**
+     * 请求执行超时（httpExecuteTimeout）定时器，所有请求共享
+     */
+    private final HashedWheelTimer httpExecuteTimeoutTimer = new HashedWheelTimer("HttpClientExecuteTimeout");
+    /**
+     * 因执行超时被中断的请求数量
+     */
+    private final LongAdder httpExecuteTimeoutAbortedCount = new LongAdder();
+    /**
+     * response缓存命中、未命中、重新验证的数量
+     */
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder cacheMissCount = new LongAdder();
+    private final LongAdder cacheValidatedCount = new LongAdder();
+    /**
+     * 请求合并，未开启时为null
+     */
+    private final RequestCoalescer requestCoalescer;
+    /**
+     * 重试预算，未开启时为null
+     */
+    private final RetryBudget retryBudget;
+    /**
+     * 每个route的熔断器，key为scheme://host:port
+     */
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    /**
+     * 拒绝压缩请求体（返回415）的route，格式为scheme://host:port
+     */
+    private final Set<String> requestCompressionRejectedRoutes = ConcurrentHashMap.newKeySet();
+    /**
+     * 每个host的限流器，key为小写的host
+     */
+    private final ConcurrentHashMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    /**
+     * 每个route最近请求的耗时，用于计算对冲等待时间，key为scheme://host:port
+     */
+    private final ConcurrentHashMap<String, LatencyTracker> latencyTrackers = new ConcurrentHashMap<>();
+    /**
+     * 对冲预算，对冲比例小于等于0时为null
+     */
+    private final RetryBudget hedgeBudget;
+    /**
+     * 执行对冲请求的线程池，首次使用时创建
+     */
+    private volatile ExecutorService hedgeExecutor;
+    /**
+     * 发出的对冲请求数量及对冲请求先返回的数量
+     */
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder hedgeWinCount = new LongAdder();
+    /**
+     * 每个route的请求统计，key为scheme://host:port
+     */
+    private final ConcurrentHashMap<String, RouteMetrics> routeMetrics = new ConcurrentHashMap<>();
+    /**
+     * 单独设置的route最大连接数，不参与连接池自动调整
+     */
+    private final ConcurrentHashMap<HttpRoute, Integer> routeMaxConnections = new ConcurrentHashMap<>();
+    /**
+     * 连接池大小，可以在运行中修改
+     */
+    private volatile int maxConnection;
+    private volatile int maxConnectionPerRoute;
 
     HttpClient(final HttpClientConfig httpClientConfig, HttpRequestConfig defaultHttpRequestConfig) {
         this.clientConfig = httpClientConfig;
         this.defaultRequestConfig = defaultHttpRequestConfig;
+        this.requestCoalescer = httpClientConfig.isRequestCoalescingEnabled() ? new RequestCoalescer() : null;
+        this.retryBudget = httpClientConfig.getRetryBudgetRatio() > 0 ?
+                new RetryBudget(httpClientConfig.getRetryBudgetRatio(), httpClientConfig.getRetryBudgetMinPerSecond()) : null;
+        this.hedgeBudget = httpClientConfig.getHedgeBudgetRatio() > 0 ? new RetryBudget(httpClientConfig.getHedgeBudgetRatio(), 0) : null;
+        this.maxConnection = httpClientConfig.getMaxConnection();
+        this.maxConnectionPerRoute = httpClientConfig.getMaxConnectionPerRoute();
+        if (httpClientConfig.getRouteMaxConnections() != null) {
+            httpClientConfig.getRouteMaxConnections().forEach((host, max) ->
+                    routeMaxConnections.put(toHttpRoute(HttpHost.create(host)), max));
+        }
 
         // 设置cookie store
         cookieStore = new BasicCookieStore();
         // 创建client
-        org.apache.http.impl.client.HttpClientBuilder apacheHttpClientBuilder = org.apache.http.impl.client.HttpClientBuilder.create();
+        org.apache.http.impl.client.HttpClientBuilder apacheHttpClientBuilder = httpClientConfig.isCacheEnabled()
+                ? createCachingHttpClientBuilder() : org.apache.http.impl.client.HttpClientBuilder.create();
         apacheHttpClientBuilder.setDefaultCookieStore(cookieStore)
                 .setRedirectStrategy(new LaxRedirectStrategy())
                 //不在client层设置retry，设置在request中
                 .setRetryHandler((exception, executionCount, context) -> false);
-        if (httpClientConfig.isTrustAllSslCertificate()) {
-            Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
-                    .<ConnectionSocketFactory>create()
-                    .register("http", PlainConnectionSocketFactory.INSTANCE)
-                    .register("https", createSslIgnoredConnectionSocketFactory()).build();
-            connMgr = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-        } else {
-            connMgr = new PoolingHttpClientConnectionManager();
+        sslContext = createSslContext();
+        http2Transport = httpClientConfig.getProtocol() == HttpProtocol.HTTP_2
+                ? new Http2Transport(defaultRequestConfig, sslContext) : null;
+        DnsResolver dnsResolver = httpClientConfig.getDnsResolver();
+        ConnectionSocketFactory plainSocketFactory = PlainConnectionSocketFactory.INSTANCE;
+        ConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext, getHostnameVerifier());
+        if (dnsResolver instanceof CachingDnsResolver) {
+            // 统计每个地址的连接数量，用于按连接数量选择地址
+            plainSocketFactory = new ConnectionCountingSocketFactory(plainSocketFactory, (CachingDnsResolver) dnsResolver);
+            sslSocketFactory = new ConnectionCountingSocketFactory(sslSocketFactory, (CachingDnsResolver) dnsResolver);
         }
-        connMgr.setMaxTotal(httpClientConfig.getMaxConnection());
-        connMgr.setDefaultMaxPerRoute(httpClientConfig.getMaxConnectionPerRoute());
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
+                .<ConnectionSocketFactory>create()
+                .register("http", plainSocketFactory)
+                .register("https", sslSocketFactory).build();
+        long timeToLive = getConnectionTimeToLive();
+        connMgr = httpClientConfig.isMetricsEnabled()
+                ? new MeteredConnectionManager(socketFactoryRegistry, dnsResolver, timeToLive, this::recordLeaseWait)
+                : new PoolingHttpClientConnectionManager(socketFactoryRegistry, null, null, dnsResolver,
+                timeToLive, TimeUnit.MILLISECONDS);
+        configurePool(connMgr, connMgr::getRoutes);
         connMgr.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(clientConfig.getSslSoTimeout()).build());
-        apacheHttpClientBuilder.setConnectionManager(connMgr);
+        apacheHttpClientBuilder.setConnectionManager(connMgr)
+                .setKeepAliveStrategy(createKeepAliveStrategy());
+        // 定时关闭超过存活时间、Keep-Alive时间及最长空闲时间的连接，连接逐个过期，不会同时重建整个连接池
+        long maxIdleTime = clientConfig.getConnectionMaxIdleTime();
+        long evictInterval = maxIdleTime > 0
+                ? Math.min(EVICT_INTERVAL_IN_MILLS, Math.max(MIN_EVICT_INTERVAL_IN_MILLS, maxIdleTime / 2))
+                : EVICT_INTERVAL_IN_MILLS;
         this.connectionManagerTimer.scheduleWithFixedDelay(() -> {
-            if (connMgr != null) {
-                connMgr.closeExpiredConnections();
+            closeExpiredConnections();
+            if (maxIdleTime > 0) {
+                closeIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
             }
-        }, 90, 30, TimeUnit.SECONDS);
+        }, evictInterval, evictInterval, TimeUnit.MILLISECONDS);
         connMgr.closeExpiredConnections();
         closeableHttpClient = apacheHttpClientBuilder.build();
+        prewarm();
+    }
+
+    /**
+     * 连接池中连接的存活时间，单位为ms，不限制时为-1
+     */
+    private long getConnectionTimeToLive() {
+        return clientConfig.getConnectionTimeToLive() > 0 ? clientConfig.getConnectionTimeToLive() : -1;
+    }
+
+    /**
+     * 未设置保持时间策略时，使用服务端Keep-Alive响应头中的timeout，不超过最长空闲时间；
+     * 没有Keep-Alive响应头时，保持最长空闲时间，未设置最长空闲时间时一直保持
+     */
+    private ConnectionKeepAliveStrategy createKeepAliveStrategy() {
+        if (clientConfig.getKeepAliveStrategy() != null) {
+            return clientConfig.getKeepAliveStrategy();
+        }
+        long maxIdleTime = clientConfig.getConnectionMaxIdleTime();
+        if (maxIdleTime <= 0) {
+            return DefaultConnectionKeepAliveStrategy.INSTANCE;
+        }
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? Math.min(keepAlive, maxIdleTime) : maxIdleTime;
+        };
     }
 
-    private SSLConnectionSocketFactory createSslIgnoredConnectionSocketFactory() {
+    /**
+     * 在connectionManagerTimer中预先建立到预热route的连接，之后定时补充空闲连接，不阻塞client的创建
+     */
+    private void prewarm() {
+        List<String> prewarmRoutes = clientConfig.getPrewarmRoutes();
+        if (prewarmRoutes == null || prewarmRoutes.isEmpty() || clientConfig.getPrewarmConnectionsPerRoute() <= 0) {
+            return;
+        }
+        List<HttpRoute> routes = new ArrayList<>(prewarmRoutes.size());
+        for (String route : prewarmRoutes) {
+            routes.add(toHttpRoute(HttpHost.create(route)));
+        }
+        ConnectionPrewarmer prewarmer = new ConnectionPrewarmer(connMgr, routes,
+                clientConfig.getPrewarmConnectionsPerRoute(), defaultRequestConfig.getConnTimeout());
+        connectionManagerTimer.scheduleWithFixedDelay(prewarmer, 0, PREWARM_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 创建带缓存的client builder
+     * 作为客户端私有缓存，遵循Cache-Control/Expires，过期后使用If-None-Match/If-Modified-Since重新验证，
+     * 服务端返回304时直接返回缓存的response。
+     * 设置了缓存目录时body保存在磁盘上代替内存（不是内存之外的二级缓存），被淘汰或重新验证后失效的文件定时删除
+     */
+    private CachingHttpClientBuilder createCachingHttpClientBuilder() {
+        CachingHttpClientBuilder builder = CachingHttpClientBuilder.create();
+        CacheConfig cacheConfig = CacheConfig.custom()
+                .setMaxCacheEntries(clientConfig.getCacheMaxEntries())
+                .setMaxObjectSize(clientConfig.getCacheMaxObjectSize())
+                .setSharedCache(false)
+                .build();
+        builder.setCacheConfig(cacheConfig);
+        if (clientConfig.getCacheDirectory() != null) {
+            try {
+                Files.createDirectories(clientConfig.getCacheDirectory());
+            } catch (IOException e) {
+                throw new HttpException("HttpClient缓存目录创建失败", e);
+            }
+            cacheStorage = new ManagedHttpCacheStorage(cacheConfig);
+            builder.setResourceFactory(new FileResourceFactory(clientConfig.getCacheDirectory().toFile()))
+                    .setHttpCacheStorage(cacheStorage);
+            connectionManagerTimer.scheduleWithFixedDelay(cacheStorage::cleanResources, CACHE_CLEAN_INTERVAL_IN_SECONDS,
+                    CACHE_CLEAN_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        }
+        return builder;
+    }
+
+    /**
+     * 创建SSLContext，并按配置设置TLS会话缓存的大小及有效时间，重新建立连接时可以恢复会话，省去完整握手
+     */
+    private SSLContext createSslContext() {
+        SSLContext context = clientConfig.isTrustAllSslCertificate() ? createSslIgnoredContext() : SSLContexts.createDefault();
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        sessionContext.setSessionCacheSize(clientConfig.getSslSessionCacheSize());
+        sessionContext.setSessionTimeout((int) TimeUnit.MILLISECONDS.toSeconds(clientConfig.getSslSessionTimeout()));
+        return context;
+    }
+
+    private HostnameVerifier getHostnameVerifier() {
+        return clientConfig.isTrustAllSslCertificate()
+                ? NoopHostnameVerifier.INSTANCE : SSLConnectionSocketFactory.getDefaultHostnameVerifier();
+    }
+
+    private SSLContext createSslIgnoredContext() {
         try {
-            SSLContext sslContext = new SSLContextBuilder()
+            return new SSLContextBuilder()
                     .loadTrustMaterial(null, (x509CertChain, authType) -> true).build();
-            return new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
         } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
             throw new HttpException("HttpClient创建失败", e);
         }
     }
 
+    /**
+     * 创建基于NIO的异步client
+     * 与同步client共享cookie store、重定向策略及连接池大小配置，少量I/O线程即可支撑大量并发请求
+     */
+    private CloseableHttpAsyncClient createCloseableHttpAsyncClient() {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+                .setSoTimeout(clientConfig.getSslSoTimeout())
+                .build();
+        try {
+            Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder
+                    .<SchemeIOSessionStrategy>create()
+                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                    .register("https", new SSLIOSessionStrategy(sslContext, getHostnameVerifier()))
+                    .build();
+            asyncConnMgr = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig),
+                    null, sessionStrategyRegistry, null, clientConfig.getDnsResolver(),
+                    getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+        } catch (IOReactorException e) {
+            throw new HttpException("HttpAsyncClient创建失败", e);
+        }
+        configurePool(asyncConnMgr, asyncConnMgr::getRoutes);
+        CloseableHttpAsyncClient asyncClient = HttpAsyncClients.custom()
+                .setConnectionManager(asyncConnMgr)
+                .setKeepAliveStrategy(createKeepAliveStrategy())
+                .setDefaultCookieStore(cookieStore)
+                .setRedirectStrategy(new LaxRedirectStrategy())
+                .build();
+        asyncClient.start();
+        return asyncClient;
+    }
+
+    /**
+     * 设置连接池大小及单独设置的route最大连接数，开启自动调整时定时调整route最大连接数
+     */
+    private void configurePool(final ConnPoolControl<HttpRoute> pool, final Supplier<Set<HttpRoute>> routes) {
+        pool.setMaxTotal(maxConnection);
+        pool.setDefaultMaxPerRoute(maxConnectionPerRoute);
+        routeMaxConnections.forEach(pool::setMaxPerRoute);
+        if (clientConfig.isPoolAutoTuneEnabled()) {
+            ConnectionPoolTuner tuner = new ConnectionPoolTuner(pool, routes, () -> clientConfig.getPoolAutoTuneMaxPerRoute() > 0
+                    ? clientConfig.getPoolAutoTuneMaxPerRoute() : maxConnection, routeMaxConnections::containsKey);
+            connectionManagerTimer.scheduleWithFixedDelay(tuner, clientConfig.getPoolAutoTuneInterval(),
+                    clientConfig.getPoolAutoTuneInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 连接池中host对应的route，与请求时计算出的route一致（不使用代理）
+     */
+    private static HttpRoute toHttpRoute(final HttpHost host) {
+        boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+        int port = host.getPort() > 0 ? host.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(host.getHostName(), port, host.getSchemeName()), null, secure);
+    }
+
     public static HttpClientBuilder builder() {
         return new HttpClientBuilder();
     }
@@ -95,10 +402,42 @@ public final class HttpClient implements Closeable {
         return closeableHttpClient;
     }
 
+    /**
+     * 获取基于NIO的异步client，首次调用时创建并启动
+     */
+    public CloseableHttpAsyncClient getCloseableHttpAsyncClient() {
+        if (closeableHttpAsyncClient == null) {
+            synchronized (this) {
+                if (closeableHttpAsyncClient == null) {
+                    closeableHttpAsyncClient = createCloseableHttpAsyncClient();
+                }
+            }
+        }
+        return closeableHttpAsyncClient;
+    }
+
     @Override
     public void close() throws IOException {
         closeableHttpClient.close();
+        synchronized (this) {
+            if (closeableHttpAsyncClient != null) {
+                closeableHttpAsyncClient.close();
+            }
+        }
+        if (http2Transport != null) {
+            http2Transport.close();
+        }
         connectionManagerTimer.shutdown();
+        if (cacheStorage != null) {
+            //删除缓存文件
+            cacheStorage.shutdown();
+        }
+        httpExecuteTimeoutTimer.stop();
+        synchronized (this) {
+            if (hedgeExecutor != null) {
+                hedgeExecutor.shutdownNow();
+            }
+        }
     }
 
     public HttpGet get(String url) {
@@ -147,6 +486,106 @@ public final class HttpClient implements Closeable {
         return connMgr.getTotalStats();
     }
 
+    /**
+     * 获取host对应route的当前连接池信息，包括租用、等待、空闲及最大连接数
+     */
+    public PoolStats getPoolStats(final HttpHost host) {
+        if (connMgr == null) {
+            return null;
+        }
+        return connMgr.getStats(toHttpRoute(host));
+    }
+
+    /**
+     * 获取连接池中所有route的当前连接池信息，key为scheme://host:port
+     */
+    public Map<String, PoolStats> getRoutePoolStats() {
+        if (connMgr == null) {
+            return Collections.emptyMap();
+        }
+        return getRoutePoolStats(connMgr, connMgr.getRoutes());
+    }
+
+    /**
+     * 获取异步连接池中所有route的当前连接池信息，key为scheme://host:port，异步client尚未创建时返回空map
+     */
+    public Map<String, PoolStats> getAsyncRoutePoolStats() {
+        PoolingNHttpClientConnectionManager pool = asyncConnMgr;
+        if (pool == null) {
+            return Collections.emptyMap();
+        }
+        return getRoutePoolStats(pool, pool.getRoutes());
+    }
+
+    private static Map<String, PoolStats> getRoutePoolStats(final ConnPoolControl<HttpRoute> pool, final Set<HttpRoute> routes) {
+        Map<String, PoolStats> stats = new TreeMap<>();
+        for (HttpRoute route : routes) {
+            stats.put(toRoute(route.getTargetHost()), pool.getStats(route));
+        }
+        return stats;
+    }
+
+    /**
+     * 修改连接池的最大连接数，同时作用于同步及异步连接池
+     */
+    public void setMaxConnection(final int maxConnection) {
+        this.maxConnection = maxConnection;
+        forEachPool(pool -> pool.setMaxTotal(maxConnection));
+    }
+
+    /**
+     * 修改默认的route最大连接数，同时作用于同步及异步连接池，已经单独设置或自动扩大的route不受影响
+     */
+    public void setMaxConnectionPerRoute(final int maxConnectionPerRoute) {
+        this.maxConnectionPerRoute = maxConnectionPerRoute;
+        forEachPool(pool -> pool.setDefaultMaxPerRoute(maxConnectionPerRoute));
+    }
+
+    /**
+     * 单独设置host对应route的最大连接数，同时作用于同步及异步连接池，设置后不再参与自动调整
+     *
+     * @param host                  host，如https://example.com
+     * @param maxConnectionPerRoute 最大连接数，小于等于0时取消单独设置，恢复为默认值
+     */
+    public void setMaxConnectionPerRoute(final HttpHost host, final int maxConnectionPerRoute) {
+        HttpRoute route = toHttpRoute(host);
+        if (maxConnectionPerRoute > 0) {
+            routeMaxConnections.put(route, maxConnectionPerRoute);
+            forEachPool(pool -> pool.setMaxPerRoute(route, maxConnectionPerRoute));
+        } else {
+            routeMaxConnections.remove(route);
+            //小于0时移除route的单独设置
+            forEachPool(pool -> pool.setMaxPerRoute(route, -1));
+        }
+    }
+
+    /**
+     * 获取host对应route当前的最大连接数
+     */
+    public int getMaxConnectionPerRoute(final HttpHost host) {
+        return connMgr.getMaxPerRoute(toHttpRoute(host));
+    }
+
+    private void forEachPool(final Consumer<ConnPoolControl<HttpRoute>> action) {
+        if (connMgr != null) {
+            action.accept(connMgr);
+        }
+        PoolingNHttpClientConnectionManager pool = asyncConnMgr;
+        if (pool != null) {
+            action.accept(pool);
+        }
+    }
+
+    /**
+     * 获取当前异步连接池信息，异步client尚未创建时返回null
+     */
+    public PoolStats getAsyncPoolStats() {
+        if (asyncConnMgr == null) {
+            return null;
+        }
+        return asyncConnMgr.getTotalStats();
+    }
+
     /**
      * 关闭连接池中过期的链接
      */
@@ -155,6 +594,9 @@ public final class HttpClient implements Closeable {
             return;
         }
         connMgr.closeExpiredConnections();
+        if (asyncConnMgr != null) {
+            asyncConnMgr.closeExpiredConnections();
+        }
     }
 
     /**
@@ -165,6 +607,315 @@ public final class HttpClient implements Closeable {
             return;
         }
         connMgr.closeIdleConnections(idleTimeout, timeUnit);
+        if (asyncConnMgr != null) {
+            asyncConnMgr.closeIdleConnections(idleTimeout, timeUnit);
+        }
+    }
+
+    /**
+     * 注册请求执行超时，到期后中断请求
+     *
+     * @param request            需要中断的请求
+     * @param httpExecuteTimeout 执行超时时间，单位为ms
+     * @return 超时句柄，请求完成后需要调用{@link HashedWheelTimer.Timeout#cancel()}
+     */
+    public HashedWheelTimer.Timeout scheduleHttpExecuteTimeout(final HttpRequestBase request, final int httpExecuteTimeout) {
+        return scheduleHttpExecuteTimeout(request::abort, httpExecuteTimeout);
+    }
+
+    /**
+     * 注册请求执行超时，到期后执行中断操作
+     *
+     * @param abortAction        中断请求的操作
+     * @param httpExecuteTimeout 执行超时时间，单位为ms
+     * @return 超时句柄，请求完成后需要调用{@link HashedWheelTimer.Timeout#cancel()}
+     */
+    public HashedWheelTimer.Timeout scheduleHttpExecuteTimeout(final Runnable abortAction, final int httpExecuteTimeout) {
+        return httpExecuteTimeoutTimer.newTimeout(() -> {
+            //先计数再中断，保证请求线程感知到超时时计数已经可见
+            httpExecuteTimeoutAbortedCount.increment();
+            abortAction.run();
+        }, httpExecuteTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取请求合并器，未开启请求合并时返回null
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * 获取重试预算，未开启重试预算时返回null
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * 获取route对应的熔断器，不存在时创建，未开启熔断器时返回null
+     */
+    public CircuitBreaker getCircuitBreaker(final HttpHost host) {
+        if (!clientConfig.isCircuitBreakerEnabled()) {
+            return null;
+        }
+        return circuitBreakers.computeIfAbsent(toRoute(host), this::createCircuitBreaker);
+    }
+
+    /**
+     * route的标识，格式为scheme://host:port，省略的端口补全为默认端口
+     */
+    private static String toRoute(final HttpHost host) {
+        int port = host.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80;
+        }
+        return host.getSchemeName().toLowerCase() + "://" + host.getHostName().toLowerCase() + ":" + port;
+    }
+
+    /**
+     * route是否拒绝压缩的请求体
+     */
+    public boolean isRequestCompressionRejected(final HttpHost host) {
+        return !requestCompressionRejectedRoutes.isEmpty() && requestCompressionRejectedRoutes.contains(toRoute(host));
+    }
+
+    /**
+     * 记录route拒绝压缩的请求体，之后发往该route的请求不再压缩
+     */
+    public void rejectRequestCompression(final HttpHost host) {
+        requestCompressionRejectedRoutes.add(toRoute(host));
+    }
+
+    /**
+     * 获取拒绝压缩请求体的route，格式为scheme://host:port
+     */
+    public Set<String> getRequestCompressionRejectedRoutes() {
+        return Collections.unmodifiableSet(requestCompressionRejectedRoutes);
+    }
+
+    private CircuitBreaker createCircuitBreaker(final String route) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(route, clientConfig.getCircuitBreakerFailureRateThreshold(),
+                clientConfig.getCircuitBreakerSlowCallRateThreshold(), clientConfig.getCircuitBreakerSlowCallDuration(),
+                clientConfig.getCircuitBreakerWindowSize(), clientConfig.getCircuitBreakerMinimumCalls(),
+                clientConfig.getCircuitBreakerOpenDuration(), clientConfig.getCircuitBreakerHalfOpenCalls());
+        if (clientConfig.getCircuitBreakerListener() != null) {
+            circuitBreaker.addListener(clientConfig.getCircuitBreakerListener());
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * 获取所有已创建的熔断器，key为scheme://host:port
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(circuitBreakers);
+    }
+
+    /**
+     * 获取host对应的限流器，没有单独设置且未开启默认限流时返回null
+     */
+    public RateLimiter getRateLimiter(final String host) {
+        String key = host.toLowerCase();
+        RateLimiter rateLimiter = rateLimiters.get(key);
+        if (rateLimiter != null || clientConfig.getRateLimitPerSecond() <= 0) {
+            return rateLimiter;
+        }
+        return rateLimiters.computeIfAbsent(key, k ->
+                new RateLimiter(k, clientConfig.getRateLimitPerSecond(), clientConfig.getRateLimitBurst()));
+    }
+
+    /**
+     * 单独设置某个host的限流速率，优先于{@link HttpClientConfig#getRateLimitPerSecond()}，运行中修改立即生效
+     *
+     * @param host             host，不包括端口
+     * @param permitsPerSecond 每秒允许的请求数量
+     * @param burst            允许的突发请求数量
+     */
+    public void setRateLimit(final String host, final double permitsPerSecond, final int burst) {
+        rateLimiters.compute(host.toLowerCase(), (key, rateLimiter) -> {
+            if (rateLimiter == null) {
+                return new RateLimiter(key, permitsPerSecond, burst);
+            }
+            rateLimiter.setRate(permitsPerSecond, burst);
+            return rateLimiter;
+        });
+    }
+
+    /**
+     * 获取所有已创建的限流器，key为小写的host
+     */
+    public Map<String, RateLimiter> getRateLimiters() {
+        return Collections.unmodifiableMap(rateLimiters);
+    }
+
+    /**
+     * 获取route最近请求的耗时统计，不存在时创建
+     */
+    public LatencyTracker getLatencyTracker(final HttpHost host) {
+        return latencyTrackers.computeIfAbsent(toRoute(host), route -> new LatencyTracker(LATENCY_SAMPLE_SIZE));
+    }
+
+    /**
+     * 获取对冲预算，未开启时返回null
+     */
+    public RetryBudget getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+    /**
+     * 注册对冲任务，到期后执行
+     *
+     * @param task  发送对冲请求的任务，应当足够轻量
+     * @param delay 延迟时间，单位为ms
+     * @return 任务句柄，原请求完成后需要调用{@link HashedWheelTimer.Timeout#cancel()}
+     */
+    public HashedWheelTimer.Timeout scheduleHedge(final Runnable task, final long delay) {
+        return httpExecuteTimeoutTimer.newTimeout(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在对冲线程池中执行对冲请求
+     *
+     * @param hedge 对冲请求
+     */
+    public void executeHedge(final Runnable hedge) {
+        if (hedgeExecutor == null) {
+            synchronized (this) {
+                if (hedgeExecutor == null) {
+                    ThreadFactory threadFactory = new SimpleThreadFactory("HttpClientHedge");
+                    hedgeExecutor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = threadFactory.newThread(r);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        hedgeCount.increment();
+        hedgeExecutor.execute(hedge);
+    }
+
+    /**
+     * 记录对冲请求先于原请求成功返回
+     */
+    public void recordHedgeWin() {
+        hedgeWinCount.increment();
+    }
+
+    /**
+     * 获取发出的对冲请求数量
+     */
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    /**
+     * 获取对冲请求先于原请求成功返回的数量
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.sum();
+    }
+
+    /**
+     * 获取route对应的请求统计，不存在时创建，未开启统计时返回null
+     */
+    public RouteMetrics getRouteMetrics(final HttpHost host) {
+        if (!clientConfig.isMetricsEnabled()) {
+            return null;
+        }
+        return routeMetrics.computeIfAbsent(toRoute(host), RouteMetrics::new);
+    }
+
+    private void recordLeaseWait(final HttpRoute route, final long nanos) {
+        RouteMetrics metrics = getRouteMetrics(route.getTargetHost());
+        if (metrics != null) {
+            metrics.recordLeaseWait(nanos);
+        }
+    }
+
+    /**
+     * 获取所有route当前请求统计的快照，key为scheme://host:port，未开启统计时返回空map
+     */
+    public Map<String, RouteMetrics.Snapshot> getMetricsSnapshot() {
+        Map<String, RouteMetrics.Snapshot> snapshot = new TreeMap<>();
+        routeMetrics.forEach((route, metrics) -> snapshot.put(route, metrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * 记录请求的缓存状态，未开启缓存时忽略
+     */
+    public void recordCacheResponseStatus(final HttpContext context) {
+        if (!clientConfig.isCacheEnabled()) {
+            return;
+        }
+        CacheResponseStatus status = HttpCacheContext.adapt(context).getCacheResponseStatus();
+        if (status == null) {
+            return;
+        }
+        switch (status) {
+            case CACHE_HIT:
+                cacheHitCount.increment();
+                break;
+            case VALIDATED:
+                cacheValidatedCount.increment();
+                break;
+            case CACHE_MISS:
+                cacheMissCount.increment();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 获取直接由缓存返回的请求数量
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.sum();
+    }
+
+    /**
+     * 获取缓存未命中的请求数量
+     */
+    public long getCacheMissCount() {
+        return cacheMissCount.sum();
+    }
+
+    /**
+     * 获取缓存过期后经服务端验证（304）仍然有效，由缓存返回的请求数量
+     */
+    public long getCacheValidatedCount() {
+        return cacheValidatedCount.sum();
+    }
+
+    /**
+     * 获取因执行超时（httpExecuteTimeout）被中断的请求数量
+     */
+    public long getHttpExecuteTimeoutAbortedCount() {
+        return httpExecuteTimeoutAbortedCount.sum();
+    }
+
+    /**
+     * 获取当前等待中的执行超时任务数量
+     */
+    public long getHttpExecuteTimeoutPendingCount() {
+        return httpExecuteTimeoutTimer.getPendingCount();
+    }
+
+    /**
+     * 获取同步及异步client共享的SSLContext
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * 获取HTTP/2传输，协议为HTTP/1.1时返回null
+     */
+    public Http2Transport getHttp2Transport() {
+        return http2Transport;
     }
 
     public CookieStore getCookieStore() {
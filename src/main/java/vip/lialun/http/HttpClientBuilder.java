@@ -1,8 +1,18 @@
 package vip.lialun.http;
 
 import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
 
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 /**
  * HttpClient配置信息
@@ -21,6 +31,19 @@ public class HttpClientBuilder implements HttpClientConfig.FluentBuilder<HttpCli
         return new HttpClient(httpClientConfig, httpRequestConfig);
     }
 
+    /**
+     * 创建client后在后台预先建立并验证到指定route的连接，避免首批请求承担TCP及TLS握手的耗时，
+     * 之后空闲连接数量不足connectionsPerRoute时定时补充。build()不等待预热完成
+     *
+     * @param routes              route，如https://example.com
+     * @param connectionsPerRoute 每个route的连接数量
+     */
+    public HttpClientBuilder prewarm(Collection<String> routes, int connectionsPerRoute) {
+        httpClientConfig.setPrewarmRoutes(new ArrayList<>(routes));
+        httpClientConfig.setPrewarmConnectionsPerRoute(connectionsPerRoute);
+        return this;
+    }
+
     @Override
     public HttpClientBuilder setTrustAllSslCertificate(boolean trustAllSslCertificate) {
         httpClientConfig.setTrustAllSslCertificate(trustAllSslCertificate);
@@ -145,4 +168,278 @@ public class HttpClientBuilder implements HttpClientConfig.FluentBuilder<HttpCli
         httpRequestConfig.setCookieSpecs(cookieSpecs);
         return this;
     }
+
+    @Override
+    public HttpClientBuilder setExpectContinueEnabled(boolean expectContinueEnabled) {
+        httpRequestConfig.setExpectContinueEnabled(expectContinueEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCacheEnabled(boolean cacheEnabled) {
+        httpClientConfig.setCacheEnabled(cacheEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCacheMaxEntries(int cacheMaxEntries) {
+        httpClientConfig.setCacheMaxEntries(cacheMaxEntries);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCacheMaxObjectSize(long cacheMaxObjectSize) {
+        httpClientConfig.setCacheMaxObjectSize(cacheMaxObjectSize);
+        return this;
+    }
+
+    /**
+     * 缓存body的磁盘目录，设置后body保存在磁盘上代替内存（不是二级缓存），
+     * 被淘汰或重新验证后失效的文件定时删除，client关闭时删除全部缓存文件
+     */
+    @Override
+    public HttpClientBuilder setCacheDirectory(Path cacheDirectory) {
+        httpClientConfig.setCacheDirectory(cacheDirectory);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRequestCoalescingEnabled(boolean requestCoalescingEnabled) {
+        httpClientConfig.setRequestCoalescingEnabled(requestCoalescingEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setBackoffPolicy(BackoffPolicy backoffPolicy) {
+        httpRequestConfig.setBackoffPolicy(backoffPolicy);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRetryableStatus(IntPredicate retryableStatus) {
+        httpRequestConfig.setRetryableStatus(retryableStatus);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRetryableException(Predicate<Exception> retryableException) {
+        httpRequestConfig.setRetryableException(retryableException);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRespectRetryAfter(boolean respectRetryAfter) {
+        httpRequestConfig.setRespectRetryAfter(respectRetryAfter);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setMaxRetryAfter(int maxRetryAfter) {
+        httpRequestConfig.setMaxRetryAfter(maxRetryAfter);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRetryBudgetRatio(double retryBudgetRatio) {
+        httpClientConfig.setRetryBudgetRatio(retryBudgetRatio);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRetryBudgetMinPerSecond(int retryBudgetMinPerSecond) {
+        httpClientConfig.setRetryBudgetMinPerSecond(retryBudgetMinPerSecond);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setDeadline(Duration deadline) {
+        httpRequestConfig.setDeadline(deadline);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        httpClientConfig.setCircuitBreakerEnabled(circuitBreakerEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerFailureRateThreshold(int circuitBreakerFailureRateThreshold) {
+        httpClientConfig.setCircuitBreakerFailureRateThreshold(circuitBreakerFailureRateThreshold);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerSlowCallRateThreshold(int circuitBreakerSlowCallRateThreshold) {
+        httpClientConfig.setCircuitBreakerSlowCallRateThreshold(circuitBreakerSlowCallRateThreshold);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerSlowCallDuration(int circuitBreakerSlowCallDuration) {
+        httpClientConfig.setCircuitBreakerSlowCallDuration(circuitBreakerSlowCallDuration);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerWindowSize(int circuitBreakerWindowSize) {
+        httpClientConfig.setCircuitBreakerWindowSize(circuitBreakerWindowSize);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerMinimumCalls(int circuitBreakerMinimumCalls) {
+        httpClientConfig.setCircuitBreakerMinimumCalls(circuitBreakerMinimumCalls);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerOpenDuration(int circuitBreakerOpenDuration) {
+        httpClientConfig.setCircuitBreakerOpenDuration(circuitBreakerOpenDuration);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerHalfOpenCalls(int circuitBreakerHalfOpenCalls) {
+        httpClientConfig.setCircuitBreakerHalfOpenCalls(circuitBreakerHalfOpenCalls);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setCircuitBreakerListener(CircuitBreaker.StateListener circuitBreakerListener) {
+        httpClientConfig.setCircuitBreakerListener(circuitBreakerListener);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRateLimitPerSecond(double rateLimitPerSecond) {
+        httpClientConfig.setRateLimitPerSecond(rateLimitPerSecond);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRateLimitBurst(int rateLimitBurst) {
+        httpClientConfig.setRateLimitBurst(rateLimitBurst);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRateLimitTimeout(int rateLimitTimeout) {
+        httpRequestConfig.setRateLimitTimeout(rateLimitTimeout);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setHedgingEnabled(boolean hedgingEnabled) {
+        httpRequestConfig.setHedgingEnabled(hedgingEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setHedgeDelay(int hedgeDelay) {
+        httpRequestConfig.setHedgeDelay(hedgeDelay);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setHedgeBudgetRatio(double hedgeBudgetRatio) {
+        httpClientConfig.setHedgeBudgetRatio(hedgeBudgetRatio);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setMetricsEnabled(boolean metricsEnabled) {
+        httpClientConfig.setMetricsEnabled(metricsEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRouteMaxConnections(Map<String, Integer> routeMaxConnections) {
+        httpClientConfig.setRouteMaxConnections(routeMaxConnections);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setPoolAutoTuneEnabled(boolean poolAutoTuneEnabled) {
+        httpClientConfig.setPoolAutoTuneEnabled(poolAutoTuneEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setPoolAutoTuneInterval(int poolAutoTuneInterval) {
+        httpClientConfig.setPoolAutoTuneInterval(poolAutoTuneInterval);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setPoolAutoTuneMaxPerRoute(int poolAutoTuneMaxPerRoute) {
+        httpClientConfig.setPoolAutoTuneMaxPerRoute(poolAutoTuneMaxPerRoute);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setPrewarmRoutes(List<String> prewarmRoutes) {
+        httpClientConfig.setPrewarmRoutes(prewarmRoutes);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setPrewarmConnectionsPerRoute(int prewarmConnectionsPerRoute) {
+        httpClientConfig.setPrewarmConnectionsPerRoute(prewarmConnectionsPerRoute);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setSslSessionCacheSize(int sslSessionCacheSize) {
+        httpClientConfig.setSslSessionCacheSize(sslSessionCacheSize);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setSslSessionTimeout(int sslSessionTimeout) {
+        httpClientConfig.setSslSessionTimeout(sslSessionTimeout);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setDnsResolver(DnsResolver dnsResolver) {
+        httpClientConfig.setDnsResolver(dnsResolver);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setProtocol(HttpProtocol protocol) {
+        httpClientConfig.setProtocol(protocol);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        httpRequestConfig.setRequestCompressionEnabled(requestCompressionEnabled);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setRequestCompressionThreshold(int requestCompressionThreshold) {
+        httpRequestConfig.setRequestCompressionThreshold(requestCompressionThreshold);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setConnectionTimeToLive(int connectionTimeToLive) {
+        httpClientConfig.setConnectionTimeToLive(connectionTimeToLive);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setConnectionMaxIdleTime(int connectionMaxIdleTime) {
+        httpClientConfig.setConnectionMaxIdleTime(connectionMaxIdleTime);
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilder setKeepAliveStrategy(ConnectionKeepAliveStrategy keepAliveStrategy) {
+        httpClientConfig.setKeepAliveStrategy(keepAliveStrategy);
+        return this;
+    }
 }
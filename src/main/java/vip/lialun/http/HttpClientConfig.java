@@ -1,5 +1,12 @@
 package vip.lialun.http;
 
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
 /**
  * HttpClient配置信息
  *
@@ -15,6 +22,172 @@ public interface HttpClientConfig {
 
     int getSslSoTimeout();
 
+    /**
+     * 是否开启RFC 7234 response缓存
+     */
+    boolean isCacheEnabled();
+
+    /**
+     * 缓存的最大条目数，超过后按LRU淘汰
+     */
+    int getCacheMaxEntries();
+
+    /**
+     * 单个response body可被缓存的最大字节数
+     */
+    long getCacheMaxObjectSize();
+
+    /**
+     * 缓存body的磁盘目录，为null时只缓存在内存中。
+     * 设置后body只保存在磁盘上代替内存，并非内存之外的二级缓存，client关闭时删除缓存文件
+     */
+    Path getCacheDirectory();
+
+    /**
+     * 是否合并并发的相同GET/HEAD请求，合并后只发送一次请求，所有调用方共享同一个response
+     */
+    boolean isRequestCoalescingEnabled();
+
+    /**
+     * 重试预算，允许的重试数量与请求数量的比例，小于等于0时不限制
+     */
+    double getRetryBudgetRatio();
+
+    /**
+     * 重试预算，每秒最少允许的重试数量
+     */
+    int getRetryBudgetMinPerSecond();
+
+    /**
+     * 是否为每个route开启熔断器，熔断器打开时请求直接以{@link CircuitBreakerOpenException}失败，不占用连接
+     */
+    boolean isCircuitBreakerEnabled();
+
+    /**
+     * 熔断器的失败率阈值，百分比
+     */
+    int getCircuitBreakerFailureRateThreshold();
+
+    /**
+     * 熔断器的慢请求率阈值，百分比
+     */
+    int getCircuitBreakerSlowCallRateThreshold();
+
+    /**
+     * 耗时达到此值的请求记为慢请求，单位为ms
+     */
+    int getCircuitBreakerSlowCallDuration();
+
+    /**
+     * 熔断器滑动窗口大小，即统计最近多少次请求
+     */
+    int getCircuitBreakerWindowSize();
+
+    /**
+     * 熔断器计算比例所需的最少请求数量
+     */
+    int getCircuitBreakerMinimumCalls();
+
+    /**
+     * 熔断器打开状态的持续时间，之后放行少量试探请求，单位为ms
+     */
+    int getCircuitBreakerOpenDuration();
+
+    /**
+     * 熔断器半开状态放行的试探请求数量
+     */
+    int getCircuitBreakerHalfOpenCalls();
+
+    /**
+     * 熔断器状态变化的回调，为null时不回调
+     */
+    CircuitBreaker.StateListener getCircuitBreakerListener();
+
+    /**
+     * 每个host每秒允许的请求数量（包括重试），小于等于0时不限流，可以通过{@link HttpClient#setRateLimit(String, double, int)}单独设置某个host
+     */
+    double getRateLimitPerSecond();
+
+    /**
+     * 限流允许的突发请求数量
+     */
+    int getRateLimitBurst();
+
+    /**
+     * 对冲请求数量与请求数量的最大比例，避免对冲成倍增加服务端压力
+     */
+    double getHedgeBudgetRatio();
+
+    /**
+     * 是否按route统计请求耗时、连接等待时间、字节数、重试、超时等指标，通过{@link HttpClient#getMetricsSnapshot()}获取
+     */
+    boolean isMetricsEnabled();
+
+    /**
+     * 单独设置的route最大连接数，key为scheme://host[:port]，如https://example.com，不参与连接池自动调整
+     */
+    Map<String, Integer> getRouteMaxConnections();
+
+    /**
+     * 是否根据请求排队情况自动调整每个route的最大连接数，初始及最小值为{@link #getMaxConnectionPerRoute()}
+     */
+    boolean isPoolAutoTuneEnabled();
+
+    /**
+     * 连接池自动调整的采样间隔，单位为ms
+     */
+    int getPoolAutoTuneInterval();
+
+    /**
+     * 自动调整时route最大连接数的上限，小于等于0时以{@link #getMaxConnection()}为上限
+     */
+    int getPoolAutoTuneMaxPerRoute();
+
+    /**
+     * 创建client后在后台预先建立连接的route，如https://example.com，通过{@link HttpClientBuilder#prewarm(java.util.Collection, int)}设置
+     */
+    List<String> getPrewarmRoutes();
+
+    /**
+     * 每个预热route预先建立的连接数量，同时作为空闲连接数量的下限，空闲连接不足时定时补充
+     */
+    int getPrewarmConnectionsPerRoute();
+
+    /**
+     * TLS会话缓存的最大数量，重新建立连接时可以恢复会话，省去完整握手
+     */
+    int getSslSessionCacheSize();
+
+    /**
+     * TLS会话缓存的有效时间，单位为ms
+     */
+    int getSslSessionTimeout();
+
+    /**
+     * DNS解析，为null时使用系统解析，可以使用{@link CachingDnsResolver}缓存解析结果并在多个地址间均衡
+     */
+    DnsResolver getDnsResolver();
+
+    /**
+     * 传输协议，默认为HTTP/1.1；使用HTTP/2时同步及异步的非流式请求通过{@link Http2Transport}发送
+     */
+    HttpProtocol getProtocol();
+
+    /**
+     * 连接的最长存活时间，单位为ms，从建立连接开始计算，到期后不再复用，由连接池逐个关闭并按需重建；小于等于0时不限制
+     */
+    int getConnectionTimeToLive();
+
+    /**
+     * 连接的最长空闲时间，单位为ms，超过后关闭；小于等于0时只按服务端Keep-Alive提示关闭
+     */
+    int getConnectionMaxIdleTime();
+
+    /**
+     * 连接的保持时间策略，为null时使用服务端Keep-Alive响应头中的timeout，不超过{@link #getConnectionMaxIdleTime()}
+     */
+    ConnectionKeepAliveStrategy getKeepAliveStrategy();
+
     interface FluentBuilder<T extends FluentBuilder<T>> {
         T setTrustAllSslCertificate(boolean trustAllSslCertificate);
 
@@ -23,5 +196,71 @@ public interface HttpClientConfig {
         T setMaxConnectionPerRoute(int maxConnectionPerRoute);
 
         T setSslSoTimeout(int sslSoTimeout);
+
+        T setCacheEnabled(boolean cacheEnabled);
+
+        T setCacheMaxEntries(int cacheMaxEntries);
+
+        T setCacheMaxObjectSize(long cacheMaxObjectSize);
+
+        T setCacheDirectory(Path cacheDirectory);
+
+        T setRequestCoalescingEnabled(boolean requestCoalescingEnabled);
+
+        T setRetryBudgetRatio(double retryBudgetRatio);
+
+        T setRetryBudgetMinPerSecond(int retryBudgetMinPerSecond);
+
+        T setCircuitBreakerEnabled(boolean circuitBreakerEnabled);
+
+        T setCircuitBreakerFailureRateThreshold(int circuitBreakerFailureRateThreshold);
+
+        T setCircuitBreakerSlowCallRateThreshold(int circuitBreakerSlowCallRateThreshold);
+
+        T setCircuitBreakerSlowCallDuration(int circuitBreakerSlowCallDuration);
+
+        T setCircuitBreakerWindowSize(int circuitBreakerWindowSize);
+
+        T setCircuitBreakerMinimumCalls(int circuitBreakerMinimumCalls);
+
+        T setCircuitBreakerOpenDuration(int circuitBreakerOpenDuration);
+
+        T setCircuitBreakerHalfOpenCalls(int circuitBreakerHalfOpenCalls);
+
+        T setCircuitBreakerListener(CircuitBreaker.StateListener circuitBreakerListener);
+
+        T setRateLimitPerSecond(double rateLimitPerSecond);
+
+        T setRateLimitBurst(int rateLimitBurst);
+
+        T setHedgeBudgetRatio(double hedgeBudgetRatio);
+
+        T setMetricsEnabled(boolean metricsEnabled);
+
+        T setRouteMaxConnections(Map<String, Integer> routeMaxConnections);
+
+        T setPoolAutoTuneEnabled(boolean poolAutoTuneEnabled);
+
+        T setPoolAutoTuneInterval(int poolAutoTuneInterval);
+
+        T setPoolAutoTuneMaxPerRoute(int poolAutoTuneMaxPerRoute);
+
+        T setPrewarmRoutes(List<String> prewarmRoutes);
+
+        T setPrewarmConnectionsPerRoute(int prewarmConnectionsPerRoute);
+
+        T setSslSessionCacheSize(int sslSessionCacheSize);
+
+        T setSslSessionTimeout(int sslSessionTimeout);
+
+        T setDnsResolver(DnsResolver dnsResolver);
+
+        T setProtocol(HttpProtocol protocol);
+
+        T setConnectionTimeToLive(int connectionTimeToLive);
+
+        T setConnectionMaxIdleTime(int connectionMaxIdleTime);
+
+        T setKeepAliveStrategy(ConnectionKeepAliveStrategy keepAliveStrategy);
     }
 }
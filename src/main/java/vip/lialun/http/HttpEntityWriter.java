@@ -0,0 +1,17 @@
+package vip.lialun.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 请求体写入器
+ * 发送请求时将请求体直接写入连接的输出流，请求体不需要预先生成在内存中。
+ * 请求重试时会被再次调用，所以每次调用都需要写出完整的请求体。
+ *
+ * @author lialun
+ */
+@FunctionalInterface
+public interface HttpEntityWriter {
+
+    void writeTo(OutputStream outputStream) throws IOException;
+}
@@ -23,6 +23,10 @@ public class HttpHeader {
         return name;
     }
 
+    /**
+     * @deprecated response中的header可能被多个调用方共享（请求合并），不应修改
+     */
+    @Deprecated
     public void setName(String name) {
         this.name = name;
     }
@@ -31,6 +35,10 @@ public class HttpHeader {
         return value;
     }
 
+    /**
+     * @deprecated response中的header可能被多个调用方共享（请求合并），不应修改
+     */
+    @Deprecated
     public void setValue(String value) {
         this.value = value;
     }
@@ -0,0 +1,17 @@
+package vip.lialun.http;
+
+/**
+ * HttpClient使用的传输协议
+ *
+ * @author lialun
+ */
+public enum HttpProtocol {
+    /**
+     * 基于Apache HttpClient的HTTP/1.1，每个连接同时只处理一个请求
+     */
+    HTTP_1_1,
+    /**
+     * 基于JDK java.net.http的HTTP/2，同一个origin的请求在少量连接上多路复用，服务端不支持时自动使用HTTP/1.1
+     */
+    HTTP_2
+}
@@ -3,6 +3,9 @@ package vip.lialun.http;
 import org.apache.http.HttpHost;
 
 import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 public interface HttpRequestConfig {
 
@@ -38,6 +41,68 @@ public interface HttpRequestConfig {
 
     String getCookieSpecs();
 
+    boolean isExpectContinueEnabled();
+
+    /**
+     * 重试等待策略，默认每次等待{@link #getRetryInterval()}
+     */
+    BackoffPolicy getBackoffPolicy();
+
+    /**
+     * 需要重试的状态码，默认为4xx和5xx
+     */
+    IntPredicate getRetryableStatus();
+
+    /**
+     * 需要重试的异常，默认为DNS解析失败（UnknownHostException）、超时及中断（InterruptedIOException）、
+     * 连接失败（ConnectException）、SSL异常（SSLException）及服务端无响应（NoHttpResponseException）
+     */
+    Predicate<Exception> getRetryableException();
+
+    /**
+     * 是否遵循response中的Retry-After
+     */
+    boolean isRespectRetryAfter();
+
+    /**
+     * Retry-After的最大等待时间，单位为ms，超过时不再重试
+     */
+    int getMaxRetryAfter();
+
+    /**
+     * 请求的截止时间，从调用send开始计算，包括所有重试、重定向及重试等待的时间，为null时不限制
+     * 每次请求的连接、读取、从连接池获取连接及执行超时时间都不会超过剩余时间，剩余时间不足时不再重试
+     */
+    Duration getDeadline();
+
+    /**
+     * 等待限流许可的最长时间，单位为ms，超过时以{@link RateLimitExceededException}失败；为0时不等待，小于0时一直等待
+     */
+    int getRateLimitTimeout();
+
+    /**
+     * 是否对幂等请求（GET、HEAD、OPTIONS）开启对冲：超过{@link #getHedgeDelay()}仍未返回时再发送一次相同请求，使用先返回的结果并中断另一个。
+     * 只对同步发送的send()生效
+     */
+    boolean isHedgingEnabled();
+
+    /**
+     * 发送对冲请求前的等待时间，单位为ms，小于等于0时使用该route最近请求耗时的p95，样本不足时不对冲
+     */
+    int getHedgeDelay();
+
+    /**
+     * 是否使用gzip压缩请求体，发送时流式压缩并设置Content-Encoding。
+     * 服务端对压缩的请求体返回415时，该route之后不再压缩，可重复发送的请求体会立即不压缩再发送一次
+     */
+    boolean isRequestCompressionEnabled();
+
+    /**
+     * 压缩请求体的最小字节数，长度未知（如流）的请求体总是压缩；
+     * JSON请求体按序列化后的长度判断，超过缓存大小在发送时序列化的JSON按缓存大小判断
+     */
+    int getRequestCompressionThreshold();
+
     interface FluentBuilder<T extends FluentBuilder<T>> {
         T setSoTimeout(int soTimeout);
 
@@ -72,6 +137,30 @@ public interface HttpRequestConfig {
         T setMaxRedirects(int maxRedirects);
 
         T setCookieSpecs(String cookieSpecs);
+
+        T setExpectContinueEnabled(boolean expectContinueEnabled);
+
+        T setBackoffPolicy(BackoffPolicy backoffPolicy);
+
+        T setRetryableStatus(IntPredicate retryableStatus);
+
+        T setRetryableException(Predicate<Exception> retryableException);
+
+        T setRespectRetryAfter(boolean respectRetryAfter);
+
+        T setMaxRetryAfter(int maxRetryAfter);
+
+        T setDeadline(Duration deadline);
+
+        T setRateLimitTimeout(int rateLimitTimeout);
+
+        T setHedgingEnabled(boolean hedgingEnabled);
+
+        T setHedgeDelay(int hedgeDelay);
+
+        T setRequestCompressionEnabled(boolean requestCompressionEnabled);
+
+        T setRequestCompressionThreshold(int requestCompressionThreshold);
     }
 
 }
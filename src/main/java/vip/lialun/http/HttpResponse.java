@@ -3,40 +3,45 @@ package vip.lialun.http;
 import vip.lialun.json.JacksonHelper;
 import vip.lialun.regex.RegexUtils;
 import vip.lialun.string.Check;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.io.ByteStreams;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.StatusLine;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.util.Strings;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
-import static vip.lialun.http.HttpConstants.HEADER_CONTENT_TYPE;
-
 /**
  * Http返回值
  *
  * @author lialun
  */
 public class HttpResponse implements Serializable {
+    private static final HttpHeader[] EMPTY_HEADERS = new HttpHeader[0];
+    /**
+     * 读取未知长度content时使用的临时缓冲区，大部分content可以一次读完，只需额外一次精确大小的复制
+     */
+    private static final ByteArrayPool READ_BUFFER_POOL = new ByteArrayPool(64 * 1024, Runtime.getRuntime().availableProcessors() * 2);
 
     private final StatusLine statusLine;
     private final List<HttpHeader> headers;
@@ -44,20 +49,30 @@ public class HttpResponse implements Serializable {
     private final Charset contentTypeCharset;
     private final HttpRequestConfig config;
     private String lastRequestUrl;
+    /**
+     * 以下为延迟计算并缓存的结果
+     */
+    private transient volatile Map<String, HttpHeader[]> headerIndex;
+    private transient volatile Charset charset;
+    private transient volatile String contentString;
+    private transient volatile JsonNode contentJson;
+    /**
+     * 是否被多个调用方共享（请求合并），共享时获取byte[]及JSON返回副本
+     */
+    private transient volatile boolean shared;
 
-    public HttpResponse(final CloseableHttpResponse response, final HttpContext httpContext, final HttpRequestConfig config) throws HttpException {
+    public HttpResponse(final org.apache.http.HttpResponse response, final HttpContext httpContext, final HttpRequestConfig config) throws HttpException {
+        boolean contentRead = false;
         try {
             this.config = config;
             this.statusLine = response.getStatusLine();
-            this.headers = Arrays.stream(response.getAllHeaders()).map(HttpHeader::new).collect(Collectors.toList());
+            this.headers = Arrays.stream(response.getAllHeaders()).map(HttpHeader::new).collect(Collectors.toUnmodifiableList());
             this.content = getByteArrayFromEntity(response, config.getMaxResponseContentLength());
+            contentRead = true;
             //获取contentType中的response charset
             this.contentTypeCharset = getCharsetFromHeader(response.getEntity());
             //最终请求URL地址
-            if (httpContext.getAttribute(HttpCoreContext.HTTP_REQUEST) instanceof HttpUriRequest lastReq) {
-                HttpHost lastHost = (HttpHost) httpContext.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
-                this.lastRequestUrl = (lastReq.getURI().isAbsolute()) ? lastReq.getURI().toString() : (lastHost.toURI() + lastReq.getURI());
-            }
+            this.lastRequestUrl = getLastRequestUrl(httpContext);
         } catch (IOException e) {
             String message = e.getMessage();
             if (Strings.isNotBlank(message)) {
@@ -66,11 +81,17 @@ public class HttpResponse implements Serializable {
                 throw new HttpException("Generate http response failure", e);
             }
         } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-            try {
-                response.close();
-            } catch (IOException e) {
-                //ignored
+            //content超长时不再读取剩余数据，直接关闭response断开连接
+            if (contentRead) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            //同步请求需要释放连接，异步请求的response已经在内存中，无需关闭
+            if (response instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    //ignored
+                }
             }
         }
     }
@@ -85,67 +106,94 @@ public class HttpResponse implements Serializable {
 
 
     public HttpHeader[] getHeaders(final String name) {
-        return this.headers.stream()
-                .filter(header -> header.getName().equalsIgnoreCase(name))
-                .toArray(HttpHeader[]::new);
+        HttpHeader[] headers = findHeaders(name);
+        return headers == null ? EMPTY_HEADERS : headers.clone();
     }
 
     public HttpHeader getFirstHeader(final String name) {
-        for (HttpHeader header : this.headers) {
-            if (header.getName().equalsIgnoreCase(name)) {
-                return header;
-            }
-        }
-        return null;
+        HttpHeader[] headers = findHeaders(name);
+        return headers == null ? null : headers[0];
     }
 
     public HttpHeader getLastHeader(final String name) {
-        for (int i = this.headers.size() - 1; i >= 0; --i) {
-            HttpHeader header = this.headers.get(i);
-            if (header.getName().equalsIgnoreCase(name)) {
-                return header;
-            }
-        }
-        return null;
+        HttpHeader[] headers = findHeaders(name);
+        return headers == null ? null : headers[headers.length - 1];
     }
 
+    /**
+     * 获取全部Header，返回的列表不可修改
+     */
     public List<HttpHeader> getAllHeaders() {
         return this.headers;
     }
 
     public boolean containsHeader(final String name) {
-        for (HttpHeader header : this.headers) {
-            if (header.getName().equalsIgnoreCase(name)) {
-                return true;
+        return findHeaders(name) != null;
+    }
+
+    /**
+     * 按名称查找Header，name为null时返回null（TreeMap不支持null key）
+     */
+    private HttpHeader[] findHeaders(final String name) {
+        return name == null ? null : getHeaderIndex().get(name);
+    }
+
+    /**
+     * 按名称（忽略大小写）索引的Header，首次使用时创建
+     */
+    private Map<String, HttpHeader[]> getHeaderIndex() {
+        Map<String, HttpHeader[]> index = this.headerIndex;
+        if (index == null) {
+            TreeMap<String, HttpHeader[]> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (HttpHeader header : this.headers) {
+                HttpHeader[] values = map.get(header.getName());
+                if (values == null) {
+                    values = new HttpHeader[]{header};
+                } else {
+                    values = Arrays.copyOf(values, values.length + 1);
+                    values[values.length - 1] = header;
+                }
+                map.put(header.getName(), values);
             }
+            index = Collections.unmodifiableMap(map);
+            this.headerIndex = index;
         }
-        return false;
+        return index;
     }
 
     /**
      * 获取Entity Body
+     * response被多个调用方共享（请求合并）时返回一份副本，否则返回内部数组
      */
     public byte[] getBytes() {
-        return content;
+        return shared && content != null ? content.clone() : content;
+    }
+
+    /**
+     * 标记为被多个调用方共享
+     */
+    void markShared() {
+        shared = true;
+    }
+
+    /**
+     * Entity Body的字节数，没有Entity Body时返回0
+     */
+    public int getContentSize() {
+        return content == null ? 0 : content.length;
     }
 
     /**
      * 获取Entity Body
+     * 结果在首次调用时解码并缓存
      */
     public String getString() {
-        //如果Header中的ContentType带有charset信息，则直接返回
-        if (contentTypeCharset != null) {
-            return new String(content, contentTypeCharset);
-        }
-        // 如果没有使用Html中的Content Type信息，则尝试获取。否则使用默认编码
-        String contentString = new String(content, config.getResponseCharset());
-        if (config.isUseHtmlContentType()) {
-            Charset charset = getCharsetFromHtml(contentString);
-            if (charset != null) {
-                return new String(content, charset);
-            }
+        String string = this.contentString;
+        if (string == null) {
+            string = new String(content, getCharset());
+            this.contentString = string;
         }
-        return contentString;
+        return string;
     }
 
     /**
@@ -162,9 +210,15 @@ public class HttpResponse implements Serializable {
 
     /**
      * 获取ObjectNode格式Entity Body
+     * 结果在首次调用时解析并缓存，多次调用返回同一对象，请勿修改返回的对象，需要修改时请使用deepCopy；
+     * response被多个调用方共享（请求合并）时每次返回一份副本
      */
     public ObjectNode getJsonObject() {
-        return getJsonObject(null);
+        JsonNode node = getJson();
+        if (node instanceof ObjectNode objectNode) {
+            return shared ? objectNode.deepCopy() : objectNode;
+        }
+        throw new HttpException("Response entity is not a ObjectNode：" + getString());
     }
 
     /**
@@ -173,19 +227,28 @@ public class HttpResponse implements Serializable {
      * @param encode 编码类型
      */
     public ObjectNode getJsonObject(final String encode) {
+        if (Check.isNullOrEmpty(encode)) {
+            return getJsonObject();
+        }
         String response = getString(encode);
         try {
             return JacksonHelper.parseObject(response);
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             throw new HttpException("Response entity is not a ObjectNode：" + response, e);
         }
     }
 
     /**
      * 获取ArrayNode格式Entity Body
+     * 结果在首次调用时解析并缓存，多次调用返回同一对象，请勿修改返回的对象，需要修改时请使用deepCopy；
+     * response被多个调用方共享（请求合并）时每次返回一份副本
      */
     public ArrayNode getJsonArray() {
-        return getJsonArray(null);
+        JsonNode node = getJson();
+        if (node instanceof ArrayNode arrayNode) {
+            return shared ? arrayNode.deepCopy() : arrayNode;
+        }
+        throw new HttpException("Response entity is not a ArrayNode：" + getString());
     }
 
     /**
@@ -194,14 +257,91 @@ public class HttpResponse implements Serializable {
      * @param encode 编码
      */
     public ArrayNode getJsonArray(final String encode) {
+        if (Check.isNullOrEmpty(encode)) {
+            return getJsonArray();
+        }
         String response = getString(encode);
         try {
             return JacksonHelper.parseArray(response);
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             throw new HttpException("Response entity is not a ArrayNode：" + response, e);
         }
     }
 
+    /**
+     * 将JSON格式的Entity Body直接反序列化为对象，UTF-8编码时不会解码为String
+     *
+     * @return 反序列化后的对象，没有Entity Body时返回null
+     */
+    public <T> T as(final Class<T> type) {
+        return readValue(JacksonHelper.getDefaultMapper().readerFor(type), type.getName());
+    }
+
+    /**
+     * 将JSON格式的Entity Body直接反序列化为对象，UTF-8编码时不会解码为String
+     *
+     * @return 反序列化后的对象，没有Entity Body时返回null
+     */
+    public <T> T as(final TypeReference<T> type) {
+        return readValue(JacksonHelper.getDefaultMapper().readerFor(type), type.getType().getTypeName());
+    }
+
+    private <T> T readValue(ObjectReader reader, String typeName) {
+        if (content == null || content.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode node = this.contentJson;
+            if (node != null) {
+                return reader.readValue(node);
+            } else if (StandardCharsets.UTF_8.equals(getCharset())) {
+                return reader.readValue(content);
+            } else {
+                return reader.readValue(getString());
+            }
+        } catch (IOException e) {
+            throw new HttpException("Response entity can not be deserialized to " + typeName + "：" + getString(), e);
+        }
+    }
+
+    /**
+     * 解析并缓存JSON，UTF-8编码时直接从byte数组解析，无需先解码为String
+     */
+    private JsonNode getJson() {
+        JsonNode node = this.contentJson;
+        if (node == null) {
+            try {
+                if (StandardCharsets.UTF_8.equals(getCharset())) {
+                    node = JacksonHelper.getDefaultMapper().readTree(content);
+                } else {
+                    node = JacksonHelper.getDefaultMapper().readTree(getString());
+                }
+            } catch (IOException e) {
+                throw new HttpException("Response entity is not a json：" + getString(), e);
+            }
+            this.contentJson = node;
+        }
+        return node;
+    }
+
+    /**
+     * 获取content编码
+     * 优先使用Header中ContentType的charset，其次是Html中的ContentType（如果开启），最后使用默认编码
+     */
+    private Charset getCharset() {
+        Charset charset = this.charset;
+        if (charset == null) {
+            charset = contentTypeCharset;
+            if (charset == null && config.isUseHtmlContentType()) {
+                charset = HtmlCharsetSniffer.sniff(content);
+            }
+            if (charset == null) {
+                charset = config.getResponseCharset();
+            }
+            this.charset = charset;
+        }
+        return charset;
+    }
 
     /**
      * 获取最终请求URL
@@ -211,22 +351,13 @@ public class HttpResponse implements Serializable {
         return lastRequestUrl;
     }
 
-    private Charset getCharsetFromHtml(String html) {
-        Element page = Jsoup.parse(html);
-        Elements metas = Optional.ofNullable(page.getElementsByTag("head").first())
-                .map(o -> o.getElementsByTag("meta")).orElse(null);
-        if (metas != null) {
-            for (Element meta : metas) {
-                //html5
-                if (meta.hasAttr("charset")) {
-                    return Charset.forName(meta.attr("charset"));
-                }
-                //html4
-                if (HEADER_CONTENT_TYPE.equalsIgnoreCase(meta.attr("http-equiv"))) {
-                    String contentInMeta = meta.attr("content");
-                    return getCharsetFromContentTypeString(contentInMeta);
-                }
-            }
+    /**
+     * 从请求上下文中获取最终请求URL
+     */
+    static String getLastRequestUrl(HttpContext httpContext) {
+        if (httpContext.getAttribute(HttpCoreContext.HTTP_REQUEST) instanceof HttpUriRequest lastReq) {
+            HttpHost lastHost = (HttpHost) httpContext.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+            return (lastReq.getURI().isAbsolute()) ? lastReq.getURI().toString() : (lastHost.toURI() + lastReq.getURI());
         }
         return null;
     }
@@ -236,7 +367,7 @@ public class HttpResponse implements Serializable {
      *
      * @return response content编码,或null
      */
-    private Charset getCharsetFromHeader(HttpEntity httpEntity) {
+    static Charset getCharsetFromHeader(HttpEntity httpEntity) {
         if (httpEntity == null) {
             return null;
         }
@@ -247,7 +378,7 @@ public class HttpResponse implements Serializable {
         return getCharsetFromContentTypeString(contentType.getValue());
     }
 
-    private Charset getCharsetFromContentTypeString(String contentType) {
+    static Charset getCharsetFromContentTypeString(String contentType) {
         if (Check.isNullOrEmpty(contentType)) {
             return null;
         }
@@ -261,18 +392,78 @@ public class HttpResponse implements Serializable {
     /**
      * 得到response的entity
      */
-    private byte[] getByteArrayFromEntity(final CloseableHttpResponse response, int maxContentLength) throws IOException, HttpException {
+    private byte[] getByteArrayFromEntity(final org.apache.http.HttpResponse response, int maxContentLength) throws IOException, HttpException {
         HttpEntity entity = response.getEntity();
         if (entity == null) {
             return null;
         }
         //由于目前的做法是将完整的content放入内存,所以一旦content过大就可能导致问题,所以限制content大小。
-        //如果有例如下载等content过大的需求,直接调用httpclient的方法,通过操作流的方法完成本需求。
-        if (response.getEntity().getContentLength() > maxContentLength) {
-            throw new HttpException("content length to large: " + response.getEntity().getContentLength());
+        //如果有例如下载等content过大的需求,使用流式请求{@link vip.lialun.http.methods.AbstractHttpRequest#send(HttpResponseHandler)}。
+        return readContent(entity.getContent(), entity.getContentLength(), maxContentLength);
+    }
+
+    /**
+     * 读取content
+     * 已知长度时直接分配精确大小的数组；未知长度（如chunked）时使用池化的缓冲区读取，超过最大长度时立即停止读取
+     *
+     * @param contentLength    Content-Length，未知时为负数
+     * @param maxContentLength 最大content长度
+     */
+    static byte[] readContent(InputStream inputStream, long contentLength, int maxContentLength) throws IOException, HttpException {
+        if (contentLength > maxContentLength) {
+            throw new HttpException("content length to large: " + contentLength);
+        }
+        if (inputStream == null) {
+            return new byte[0];
         }
-        //读取数据
-        return ByteStreams.toByteArray(entity.getContent());
+        if (contentLength >= 0) {
+            byte[] content = new byte[(int) contentLength];
+            int count = inputStream.readNBytes(content, 0, content.length);
+            if (count < content.length) {
+                return Arrays.copyOf(content, count);
+            }
+            int next = inputStream.read();
+            if (next == -1) {
+                return content;
+            }
+            //实际长度大于Content-Length，继续按未知长度读取
+            content = Arrays.copyOf(content, nextBufferSize(content.length, maxContentLength));
+            content[count++] = (byte) next;
+            return readRemaining(inputStream, content, count, maxContentLength);
+        }
+        byte[] pooled = READ_BUFFER_POOL.acquire();
+        try {
+            return readRemaining(inputStream, pooled, 0, maxContentLength);
+        } finally {
+            READ_BUFFER_POOL.release(pooled);
+        }
+    }
+
+    /**
+     * 将剩余数据读入buffer，buffer不足时扩容，返回精确大小的新数组
+     */
+    private static byte[] readRemaining(InputStream inputStream, byte[] buffer, int count, int maxContentLength) throws IOException, HttpException {
+        while (true) {
+            if (count > maxContentLength) {
+                throw new HttpException("content length to large, exceeds: " + maxContentLength);
+            }
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, nextBufferSize(buffer.length, maxContentLength));
+            }
+            int read = inputStream.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                return Arrays.copyOf(buffer, count);
+            }
+            count += read;
+        }
+    }
+
+    /**
+     * 翻倍扩容，最多比最大content长度多1个字节，用于判断是否超长
+     */
+    private static int nextBufferSize(int current, int maxContentLength) {
+        long size = Math.max(current * 2L, 8192);
+        return (int) Math.min(size, Math.min(maxContentLength + 1L, Integer.MAX_VALUE - 8));
     }
 
     @Override
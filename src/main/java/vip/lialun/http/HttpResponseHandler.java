@@ -0,0 +1,16 @@
+package vip.lialun.http;
+
+import java.io.IOException;
+
+/**
+ * 流式response处理器
+ * 处理完成后response会被自动关闭，所以不能在处理器之外继续使用response中的流。
+ *
+ * @param <R> 处理结果类型
+ * @author lialun
+ */
+@FunctionalInterface
+public interface HttpResponseHandler<R> {
+
+    R handle(HttpStreamingResponse response) throws IOException;
+}
@@ -0,0 +1,149 @@
+package vip.lialun.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * 流式Http返回值
+ * <p>
+ * 与{@link HttpResponse}不同，response content不会被读入内存，而是由调用方通过流逐步读取，适用于较大的response。
+ * 在被关闭之前，该response会一直占用连接池中的一个连接，所以使用完毕后必须调用{@link #close()}。
+ * content被完整读取后连接会自动归还连接池；未读取完毕就关闭时，连接会被直接关闭而不会继续读取剩余的content。
+ *
+ * @author lialun
+ */
+public class HttpStreamingResponse implements Closeable {
+
+    private final CloseableHttpResponse response;
+    private final StatusLine statusLine;
+    private final List<HttpHeader> headers;
+    private final Charset contentTypeCharset;
+    private final HttpRequestConfig config;
+    private final String lastRequestUrl;
+
+    public HttpStreamingResponse(final CloseableHttpResponse response, final HttpContext httpContext, final HttpRequestConfig config) {
+        this.response = response;
+        this.config = config;
+        this.statusLine = response.getStatusLine();
+        this.headers = Arrays.stream(response.getAllHeaders()).map(HttpHeader::new).collect(Collectors.toList());
+        this.contentTypeCharset = HttpResponse.getCharsetFromHeader(response.getEntity());
+        this.lastRequestUrl = HttpResponse.getLastRequestUrl(httpContext);
+    }
+
+    public int getStatusCode() {
+        return statusLine.getStatusCode();
+    }
+
+    public String getReasonPhrase() {
+        return statusLine.getReasonPhrase();
+    }
+
+    public HttpHeader[] getHeaders(final String name) {
+        return this.headers.stream()
+                .filter(header -> header.getName().equalsIgnoreCase(name))
+                .toArray(HttpHeader[]::new);
+    }
+
+    public HttpHeader getFirstHeader(final String name) {
+        for (HttpHeader header : this.headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    public List<HttpHeader> getAllHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * 获取content长度，未知时返回-1
+     */
+    public long getContentLength() {
+        return Optional.ofNullable(response.getEntity()).map(HttpEntity::getContentLength).orElse(-1L);
+    }
+
+    /**
+     * 获取content编码，Header中的ContentType不包含编码信息时，返回配置的默认编码
+     */
+    public Charset getCharset() {
+        return contentTypeCharset != null ? contentTypeCharset : config.getResponseCharset();
+    }
+
+    /**
+     * 获取content输入流，没有content时返回空流
+     */
+    public InputStream getInputStream() throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return entity.getContent();
+    }
+
+    /**
+     * 获取content channel
+     */
+    public ReadableByteChannel getChannel() throws IOException {
+        return Channels.newChannel(getInputStream());
+    }
+
+    /**
+     * 使用{@link #getCharset()}编码获取content Reader
+     */
+    public Reader getReader() throws IOException {
+        return new InputStreamReader(getInputStream(), getCharset());
+    }
+
+    /**
+     * 获取最终请求URL
+     */
+    public String getLastRequestUrl() {
+        return lastRequestUrl;
+    }
+
+    /**
+     * 获取原始response
+     */
+    public CloseableHttpResponse getCloseableHttpResponse() {
+        return response;
+    }
+
+    /**
+     * 关闭response，释放占用的连接
+     */
+    @Override
+    public void close() {
+        try {
+            response.close();
+        } catch (IOException e) {
+            //ignored
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpStreamingResponse{" +
+                "statusLine=" + statusLine +
+                ", headers=" + headers +
+                ", lastRequestUrl='" + lastRequestUrl +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 请求耗时统计，保存最近sampleSize个请求的耗时，用于计算分位数
+ * <p>
+ * 记录只有一次原子自增和一次数组写入；分位数通过排序样本计算，
+ * 结果会被缓存，新增样本数量达到{@link #RECOMPUTE_INTERVAL}后才重新计算。
+ *
+ * @author lialun
+ */
+public final class LatencyTracker {
+    /**
+     * 计算分位数所需的最少样本数量
+     */
+    public static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private volatile Percentile cached;
+
+    /**
+     * @param sampleSize 保存的样本数量
+     */
+    public LatencyTracker(int sampleSize) {
+        Preconditions.checkArgument(sampleSize >= MIN_SAMPLES, "sampleSize must be at least " + MIN_SAMPLES);
+        this.samples = new AtomicLongArray(sampleSize);
+    }
+
+    /**
+     * 记录一次请求的耗时
+     *
+     * @param nanos 耗时，单位为ns
+     */
+    public void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), nanos);
+    }
+
+    /**
+     * 计算最近样本的分位数
+     *
+     * @param percentile 分位，取值为(0, 1]，如0.95
+     * @return 耗时，单位为ns，样本数量不足{@link #MIN_SAMPLES}时返回-1
+     */
+    public long getPercentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 1, "percentile must be in (0, 1]");
+        long currentCount = count.get();
+        Percentile current = cached;
+        if (current != null && current.percentile == percentile && currentCount - current.count < RECOMPUTE_INTERVAL) {
+            return current.value;
+        }
+        int size = (int) Math.min(currentCount, samples.length());
+        if (size < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] snapshot = new long[size];
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = samples.get(i);
+        }
+        Arrays.sort(snapshot);
+        long value = snapshot[(int) Math.ceil(percentile * size) - 1];
+        cached = new Percentile(percentile, currentCount, value);
+        return value;
+    }
+
+    /**
+     * 累计记录的请求数量
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    private static final class Percentile {
+        private final double percentile;
+        private final long count;
+        private final long value;
+
+        private Percentile(double percentile, long count, long value) {
+            this.percentile = percentile;
+            this.count = count;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package vip.lialun.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 统计从连接池获取连接等待时间的连接池
+ *
+ * @author lialun
+ */
+class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+    private final ObjLongConsumer<HttpRoute> leaseWaitRecorder;
+
+    MeteredConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, DnsResolver dnsResolver,
+                             long timeToLive, ObjLongConsumer<HttpRoute> leaseWaitRecorder) {
+        super(socketFactoryRegistry, null, null, dnsResolver, timeToLive, TimeUnit.MILLISECONDS);
+        this.leaseWaitRecorder = leaseWaitRecorder;
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                long startTime = System.nanoTime();
+                try {
+                    return request.get(timeout, timeUnit);
+                } finally {
+                    leaseWaitRecorder.accept(route, System.nanoTime() - startTime);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package vip.lialun.http;
+
+/**
+ * 限流，在允许的等待时间内无法获取许可，请求没有发送到服务端
+ *
+ * @author lialun
+ */
+public class RateLimitExceededException extends HttpException {
+    private final String host;
+
+    public RateLimitExceededException(String host) {
+        super("Rate limit exceeded, host: " + host);
+        this.host = host;
+    }
+
+    public String getHost() {
+        return host;
+    }
+}
@@ -0,0 +1,197 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 限流器，GCRA（Generic Cell Rate Algorithm）实现，等价于令牌桶
+ * <p>
+ * 只保存一个理论到达时间（TAT），每次获取许可时通过CAS将其推后一个发放间隔，无锁。
+ * 获取许可时返回需要等待的时间，调用方可以阻塞等待、放弃或者异步延迟执行，
+ * 一旦获取成功即占用了对应的时间片，所以即使等待中的请求被取消，速率也不会超出限制。
+ *
+ * @author lialun
+ */
+public final class RateLimiter {
+    private final String host;
+    private volatile Rate rate;
+    /**
+     * 理论到达时间（{@link System#nanoTime()}），小于当前时间时表示桶已满
+     */
+    private final AtomicLong theoreticalArrivalTime;
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder waitedCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    /**
+     * @param host             限流器对应的host
+     * @param permitsPerSecond 每秒许可数量
+     * @param burst            允许的突发数量，即不等待即可连续获取的许可数量
+     */
+    public RateLimiter(String host, double permitsPerSecond, int burst) {
+        this.host = host;
+        this.rate = new Rate(permitsPerSecond, burst);
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 获取许可，最多等待maxWaitNanos
+     *
+     * @param maxWaitNanos 最大等待时间，单位为ns，为0时不等待
+     * @return 获取到许可前需要等待的时间，单位为ns，超过maxWaitNanos时不占用许可并返回-1
+     */
+    public long reserve(long maxWaitNanos) {
+        Rate current = rate;
+        long now = System.nanoTime();
+        long tat;
+        long newTat;
+        long wait;
+        do {
+            tat = theoreticalArrivalTime.get();
+            newTat = Math.max(tat, now) + current.intervalNanos;
+            wait = newTat - now - current.toleranceNanos;
+            if (wait > maxWaitNanos) {
+                rejectedCount.increment();
+                return -1;
+            }
+        } while (!theoreticalArrivalTime.compareAndSet(tat, newTat));
+        acquiredCount.increment();
+        if (wait > 0) {
+            waitedCount.increment();
+            totalWaitNanos.add(wait);
+            return wait;
+        }
+        return 0;
+    }
+
+    /**
+     * 不等待，立即获取许可
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * 获取许可，阻塞等待最多timeout
+     *
+     * @return 是否获取成功
+     * @throws InterruptedException 等待时被中断，此时许可已经被占用
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long wait = reserve(unit.toNanos(timeout));
+        if (wait < 0) {
+            return false;
+        }
+        sleep(wait);
+        return true;
+    }
+
+    /**
+     * 获取许可，阻塞直到获取成功
+     *
+     * @return 等待的时间，单位为ns
+     * @throws InterruptedException 等待时被中断，此时许可已经被占用
+     */
+    public long acquire() throws InterruptedException {
+        long wait = reserve(Long.MAX_VALUE);
+        sleep(wait);
+        return wait;
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * 修改速率，立即生效
+     *
+     * @param permitsPerSecond 每秒许可数量
+     * @param burst            允许的突发数量
+     */
+    public void setRate(double permitsPerSecond, int burst) {
+        this.rate = new Rate(permitsPerSecond, burst);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * 每秒许可数量
+     */
+    public double getPermitsPerSecond() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / rate.intervalNanos;
+    }
+
+    /**
+     * 允许的突发数量
+     */
+    public int getBurst() {
+        return rate.burst;
+    }
+
+    /**
+     * 累计获取到的许可数量
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    /**
+     * 累计因等待时间超出限制被拒绝的数量
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 累计需要等待才能获取许可的数量
+     */
+    public long getWaitedCount() {
+        return waitedCount.sum();
+    }
+
+    /**
+     * 累计等待许可的时间，单位为ms
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter{host=" + host + ", permitsPerSecond=" + getPermitsPerSecond() + ", burst=" + getBurst() + '}';
+    }
+
+    /**
+     * 发放间隔和突发容忍时间，一起替换，保证并发读取时一致
+     */
+    private static final class Rate {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final int burst;
+
+        private Rate(double permitsPerSecond, int burst) {
+            Preconditions.checkArgument(permitsPerSecond > 0, "permitsPerSecond must be positive");
+            Preconditions.checkArgument(burst > 0, "burst must be positive");
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.toleranceNanos = intervalNanos * burst;
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package vip.lialun.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * <p>
+ * 相同key的请求并发执行时，只有第一个请求真正执行，其他请求等待并共享其结果（包括异常）。
+ * 请求完成后立即移除，之后的请求会重新执行，所以不会缓存结果。
+ * 等待的请求可以设置最长等待时间，不受正在执行的请求的超时设置影响。
+ * 有其他请求等待时，共享的response会被标记为共享，获取byte[]及JSON时返回副本，没有等待者的response不受影响。
+ *
+ * @author lialun
+ */
+public final class RequestCoalescer {
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * 执行请求，已有相同key的请求正在执行时等待其结果
+     *
+     * @param key     请求标识
+     * @param request 实际执行请求的方法
+     */
+    public HttpResponse execute(String key, Supplier<HttpResponse> request) {
+        return execute(key, Long.MAX_VALUE, request);
+    }
+
+    /**
+     * 执行请求，已有相同key的请求正在执行时等待其结果
+     *
+     * @param key         请求标识
+     * @param waitTimeout 等待其他请求结果的最长时间，单位为ms，超时后抛出{@link HttpException}
+     * @param request     实际执行请求的方法
+     */
+    public HttpResponse execute(String key, long waitTimeout, Supplier<HttpResponse> request) {
+        Flight flight = new Flight();
+        // 等待者在compute中登记，与移除互斥，移除之后的等待者数量不会再变化
+        Flight current = inFlight.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return flight;
+            }
+            existing.followers.incrementAndGet();
+            return existing;
+        });
+        if (current != flight) {
+            coalescedCount.increment();
+            return await(current.future, waitTimeout);
+        }
+        executedCount.increment();
+        HttpResponse response;
+        try {
+            response = request.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, flight);
+        if (response != null && flight.followers.get() > 0) {
+            response.markShared();
+        }
+        flight.future.complete(response);
+        return response;
+    }
+
+    private static HttpResponse await(CompletableFuture<HttpResponse> future, long waitTimeout) {
+        try {
+            return waitTimeout == Long.MAX_VALUE ? future.join() : future.get(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new HttpException("Coalesced request failure", e.getCause());
+        } catch (TimeoutException e) {
+            throw new HttpException("http execute timeout, waiting for coalesced request exceeds " + waitTimeout + "ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpException("Interrupted while waiting for coalesced request", e);
+        }
+    }
+
+    /**
+     * 实际执行的请求数量
+     */
+    public long getExecutedCount() {
+        return executedCount.sum();
+    }
+
+    /**
+     * 被合并（共享其他请求结果）的请求数量
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * 正在执行的请求数量
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static final class Flight {
+        private final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        private final AtomicInteger followers = new AtomicInteger();
+    }
+}
@@ -0,0 +1,114 @@
+package vip.lialun.http;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重试预算，令牌桶实现，由同一个HttpClient的所有请求共享
+ * <p>
+ * 每个请求存入ratio个令牌，每次重试消耗1个令牌，令牌不足时不再重试，所以重试数量不会超过正常请求数量的ratio倍。
+ * 另外每秒补充minRetriesPerSecond个令牌，保证请求量较小时也能正常重试。
+ * 令牌随时间衰减（时间常数为{@link #WINDOW_SECONDS}秒），所以只有最近一段时间的请求量决定可用的重试数量，
+ * 长时间正常运行后也不会积累大量令牌。上游服务故障时，可以避免重试成倍放大请求量。
+ *
+ * @author lialun
+ */
+public final class RetryBudget {
+    /**
+     * 令牌以千分之一为单位保存
+     */
+    private static final long SCALE = 1000;
+    private static final double WINDOW_SECONDS = 10;
+
+    private final long depositAmount;
+    private final long refillPerSecond;
+    private final AtomicLong balance;
+    private final AtomicLong lastRefillTime;
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param ratio               允许的重试数量与请求数量的比例
+     * @param minRetriesPerSecond 每秒最少允许的重试数量
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        Preconditions.checkArgument(ratio >= 0, "ratio must not be negative");
+        Preconditions.checkArgument(minRetriesPerSecond >= 0, "minRetriesPerSecond must not be negative");
+        this.depositAmount = Math.round(ratio * SCALE);
+        this.refillPerSecond = minRetriesPerSecond * SCALE;
+        this.balance = new AtomicLong(refillPerSecond);
+        this.lastRefillTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 发起请求（不包括重试）时调用
+     */
+    public void deposit() {
+        if (depositAmount > 0) {
+            //先衰减已有的令牌，避免新存入的令牌按照上次衰减之后的全部时间衰减
+            refill();
+            balance.addAndGet(depositAmount);
+        }
+    }
+
+    /**
+     * 重试前调用
+     *
+     * @return 是否允许重试
+     */
+    public boolean tryAcquire() {
+        refill();
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                rejectedCount.increment();
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        acquiredCount.increment();
+        return true;
+    }
+
+    /**
+     * 当前可用的重试数量
+     */
+    public long getAvailable() {
+        refill();
+        return balance.get() / SCALE;
+    }
+
+    /**
+     * 累计允许的重试数量
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    /**
+     * 累计因预算不足被拒绝的重试数量
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 令牌衰减并补充最低额度
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        long last = lastRefillTime.get();
+        long elapsed = now - last;
+        // 至少间隔1ms计算一次，减少CAS竞争
+        if (elapsed < TimeUnit.MILLISECONDS.toNanos(1) || !lastRefillTime.compareAndSet(last, now)) {
+            return;
+        }
+        double seconds = Math.min(elapsed, TimeUnit.MINUTES.toNanos(1)) / (double) TimeUnit.SECONDS.toNanos(1);
+        double decay = Math.exp(-seconds / WINDOW_SECONDS);
+        long refill = (long) (refillPerSecond * seconds);
+        balance.updateAndGet(current -> (long) (current * decay) + refill);
+    }
+}
@@ -0,0 +1,203 @@
+package vip.lialun.http;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个route（scheme://host:port）的请求统计
+ * <p>
+ * 按状态码类别（1xx~5xx，请求失败没有response时为error）分别统计耗时直方图，
+ * 另外统计从连接池获取连接的等待时间、请求体及response content的字节数、重试、超时及中断次数。
+ * 所有记录操作都只有LongAdder自增，没有对象分配和锁。
+ *
+ * @author lialun
+ */
+public final class RouteMetrics {
+    /**
+     * 状态码类别名称，下标为状态码/100，下标0表示请求失败
+     */
+    private static final String[] STATUS_CLASSES = {"error", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final String route;
+    private final LatencyHistogram[] latency = new LatencyHistogram[STATUS_CLASSES.length];
+    private final LatencyHistogram leaseWait = new LatencyHistogram();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder aborts = new LongAdder();
+
+    public RouteMetrics(String route) {
+        this.route = route;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录一次得到response的请求
+     *
+     * @param statusCode    状态码
+     * @param latencyNanos  耗时，单位为ns
+     * @param bytesSent     请求体字节数，未知时小于0
+     * @param bytesReceived response content字节数，未知时小于0
+     */
+    public void recordResponse(int statusCode, long latencyNanos, long bytesSent, long bytesReceived) {
+        int statusClass = statusCode / 100;
+        latency[statusClass > 0 && statusClass < STATUS_CLASSES.length ? statusClass : 0].record(latencyNanos);
+        addBytes(bytesSent, bytesReceived);
+    }
+
+    /**
+     * 记录一次失败（没有得到response）的请求
+     *
+     * @param latencyNanos 耗时，单位为ns
+     * @param timeout      是否因超时失败
+     * @param aborted      是否被中断（超时以外的原因，如对冲）
+     * @param bytesSent    请求体字节数，未知时小于0
+     */
+    public void recordFailure(long latencyNanos, boolean timeout, boolean aborted, long bytesSent) {
+        latency[0].record(latencyNanos);
+        if (timeout) {
+            timeouts.increment();
+        }
+        if (aborted) {
+            aborts.increment();
+        }
+        addBytes(bytesSent, -1);
+    }
+
+    private void addBytes(long sent, long received) {
+        if (sent > 0) {
+            bytesSent.add(sent);
+        }
+        if (received > 0) {
+            bytesReceived.add(received);
+        }
+    }
+
+    /**
+     * 记录一次重试
+     */
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    /**
+     * 记录一次从连接池获取连接的等待时间
+     *
+     * @param nanos 等待时间，单位为ns
+     */
+    public void recordLeaseWait(long nanos) {
+        leaseWait.record(nanos);
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * 获取当前统计的快照
+     */
+    public Snapshot snapshot() {
+        Map<String, LatencyHistogram.Snapshot> latencySnapshots = new LinkedHashMap<>();
+        for (int i = 1; i <= STATUS_CLASSES.length; i++) {
+            // error放在最后
+            int index = i % STATUS_CLASSES.length;
+            LatencyHistogram.Snapshot snapshot = latency[index].snapshot();
+            if (snapshot.getCount() > 0) {
+                latencySnapshots.put(STATUS_CLASSES[index], snapshot);
+            }
+        }
+        return new Snapshot(route, Collections.unmodifiableMap(latencySnapshots), leaseWait.snapshot(),
+                bytesSent.sum(), bytesReceived.sum(), retries.sum(), timeouts.sum(), aborts.sum());
+    }
+
+    /**
+     * route统计快照
+     */
+    public static final class Snapshot {
+        private final String route;
+        private final Map<String, LatencyHistogram.Snapshot> latency;
+        private final LatencyHistogram.Snapshot leaseWait;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long retries;
+        private final long timeouts;
+        private final long aborts;
+
+        private Snapshot(String route, Map<String, LatencyHistogram.Snapshot> latency, LatencyHistogram.Snapshot leaseWait,
+                         long bytesSent, long bytesReceived, long retries, long timeouts, long aborts) {
+            this.route = route;
+            this.latency = latency;
+            this.leaseWait = leaseWait;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.retries = retries;
+            this.timeouts = timeouts;
+            this.aborts = aborts;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        /**
+         * 按状态码类别（2xx、5xx、error等）统计的耗时，只包含有记录的类别
+         */
+        public Map<String, LatencyHistogram.Snapshot> getLatency() {
+            return latency;
+        }
+
+        /**
+         * 从同步连接池获取连接的等待时间
+         */
+        public LatencyHistogram.Snapshot getLeaseWait() {
+            return leaseWait;
+        }
+
+        /**
+         * 请求总数
+         */
+        public long getRequestCount() {
+            return latency.values().stream().mapToLong(LatencyHistogram.Snapshot::getCount).sum();
+        }
+
+        /**
+         * 没有得到response的请求数量
+         */
+        public long getErrorCount() {
+            LatencyHistogram.Snapshot error = latency.get(STATUS_CLASSES[0]);
+            return error == null ? 0 : error.getCount();
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getAborts() {
+            return aborts;
+        }
+
+        @Override
+        public String toString() {
+            return "RouteMetrics{route=" + route + ", latency=" + latency + ", leaseWait=" + leaseWait
+                    + ", bytesSent=" + bytesSent + ", bytesReceived=" + bytesReceived + ", retries=" + retries
+                    + ", timeouts=" + timeouts + ", aborts=" + aborts + '}';
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package vip.lialun.http.methods;
 
 import vip.lialun.http.HttpConstants;
+import vip.lialun.http.HttpEntityWriter;
+import vip.lialun.http.HttpException;
 import vip.lialun.http.HttpRequestConfig;
+import vip.lialun.json.JacksonHelper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.message.BasicNameValuePair;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -25,6 +36,10 @@ import java.util.stream.IntStream;
 import static vip.lialun.http.HttpConstants.*;
 
 public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extends AbstractHttpRequest<AbstractHttpMethod<T>> {
+    /**
+     * JSON请求体缓存为byte[]的最大字节数，超过时在发送时直接序列化到连接中
+     */
+    public static final int JSON_ENTITY_BUFFER_SIZE = 64 * 1024;
     /**
      * 请求类型
      */
@@ -172,23 +187,43 @@ public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extend
     /**
      * 设置请求体
      * 会自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_JSON}
+     * 使用{@link JacksonHelper#getDefaultMapper()}序列化
      */
     public T setJsonEntity(final JsonNode json) {
-        if (getEntity().getContentType() == null) {
-            getEntity().setContentType(ContentType.create(CONTENT_TYPE_APPLICATION_JSON, getConfig().getQueryCharset()));
-        }
-        return setEntity(Preconditions.checkNotNull(json).toString());
+        return setJsonEntity((Object) json);
     }
+
     /**
      * 设置请求体
      * 会自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_JSON}
+     * CharSequence和byte[]视为已经序列化的JSON直接发送，其他对象使用{@link JacksonHelper#getDefaultMapper()}序列化：
+     * 序列化结果不超过{@link #JSON_ENTITY_BUFFER_SIZE}时缓存为byte[]，使用Content-Length发送；
+     * 否则停止序列化，在每次发送（包括重试）时直接序列化到连接中，使用chunked方式传输，请求完成前不能修改对象
      */
     public T setJsonEntity(final Object object) {
+        Preconditions.checkNotNull(object);
         if (getEntity().getContentType() == null) {
             getEntity().setContentType(ContentType.create(CONTENT_TYPE_APPLICATION_JSON, getConfig().getQueryCharset()));
         }
-        return setEntity(Preconditions.checkNotNull(object).toString());
+        if (object instanceof CharSequence) {
+            return setEntity(object.toString());
+        } else if (object instanceof byte[]) {
+            return setEntity((byte[]) object);
+        }
+        ContentType contentType = getEntity().getContentType();
+        byte[] content;
+        try {
+            content = JsonEntity.toBytes(object, JsonEntity.charsetOf(contentType), JSON_ENTITY_BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new HttpException("Json entity serialize failure", e);
+        }
+        if (content != null) {
+            return setEntity(content);
+        }
+        getEntity().setStreamEntity(new JsonEntity(object, contentType));
+        return getThis();
     }
+
     /**
      * 增加MultiPart请求体
      */
@@ -227,6 +262,23 @@ public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extend
         return getThis();
     }
 
+    /**
+     * 增加MultiPart请求体，文件内容在发送时读取
+     */
+    public T addMultiPartEntity(final String name, final Path file) {
+        return addMultiPartEntity(name, Preconditions.checkNotNull(file).toFile());
+    }
+
+    /**
+     * 增加MultiPart请求体，流中的数据在发送时读取
+     * 由于流只能读取一次，包含流的请求不会被重试
+     */
+    public T addMultiPartEntity(final String name, final InputStream inputStream, ContentType contentType, String fileName) {
+        getEntity().addMultiPartEntity(name, new InputStreamBody(Preconditions.checkNotNull(inputStream),
+                Optional.ofNullable(contentType).orElse(ContentType.DEFAULT_BINARY), fileName));
+        return getThis();
+    }
+
     /**
      * 增加KeyValue类型请求体参数
      * 默认请求体为From表单（KeyValue）格式，自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_FORM_URLENCODED}
@@ -309,6 +361,59 @@ public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extend
         return setEntity(Preconditions.checkNotNull(entity).getBytes(getConfig().getQueryCharset()));
     }
 
+    /**
+     * 设置请求体，流中的数据在发送时直接写入连接，使用chunked方式传输
+     * 会自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_OCTET_STREAM}
+     * 由于流只能读取一次，该请求不会被重试
+     */
+    public T setEntity(final InputStream entity) {
+        return setEntity(entity, -1);
+    }
+
+    /**
+     * 设置请求体，流中的数据在发送时直接写入连接
+     * 会自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_OCTET_STREAM}
+     * 由于流只能读取一次，该请求不会被重试
+     *
+     * @param length 请求体长度，未知时为-1，使用chunked方式传输
+     */
+    public T setEntity(final InputStream entity, final long length) {
+        return setStreamEntity(new InputStreamEntity(Preconditions.checkNotNull(entity), length));
+    }
+
+    /**
+     * 设置请求体，文件内容在发送时读取并直接写入连接
+     * 会自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_OCTET_STREAM}
+     */
+    public T setEntity(final Path file) {
+        return setStreamEntity(new FileEntity(Preconditions.checkNotNull(file).toFile()));
+    }
+
+    /**
+     * 设置请求体，发送时由writer直接写入连接，使用chunked方式传输
+     * 会自动设置请求头Content-type为{@link HttpConstants#CONTENT_TYPE_APPLICATION_OCTET_STREAM}
+     */
+    public T setEntity(final HttpEntityWriter writer) {
+        Preconditions.checkNotNull(writer);
+        return setStreamEntity(new EntityTemplate(writer::writeTo));
+    }
+
+    private T setStreamEntity(final AbstractHttpEntity entity) {
+        if (getEntity().getContentType() == null) {
+            getEntity().setContentType(ContentType.create(CONTENT_TYPE_APPLICATION_OCTET_STREAM));
+        }
+        getEntity().setStreamEntity(entity);
+        return getThis();
+    }
+
+    /**
+     * 请求体只能发送一次时（如流），请求不能被重试
+     */
+    @Override
+    protected boolean isRetryable() {
+        return getEntity().isRepeatable();
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected T getThis() {
@@ -319,6 +424,7 @@ public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extend
 
         private ContentType contentType;
         private byte[] content;
+        private AbstractHttpEntity streamEntity;
         private Map<String, Object> multiParts;
         private Multimap<String, String> parameters;
 
@@ -332,6 +438,29 @@ public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extend
 
         public void setContentEntity(final byte[] contentEntity) {
             this.content = contentEntity;
+            this.streamEntity = null;
+        }
+
+        public void setStreamEntity(final AbstractHttpEntity streamEntity) {
+            this.streamEntity = streamEntity;
+            this.content = null;
+        }
+
+        /**
+         * 是否没有设置请求体
+         */
+        public boolean isEmpty() {
+            return parameters == null && content == null && streamEntity == null && multiParts == null;
+        }
+
+        /**
+         * 请求体是否可以重复发送
+         */
+        public boolean isRepeatable() {
+            if (streamEntity != null && !streamEntity.isRepeatable()) {
+                return false;
+            }
+            return multiParts == null || multiParts.values().stream().noneMatch(part -> part instanceof InputStreamBody);
         }
 
         public void addMultiPartEntity(final String name, final Object entity) {
@@ -357,6 +486,12 @@ public abstract class AbstractHttpMethod<T extends AbstractHttpMethod<T>> extend
                 return new UrlEncodedFormEntity(paramList, queryCharset);
             } else if (content != null) {
                 return new ByteArrayEntity(content, contentType);
+            } else if (streamEntity != null) {
+                if (contentType != null) {
+                    streamEntity.setContentType(contentType.toString());
+                }
+                streamEntity.setChunked(streamEntity.getContentLength() < 0);
+                return streamEntity;
             } else if (multiParts != null) {
                 MultipartEntityBuilder builder = MultipartEntityBuilder.create();
                 builder.setCharset(queryCharset);
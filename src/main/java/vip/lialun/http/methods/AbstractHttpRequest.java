@@ -1,22 +1,48 @@
 package vip.lialun.http.methods;
 
+import vip.lialun.http.CircuitBreakerOpenException;
 import vip.lialun.http.DefaultHttpRequestConfig;
 import vip.lialun.http.HttpException;
+import vip.lialun.http.HttpHeader;
 import vip.lialun.http.HttpRequestConfig;
 import vip.lialun.http.HttpResponse;
+import vip.lialun.http.HttpResponseHandler;
+import vip.lialun.http.HttpStreamingResponse;
+import vip.lialun.http.RateLimitExceededException;
+import vip.lialun.http.BackoffPolicy;
+import vip.lialun.http.RetryBudget;
+import vip.lialun.json.JacksonHelper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
-import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.BeanUtils;
 
-import javax.net.ssl.SSLException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
-import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 public abstract class AbstractHttpRequest<T extends AbstractHttpRequest<T>> implements HttpRequestConfig.FluentBuilder<AbstractHttpRequest<T>> {
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
     private final DefaultHttpRequestConfig config;
+    /**
+     * 本次发送的截止时间（{@link System#nanoTime()}），未设置时为{@link #NO_DEADLINE}
+     */
+    private volatile long deadlineNanos = NO_DEADLINE;
 
     public AbstractHttpRequest(HttpRequestConfig initConfig) {
         this.config = new DefaultHttpRequestConfig();
@@ -32,6 +58,55 @@ public abstract class AbstractHttpRequest<T extends AbstractHttpRequest<T>> impl
      */
     protected abstract HttpResponse _send() throws IOException;
 
+    /**
+     * 请求是否可以被重试
+     */
+    protected boolean isRetryable() {
+        return true;
+    }
+
+    /**
+     * 开始计算截止时间，每次调用send或下载时重新开始
+     */
+    void startDeadline() {
+        Duration deadline = config.getDeadline();
+        deadlineNanos = deadline == null ? NO_DEADLINE : System.nanoTime() + deadline.toNanos();
+    }
+
+    /**
+     * 距离截止时间的剩余时间，单位为ms，没有截止时间时返回{@link Long#MAX_VALUE}
+     */
+    protected long getRemainingTime() {
+        long deadline = deadlineNanos;
+        if (deadline == NO_DEADLINE) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    /**
+     * 重试预算，为null时不限制重试数量
+     */
+    protected RetryBudget getRetryBudget() {
+        return null;
+    }
+
+    /**
+     * 每次重试前调用
+     */
+    protected void onRetry() {
+    }
+
+    /**
+     * 异步发送请求，不阻塞调用线程
+     */
+    protected abstract CompletableFuture<HttpResponse> _sendAsync();
+
+    /**
+     * 发送请求，response content不读入内存
+     */
+    protected abstract HttpStreamingResponse _sendStreaming() throws IOException;
+
     /**
      * 发送请求
      *
@@ -62,6 +137,123 @@ public abstract class AbstractHttpRequest<T extends AbstractHttpRequest<T>> impl
         return new RetryHandler(maxRetryTimes, retryInterval).send(this);
     }
 
+    /**
+     * 发送请求，以流的方式处理response content，处理完成后自动关闭response、释放连接
+     * 适用于较大的response，不受{@link HttpRequestConfig#getMaxResponseContentLength()}限制。
+     * 重试只发生在处理器被调用之前
+     *
+     * @param handler response处理器
+     * @return 处理器返回的结果
+     */
+    public <R> R send(HttpResponseHandler<R> handler) {
+        try (HttpStreamingResponse response = sendStreaming()) {
+            return handler.handle(response);
+        } catch (IOException e) {
+            String message = e.getMessage();
+            if (Strings.isNotBlank(message)) {
+                throw new HttpException("Http response handle failure. message: " + message, e);
+            } else {
+                throw new HttpException("Http response handle failure.", e);
+            }
+        }
+    }
+
+    /**
+     * 发送请求，将JSON格式的response content直接从流中反序列化为对象，content不会以String或JsonNode形式存在于内存中
+     * 不受{@link HttpRequestConfig#getMaxResponseContentLength()}限制
+     *
+     * @return 反序列化后的对象，没有content时返回null
+     * @throws HttpException 请求失败、返回值状态码不是2xx或反序列化失败
+     */
+    public <R> R send(Class<R> type) {
+        return send(response -> readValue(response, JacksonHelper.getDefaultMapper().readerFor(type)));
+    }
+
+    /**
+     * 发送请求，将JSON格式的response content直接从流中反序列化为对象，content不会以String或JsonNode形式存在于内存中
+     * 不受{@link HttpRequestConfig#getMaxResponseContentLength()}限制
+     *
+     * @return 反序列化后的对象，没有content时返回null
+     * @throws HttpException 请求失败、返回值状态码不是2xx或反序列化失败
+     */
+    public <R> R send(TypeReference<R> type) {
+        return send(response -> readValue(response, JacksonHelper.getDefaultMapper().readerFor(type)));
+    }
+
+    private static <R> R readValue(HttpStreamingResponse response, ObjectReader reader) throws IOException {
+        int statusCode = response.getStatusCode();
+        if (statusCode < 200 || statusCode >= 300) {
+            throw new HttpException("Http response status is not successful, status: " + statusCode
+                    + ", url: " + response.getLastRequestUrl());
+        }
+        if (statusCode == 204 || response.getContentLength() == 0) {
+            return null;
+        }
+        if (StandardCharsets.UTF_8.equals(response.getCharset())) {
+            return reader.readValue(response.getInputStream());
+        }
+        return reader.readValue(response.getReader());
+    }
+
+    /**
+     * 发送请求，以流的方式读取response content
+     * 调用方必须在使用完毕后关闭返回的response，否则连接不会被释放
+     *
+     * @return 请求成功则返回response，请求失败则返回最后一次请求的结果（请求失败的response或者抛出异常）
+     */
+    public HttpStreamingResponse sendStreaming() {
+        return new RetryHandler(config.getRetryTimes(), config.getRetryInterval()).sendStreaming(this);
+    }
+
+    /**
+     * 异步发送请求，调用线程不会被阻塞，重试等待也不会占用线程
+     *
+     * @return 请求结果，请求失败时以{@link HttpException}异常结束
+     */
+    public CompletableFuture<HttpResponse> sendAsync() {
+        return sendAsync(config.getRetryTimes());
+    }
+
+    /**
+     * 异步发送请求，同时可以设置最大尝试次数
+     *
+     * @param maxRetryTimes 最大尝试次数
+     * @return 请求结果，请求失败时以{@link HttpException}异常结束
+     */
+    public CompletableFuture<HttpResponse> sendAsync(int maxRetryTimes) {
+        return sendAsync(maxRetryTimes, config.getRetryInterval());
+    }
+
+    /**
+     * 异步发送请求，同时可以设置最大尝试次数和每次尝试的时间间隔
+     *
+     * @param maxRetryTimes 最大尝试次数
+     * @param retryInterval 每次尝试的时间间隔，单位为ms
+     * @return 请求结果，请求失败时以{@link HttpException}异常结束
+     */
+    public CompletableFuture<HttpResponse> sendAsync(int maxRetryTimes, int retryInterval) {
+        return new RetryHandler(maxRetryTimes, retryInterval).sendAsync(this);
+    }
+
+    /**
+     * 按照请求配置的重试次数、退避策略、重试预算及截止时间执行attempt，不重新开始计算截止时间，
+     * 用于下载等由多个请求组成的操作
+     *
+     * @param retryableException 可以重试的异常
+     * @param discard            重试前释放上一次的结果
+     * @return 最后一次的结果
+     * @throws HttpException 最后一次抛出异常
+     */
+    <R> R retry(Attempt<R> attempt, Predicate<Exception> retryableException, ToIntFunction<R> statusCode,
+                BiFunction<R, String, HttpHeader> header, Consumer<R> discard) throws HttpException {
+        RetryBudget retryBudget = getRetryBudget();
+        if (retryBudget != null) {
+            retryBudget.deposit();
+        }
+        return new RetryHandler(config.getRetryTimes(), config.getRetryInterval())
+                .retry(this, attempt, retryableException, statusCode, header, discard);
+    }
+
     private static class RetryHandler {
         private final int retryTimes;
         private final int retryInterval;
@@ -72,44 +264,223 @@ public abstract class AbstractHttpRequest<T extends AbstractHttpRequest<T>> impl
         }
 
         HttpResponse send(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest) throws HttpException {
-            for (int retryTime = 0; retryTime <= retryTimes; retryTime++) {
-                HttpResponse response = null;
+            return send(httpRequest, httpRequest::_send, HttpResponse::getStatusCode, HttpResponse::getFirstHeader,
+                    response -> {
+                    });
+        }
+
+        HttpStreamingResponse sendStreaming(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest) throws HttpException {
+            //需要重试时，关闭上一次的response以释放连接
+            return send(httpRequest, httpRequest::_sendStreaming, HttpStreamingResponse::getStatusCode,
+                    HttpStreamingResponse::getFirstHeader, HttpStreamingResponse::close);
+        }
+
+        private <R> R send(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest, Attempt<R> attempt,
+                           ToIntFunction<R> statusCode, BiFunction<R, String, HttpHeader> header,
+                           Consumer<R> discard) throws HttpException {
+            httpRequest.startDeadline();
+            RetryBudget retryBudget = httpRequest.getRetryBudget();
+            if (retryBudget != null) {
+                retryBudget.deposit();
+            }
+            return retry(httpRequest, attempt, httpRequest.getConfig().getRetryableException(), statusCode, header, discard);
+        }
+
+        private <R> R retry(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest, Attempt<R> attempt,
+                            Predicate<Exception> retryableException, ToIntFunction<R> statusCode,
+                            BiFunction<R, String, HttpHeader> header, Consumer<R> discard) throws HttpException {
+            int retryTimes = httpRequest.isRetryable() ? this.retryTimes : 0;
+            long delay = 0;
+            for (int retryTime = 0; ; retryTime++) {
+                R response = null;
                 Exception exception = null;
                 try {
-                    response = httpRequest._send();
+                    response = attempt.send();
                 } catch (Exception e) {
                     exception = e;
                 }
-                if ((isNeedRetry(exception) || isNeedRetry(response)) && retryTime < retryTimes) {
-                    try {
-                        Thread.sleep(retryInterval);
-                    } catch (InterruptedException ignored) {
-                    }
+                if (retryTime < retryTimes) {
+                    delay = response == null ?
+                            nextDelay(httpRequest, retryTime + 1, delay, retryableException, exception) :
+                            nextDelay(httpRequest, retryTime + 1, delay, statusCode.applyAsInt(response),
+                                    header.apply(response, HttpHeaders.RETRY_AFTER));
                 } else {
-                    if (response == null) {
-                        String message = exception.getMessage();
-                        if (Strings.isNotBlank(message)) {
-                            throw new HttpException("Http request send failure. message: " + message, exception);
-                        } else {
-                            throw new HttpException("Http request send failure.", exception);
+                    delay = -1;
+                }
+                if (delay >= 0) {
+                    //等待前释放本次response，避免等待期间占用连接
+                    if (response != null) {
+                        discard.accept(response);
+                    }
+                    try {
+                        Thread.sleep(delay);
+                        httpRequest.onRetry();
+                        continue;
+                    } catch (InterruptedException e) {
+                        //被中断时不再重试，本次的response已经释放，按失败处理
+                        Thread.currentThread().interrupt();
+                        if (response != null) {
+                            throw sendFailure(new InterruptedIOException("interrupted while waiting to retry"));
                         }
-                    } else {
-                        return response;
                     }
                 }
+                if (response == null) {
+                    throw sendFailure(exception);
+                } else {
+                    return response;
+                }
             }
-            return null;
         }
 
-        private boolean isNeedRetry(Exception e) {
-            return e instanceof UnknownHostException || e instanceof InterruptedIOException ||
-                    e instanceof java.net.ConnectException || e instanceof SSLException ||
-                    e instanceof NoHttpResponseException;
+        CompletableFuture<HttpResponse> sendAsync(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest) {
+            CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+            AtomicReference<CompletableFuture<HttpResponse>> currentAttempt = new AtomicReference<>();
+            httpRequest.startDeadline();
+            RetryBudget retryBudget = httpRequest.getRetryBudget();
+            if (retryBudget != null) {
+                retryBudget.deposit();
+            }
+            int retryTimes = httpRequest.isRetryable() ? this.retryTimes : 0;
+            //调用方取消时，同时取消正在进行中的请求
+            result.whenComplete((response, throwable) -> {
+                CompletableFuture<HttpResponse> attempt = currentAttempt.get();
+                if (result.isCancelled() && attempt != null) {
+                    attempt.cancel(true);
+                }
+            });
+            sendAsync(httpRequest, 0, retryTimes, 0, result, currentAttempt);
+            return result;
         }
 
-        private boolean isNeedRetry(HttpResponse response) {
-            return response == null || response.getStatusCode() / 100 == 4 || response.getStatusCode() / 100 == 5;
+        @SuppressWarnings("unchecked")
+        private void sendAsync(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest, int retryTime, int retryTimes,
+                               long previousDelay, CompletableFuture<HttpResponse> result,
+                               AtomicReference<CompletableFuture<HttpResponse>> currentAttempt) {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<HttpResponse> attempt;
+            try {
+                attempt = httpRequest._sendAsync();
+            } catch (Exception e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            currentAttempt.set(attempt);
+            attempt.whenComplete((response, throwable) -> {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+                        throwable.getCause() : throwable;
+                if (cause != null && !(cause instanceof Exception)) {
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                Exception exception = (Exception) cause;
+                long delay = -1;
+                if (retryTime < retryTimes) {
+                    delay = response == null ?
+                            nextDelay(httpRequest, retryTime + 1, previousDelay,
+                                    httpRequest.getConfig().getRetryableException(), exception) :
+                            nextDelay(httpRequest, retryTime + 1, previousDelay, response.getStatusCode(),
+                                    response.getFirstHeader(HttpHeaders.RETRY_AFTER));
+                }
+                if (delay >= 0) {
+                    long currentDelay = delay;
+                    httpRequest.onRetry();
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                            .execute(() -> sendAsync(httpRequest, retryTime + 1, retryTimes, currentDelay, result, currentAttempt));
+                } else if (response == null) {
+                    result.completeExceptionally(sendFailure(exception));
+                } else {
+                    result.complete(response);
+                }
+            });
         }
+
+        /**
+         * 请求异常时计算重试前的等待时间
+         *
+         * @return 等待时间，单位为ms，不需要重试时返回-1
+         */
+        private long nextDelay(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest, int retryTime,
+                               long previousDelay, Predicate<Exception> retryableException, Exception exception) {
+            HttpRequestConfig config = httpRequest.getConfig();
+            if (exception != null && !retryableException.test(exception)) {
+                return -1;
+            }
+            long delay = config.getBackoffPolicy().nextDelay(retryTime, retryInterval, previousDelay);
+            return acquireRetry(httpRequest, delay);
+        }
+
+        /**
+         * 根据response状态码及Retry-After计算重试前的等待时间
+         *
+         * @return 等待时间，单位为ms，不需要重试时返回-1
+         */
+        private long nextDelay(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest, int retryTime,
+                               long previousDelay, int statusCode, HttpHeader retryAfterHeader) {
+            HttpRequestConfig config = httpRequest.getConfig();
+            if (!config.getRetryableStatus().test(statusCode)) {
+                return -1;
+            }
+            long delay = config.getBackoffPolicy().nextDelay(retryTime, retryInterval, previousDelay);
+            if (config.isRespectRetryAfter() && retryAfterHeader != null) {
+                long retryAfter = parseRetryAfter(retryAfterHeader.getValue());
+                if (retryAfter > config.getMaxRetryAfter()) {
+                    //服务端要求等待的时间过长，直接返回本次结果
+                    return -1;
+                }
+                delay = Math.max(delay, retryAfter);
+            }
+            return acquireRetry(httpRequest, delay);
+        }
+
+        private long acquireRetry(@SuppressWarnings("rawtypes") AbstractHttpRequest httpRequest, long delay) {
+            //等待之后已经没有剩余时间
+            if (Math.max(0, delay) >= httpRequest.getRemainingTime()) {
+                return -1;
+            }
+            RetryBudget retryBudget = httpRequest.getRetryBudget();
+            if (retryBudget != null && !retryBudget.tryAcquire()) {
+                return -1;
+            }
+            return Math.max(0, delay);
+        }
+
+        private HttpException sendFailure(Exception exception) {
+            //保留异常类型，调用方可以区分熔断、限流和请求失败
+            if (exception instanceof CircuitBreakerOpenException || exception instanceof RateLimitExceededException) {
+                return (HttpException) exception;
+            }
+            String message = exception == null ? null : exception.getMessage();
+            if (Strings.isNotBlank(message)) {
+                return new HttpException("Http request send failure. message: " + message, exception);
+            } else {
+                return new HttpException("Http request send failure.", exception);
+            }
+        }
+    }
+
+    /**
+     * 解析Retry-After，支持秒数和HTTP-date两种格式
+     *
+     * @return 等待时间，单位为ms，无法解析时返回-1
+     */
+    static long parseRetryAfter(String value) {
+        if (Strings.isBlank(value)) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(seconds);
+        } catch (NumberFormatException ignored) {
+        }
+        Date date = DateUtils.parseDate(trimmed);
+        return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+    }
+
+    @FunctionalInterface
+    interface Attempt<R> {
+        R send() throws IOException;
     }
 
     @SuppressWarnings("unchecked")
@@ -218,4 +589,76 @@ public abstract class AbstractHttpRequest<T extends AbstractHttpRequest<T>> impl
         config.setCookieSpecs(cookieSpecs);
         return getThis();
     }
+
+    @Override
+    public T setExpectContinueEnabled(boolean expectContinueEnabled) {
+        config.setExpectContinueEnabled(expectContinueEnabled);
+        return getThis();
+    }
+
+    @Override
+    public T setBackoffPolicy(BackoffPolicy backoffPolicy) {
+        config.setBackoffPolicy(backoffPolicy);
+        return getThis();
+    }
+
+    @Override
+    public T setRetryableStatus(IntPredicate retryableStatus) {
+        config.setRetryableStatus(retryableStatus);
+        return getThis();
+    }
+
+    @Override
+    public T setRetryableException(Predicate<Exception> retryableException) {
+        config.setRetryableException(retryableException);
+        return getThis();
+    }
+
+    @Override
+    public T setRespectRetryAfter(boolean respectRetryAfter) {
+        config.setRespectRetryAfter(respectRetryAfter);
+        return getThis();
+    }
+
+    @Override
+    public T setMaxRetryAfter(int maxRetryAfter) {
+        config.setMaxRetryAfter(maxRetryAfter);
+        return getThis();
+    }
+
+    @Override
+    public T setDeadline(Duration deadline) {
+        config.setDeadline(deadline);
+        return getThis();
+    }
+
+    @Override
+    public T setRateLimitTimeout(int rateLimitTimeout) {
+        config.setRateLimitTimeout(rateLimitTimeout);
+        return getThis();
+    }
+
+    @Override
+    public T setHedgingEnabled(boolean hedgingEnabled) {
+        config.setHedgingEnabled(hedgingEnabled);
+        return getThis();
+    }
+
+    @Override
+    public T setHedgeDelay(int hedgeDelay) {
+        config.setHedgeDelay(hedgeDelay);
+        return getThis();
+    }
+
+    @Override
+    public T setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        config.setRequestCompressionEnabled(requestCompressionEnabled);
+        return getThis();
+    }
+
+    @Override
+    public T setRequestCompressionThreshold(int requestCompressionThreshold) {
+        config.setRequestCompressionThreshold(requestCompressionThreshold);
+        return getThis();
+    }
 }
\ No newline at end of file
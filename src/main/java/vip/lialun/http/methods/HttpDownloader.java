@@ -0,0 +1,454 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.http.HttpException;
+import vip.lialun.http.HttpHeader;
+import vip.lialun.regex.RegexUtils;
+import vip.lialun.string.Check;
+import vip.lialun.thread.SimpleThreadFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 文件下载
+ * <p>
+ * content通过{@link FileChannel}直接写入文件，不会整体读入内存。
+ * 服务端支持Range请求时，可以将文件拆分为多个分段并行下载；下载失败时，已完成的部分及进度会被保留，
+ * 再次下载同一个文件时从中断处继续。
+ * 下载过程中数据写入"目标文件.part"，进度写入"目标文件.part.state"，下载完成后重命名为目标文件。
+ * 每个请求与流式请求一样经过限流、熔断及截止时间的检查，httpExecuteTimeout只限制获取到response header之前的时间。
+ * 分段请求携带If-Range，并校验Content-Range，文件在下载过程中发生变化时丢弃已下载的数据重新下载一次。
+ * 分段失败时按照请求的重试次数、退避策略及重试预算重试，所有请求共用一个截止时间。
+ *
+ * @author lialun
+ */
+final class HttpDownloader {
+    private static final String HEADER_RANGE = "Range";
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+    private static final String HEADER_IF_RANGE = "If-Range";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)\\s*");
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".part.state";
+    /**
+     * 每个分段的最小长度，避免小文件被拆分为过多分段
+     */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    /**
+     * 每写入该长度的数据保存一次进度
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final HttpMethod<?> method;
+    private final String finalUrl;
+    private final Path target;
+    private final Path partFile;
+    private final Path stateFile;
+
+    HttpDownloader(HttpMethod<?> method, Path target) {
+        this.method = method;
+        this.finalUrl = method.generateURLWithParams();
+        this.target = target.toAbsolutePath();
+        this.partFile = this.target.resolveSibling(this.target.getFileName() + PART_SUFFIX);
+        this.stateFile = this.target.resolveSibling(this.target.getFileName() + STATE_SUFFIX);
+    }
+
+    /**
+     * 下载文件
+     *
+     * @param segments 最大并行分段数量
+     * @return 下载完成的文件
+     */
+    Path download(int segments) {
+        method.startDeadline();
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            try {
+                download0(segments);
+            } catch (ResourceChangedException e) {
+                //文件在下载过程中发生变化，已下载的数据作废，重新下载一次
+                Files.deleteIfExists(partFile);
+                Files.deleteIfExists(stateFile);
+                download0(segments);
+            }
+            try {
+                Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(stateFile);
+            return target;
+        } catch (IOException e) {
+            throw new HttpException("Http download failure, url: " + finalUrl + ", message: " + e.getMessage(), e);
+        }
+    }
+
+    private void download0(int segments) throws IOException {
+        State state = probe(Math.max(segments, 1));
+        if (state != null) {
+            downloadSegments(state);
+        }
+    }
+
+    /**
+     * 通过Range: bytes=0-0请求获取文件长度，并判断服务端是否支持Range请求
+     * 服务端不支持Range请求时，直接使用本次请求完成下载，返回null
+     */
+    private State probe(int segments) throws IOException {
+        try (CloseableHttpResponse response = method.executeStreaming(finalUrl, new BasicHttpContext(),
+                new BasicHeader(HEADER_RANGE, "bytes=0-0"))) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_OK) {
+                //不支持Range请求，单线程下载，无法续传
+                Files.deleteIfExists(stateFile);
+                try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    HttpEntity entity = response.getEntity();
+                    if (entity != null) {
+                        transfer(entity.getContent(), channel, 0, Long.MAX_VALUE, null, -1);
+                    }
+                }
+                return null;
+            }
+            //读完content（206时只有1字节），连接才能放回连接池复用
+            EntityUtils.consume(response.getEntity());
+            if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                //空文件
+                Files.deleteIfExists(stateFile);
+                Files.write(partFile, new byte[0]);
+                return null;
+            }
+            if (statusCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new HttpException("Http download failure, url: " + finalUrl + ", status code: " + statusCode);
+            }
+            String totalLength = RegexUtils.extractFirstGroup("/(\\d+)\\s*$",
+                    Objects.toString(headerValue(response.getFirstHeader(HEADER_CONTENT_RANGE)), ""));
+            if (Check.isNullOrEmpty(totalLength)) {
+                throw new HttpException("Http download failure, unknown content length, url: " + finalUrl);
+            }
+            String etag = headerValue(response.getFirstHeader(HEADER_ETAG));
+            String lastModified = headerValue(response.getFirstHeader(HEADER_LAST_MODIFIED));
+            State state = State.load(stateFile);
+            //文件长度、ETag或Last-Modified发生变化时，已下载的数据作废
+            if (state == null || !Files.exists(partFile)
+                    || !state.matches(finalUrl, Long.parseLong(totalLength), etag, lastModified)) {
+                Files.deleteIfExists(partFile);
+                state = State.create(finalUrl, Long.parseLong(totalLength), etag, lastModified, segments);
+                state.save(stateFile);
+            }
+            return state;
+        }
+    }
+
+    private void downloadSegments(State state) throws IOException {
+        int segments = state.starts.length;
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            //FileChannel#transferFrom不会写入超出文件长度的位置，所以预先设置文件长度
+            if (channel.size() < state.length) {
+                channel.write(ByteBuffer.wrap(new byte[1]), state.length - 1);
+            }
+            if (segments == 1) {
+                downloadSegment(state, 0, channel);
+                return;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(segments, new SimpleThreadFactory("HttpDownloader"));
+            try {
+                List<Future<?>> futures = new ArrayList<>(segments);
+                for (int i = 0; i < segments; i++) {
+                    int index = i;
+                    futures.add(executor.submit(() -> {
+                        downloadSegment(state, index, channel);
+                        return null;
+                    }));
+                }
+                //等待所有分段结束，某个分段失败时其他分段继续下载，以便续传时只需下载未完成的部分。
+                //不能中断下载线程，FileChannel在线程被中断时会被关闭
+                Throwable failure = null;
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        //文件发生变化时需要重新下载，优先抛出
+                        if (failure == null || e.getCause() instanceof ResourceChangedException) {
+                            failure = e.getCause();
+                        }
+                    }
+                }
+                if (failure instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (failure instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (failure != null) {
+                    throw new IOException(failure);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("download interrupted", e);
+            } finally {
+                executor.shutdown();
+            }
+        } finally {
+            state.save(stateFile);
+        }
+    }
+
+    /**
+     * 下载一个分段，失败时按照请求的重试配置进行重试，每次重试从已完成的位置继续
+     *
+     * @throws ResourceChangedException 服务端返回整个文件或Content-Range与请求的范围不一致
+     */
+    private void downloadSegment(State state, int index, FileChannel channel) throws IOException {
+        if (state.isCompleted(index)) {
+            return;
+        }
+        try (CloseableHttpResponse response = method.retry(() -> requestSegment(state, index, channel),
+                e -> e instanceof TransferException || method.getConfig().getRetryableException().test(e),
+                r -> r.getStatusLine().getStatusCode(),
+                (r, name) -> r.getFirstHeader(name) == null ? null : new HttpHeader(r.getFirstHeader(name)),
+                HttpDownloader::closeQuietly)) {
+            if (state.isCompleted(index)) {
+                return;
+            }
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new ResourceChangedException(finalUrl);
+            }
+            throw new HttpException("Http download failure, url: " + finalUrl + ", status code: " + statusCode);
+        }
+    }
+
+    /**
+     * 请求分段未完成的部分，response为206且Content-Range与请求的范围一致时写入文件，
+     * 否则不读取content直接返回response，由调用方判断
+     */
+    private CloseableHttpResponse requestSegment(State state, int index, FileChannel channel) throws IOException {
+        long position = state.starts[index] + state.written.get(index);
+        long end = state.ends[index];
+        List<Header> headers = new ArrayList<>(2);
+        headers.add(new BasicHeader(HEADER_RANGE, "bytes=" + position + "-" + end));
+        String validator = state.validator();
+        if (validator != null) {
+            //文件发生变化时服务端返回200及整个文件，不会返回新文件的片段
+            headers.add(new BasicHeader(HEADER_IF_RANGE, validator));
+        }
+        CloseableHttpResponse response = method.executeStreaming(finalUrl, new BasicHttpContext(),
+                headers.toArray(new Header[0]));
+        try {
+            if (isExpectedRange(response, state, position, end)) {
+                try {
+                    transfer(response.getEntity().getContent(), channel, position, end - position + 1, state, index);
+                } catch (IOException e) {
+                    throw new TransferException(e);
+                }
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(response);
+            throw e;
+        }
+    }
+
+    private static boolean isExpectedRange(CloseableHttpResponse response, State state, long start, long end) {
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT || response.getEntity() == null) {
+            return false;
+        }
+        //服务端忽略If-Range时，通过ETag判断文件是否发生变化
+        if (state.isStrongEtag() && !state.etag.equals(headerValue(response.getFirstHeader(HEADER_ETAG)))) {
+            return false;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(Objects.toString(headerValue(response.getFirstHeader(HEADER_CONTENT_RANGE)), ""));
+        return matcher.matches() && Long.parseLong(matcher.group(1)) == start && Long.parseLong(matcher.group(2)) == end
+                && Long.parseLong(matcher.group(3)) == state.length;
+    }
+
+    private static void closeQuietly(CloseableHttpResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            //ignored
+        }
+    }
+
+    /**
+     * 将content写入文件指定位置，每写入一段数据记录一次进度
+     */
+    private void transfer(InputStream content, FileChannel channel, long position, long length,
+                          State state, int index) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(content)) {
+            long transferred = 0;
+            while (transferred < length) {
+                long count = channel.transferFrom(source, position + transferred,
+                        Math.min(TRANSFER_CHUNK_SIZE, length - transferred));
+                if (count <= 0) {
+                    break;
+                }
+                transferred += count;
+                if (state != null) {
+                    state.written.addAndGet(index, count);
+                    state.save(stateFile);
+                }
+            }
+            if (length != Long.MAX_VALUE && transferred < length) {
+                throw new IOException("Premature end of content, expected " + length + " bytes, received " + transferred);
+            }
+        }
+    }
+
+    private static String headerValue(Header header) {
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * 接收content失败，与连接失败一样可以重试
+     */
+    private static final class TransferException extends IOException {
+        TransferException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 文件在下载过程中发生变化
+     */
+    private static final class ResourceChangedException extends HttpException {
+        ResourceChangedException(String url) {
+            super("Http download failure, resource changed during download, url: " + url);
+        }
+    }
+
+    /**
+     * 下载进度
+     */
+    private static final class State {
+        private String url;
+        private long length;
+        private String etag;
+        private String lastModified;
+        private long[] starts;
+        private long[] ends;
+        private AtomicLongArray written;
+
+        static State create(String url, long length, String etag, String lastModified, int segments) {
+            int count = (int) Math.max(1, Math.min(segments, (length + MIN_SEGMENT_SIZE - 1) / MIN_SEGMENT_SIZE));
+            State state = new State();
+            state.url = url;
+            state.length = length;
+            state.etag = etag;
+            state.lastModified = lastModified;
+            state.starts = new long[count];
+            state.ends = new long[count];
+            state.written = new AtomicLongArray(count);
+            long segmentSize = length / count;
+            for (int i = 0; i < count; i++) {
+                state.starts[i] = i * segmentSize;
+                state.ends[i] = i == count - 1 ? length - 1 : (i + 1) * segmentSize - 1;
+            }
+            return state;
+        }
+
+        static State load(Path stateFile) {
+            if (!Files.exists(stateFile)) {
+                return null;
+            }
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                Properties properties = new Properties();
+                properties.load(reader);
+                State state = new State();
+                state.url = properties.getProperty("url");
+                state.length = Long.parseLong(properties.getProperty("length"));
+                state.etag = properties.getProperty("etag");
+                state.lastModified = properties.getProperty("lastModified");
+                int count = Integer.parseInt(properties.getProperty("segments"));
+                state.starts = new long[count];
+                state.ends = new long[count];
+                state.written = new AtomicLongArray(count);
+                for (int i = 0; i < count; i++) {
+                    String[] segment = properties.getProperty("segment." + i).split(",");
+                    state.starts[i] = Long.parseLong(segment[0]);
+                    state.ends[i] = Long.parseLong(segment[1]);
+                    state.written.set(i, Long.parseLong(segment[2]));
+                }
+                return state;
+            } catch (IOException | RuntimeException e) {
+                //进度文件损坏时重新下载
+                return null;
+            }
+        }
+
+        boolean matches(String url, long length, String etag, String lastModified) {
+            return Objects.equals(this.url, url) && this.length == length && Objects.equals(this.etag, etag)
+                    && Objects.equals(this.lastModified, lastModified);
+        }
+
+        boolean isCompleted(int index) {
+            return starts[index] + written.get(index) > ends[index];
+        }
+
+        boolean isStrongEtag() {
+            return etag != null && !etag.startsWith("W/");
+        }
+
+        /**
+         * If-Range使用的validator，弱ETag不能用于If-Range，此时使用Last-Modified
+         */
+        String validator() {
+            return isStrongEtag() ? etag : lastModified;
+        }
+
+        synchronized void save(Path stateFile) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            properties.setProperty("length", String.valueOf(length));
+            if (etag != null) {
+                properties.setProperty("etag", etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty("lastModified", lastModified);
+            }
+            properties.setProperty("segments", String.valueOf(starts.length));
+            for (int i = 0; i < starts.length; i++) {
+                properties.setProperty("segment." + i, starts[i] + "," + ends[i] + "," + written.get(i));
+            }
+            Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,20 +1,52 @@
 package vip.lialun.http.methods;
 
 import com.google.common.net.UrlEscapers;
+import org.apache.http.ContentTooLongException;
 import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ContentType;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import vip.lialun.http.*;
+import vip.lialun.thread.HashedWheelTimer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static vip.lialun.http.HttpConstants.*;
 
@@ -29,56 +61,840 @@ public abstract class HttpMethod<T extends HttpMethod<T>> extends AbstractHttpMe
         this.httpClient = httpClient;
     }
 
+    /**
+     * 开启请求合并时，并发的相同GET/HEAD请求（方法、最终URL、请求头及影响response的配置均相同）只发送一次，共享同一个response，
+     * 等待其他请求结果的时间不超过本请求的截止时间及httpExecuteTimeout
+     */
+    @Override
+    public HttpResponse send(int maxRetryTimes, int retryInterval) {
+        RequestCoalescer coalescer = httpClient.getRequestCoalescer();
+        if (coalescer == null || !isCoalescible()) {
+            return super.send(maxRetryTimes, retryInterval);
+        }
+        return coalescer.execute(generateCoalescingKey(), getCoalescingWaitTimeout(),
+                () -> super.send(maxRetryTimes, retryInterval));
+    }
+
+    @Override
+    protected RetryBudget getRetryBudget() {
+        return httpClient.getRetryBudget();
+    }
+
+    private boolean isCoalescible() {
+        return (METHOD_GET.equals(getMethod()) || METHOD_HEAD.equals(getMethod())) && getEntity().isEmpty();
+    }
+
+    /**
+     * 合并请求的key，除请求本身外，还包括response的解码方式、最大长度及重定向、代理等影响response的配置
+     */
+    private String generateCoalescingKey() {
+        HttpRequestConfig config = getConfig();
+        StringBuilder key = new StringBuilder(getMethod()).append(' ').append(generateURLWithParams())
+                .append("\ncharset:").append(config.getResponseCharset())
+                .append("\nhtml-content-type:").append(config.isUseHtmlContentType())
+                .append("\nmax-content-length:").append(config.getMaxResponseContentLength())
+                .append("\nredirects:").append(config.isRedirectsEnabled() ? config.getMaxRedirects() : -1)
+                .append("\nproxy:").append(config.getProxy());
+        Arrays.stream(generateHeaders())
+                .map(header -> header.getName().toLowerCase() + ':' + header.getValue())
+                .sorted()
+                .forEach(header -> key.append('\n').append(header));
+        return key.toString();
+    }
+
+    /**
+     * 等待合并请求结果的最长时间，单位为ms，不限制时返回{@link Long#MAX_VALUE}
+     */
+    private long getCoalescingWaitTimeout() {
+        long timeout = getConfig().getHttpExecuteTimeout() > 0 ? getConfig().getHttpExecuteTimeout() : Long.MAX_VALUE;
+        Duration deadline = getConfig().getDeadline();
+        return deadline == null ? timeout : Math.min(timeout, Math.max(0, deadline.toMillis()));
+    }
+
     @Override
     protected HttpResponse _send() throws IOException {
         // 拼装请求参数,生成最终URL
         String finalUrl = generateURLWithParams();
+        // 限流，等待的时间计入截止时间
+        acquireRateLimit(finalUrl);
+        int executeTimeout = getExecuteTimeout(finalUrl);
         // 生成request对象
-        HttpEntityEnclosingRequestBase httpRequest = new HttpEntityEnclosingRequestBase() {
-            @Override
-            public String getMethod() {
-                return HttpMethod.super.getMethod();
+        HttpEntityEnclosingRequestBase httpRequest = createHttpRequest(finalUrl);
+        HttpResponse response = executeAttempt(finalUrl, httpRequest, httpClient.getHttp2Transport(), executeTimeout);
+        if (!isCompressionRejected(httpRequest, isCompressed(httpRequest), response.getStatusCode()) || !tryAcquireResend()) {
+            return response;
+        }
+        // 服务端不支持压缩的请求体，不压缩再发送一次，与正常请求一样需要获取限流许可
+        acquireRateLimit(finalUrl);
+        executeTimeout = getExecuteTimeout(finalUrl);
+        return executeAttempt(finalUrl, createHttpRequest(finalUrl), httpClient.getHttp2Transport(), executeTimeout);
+    }
+
+    /**
+     * 按传输方式及是否对冲发送一次请求
+     */
+    private HttpResponse executeAttempt(String finalUrl, HttpEntityEnclosingRequestBase httpRequest, Http2Transport http2Transport,
+                                        int executeTimeout) throws IOException {
+        if (http2Transport != null) {
+            return executeHttp2(finalUrl, httpRequest, http2Transport, executeTimeout);
+        }
+        return isHedgeable() ? executeHedged(finalUrl, httpRequest, executeTimeout) : execute(finalUrl, httpRequest, executeTimeout);
+    }
+
+    /**
+     * 压缩的请求体被拒绝后，不压缩再发送一次之前调用，与重试一样消耗重试预算
+     *
+     * @return 是否可以再发送一次，重试预算不足时返回false
+     */
+    private boolean tryAcquireResend() {
+        RetryBudget retryBudget = getRetryBudget();
+        return retryBudget == null || retryBudget.tryAcquire();
+    }
+
+    /**
+     * 压缩的请求体被服务端以415拒绝时，该route之后不再压缩
+     *
+     * @return 是否可以不压缩再发送一次
+     */
+    private boolean isCompressionRejected(HttpEntityEnclosingRequestBase httpRequest, boolean compressed, int statusCode) {
+        if (!compressed || statusCode != HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE) {
+            return false;
+        }
+        httpClient.rejectRequestCompression(URIUtils.extractHost(httpRequest.getURI()));
+        return getEntity().isRepeatable();
+    }
+
+    private static boolean isCompressed(HttpEntityEnclosingRequestBase httpRequest) {
+        return httpRequest.getEntity() instanceof GzipCompressingEntity;
+    }
+
+    private HttpResponse execute(String finalUrl, HttpEntityEnclosingRequestBase httpRequest, int executeTimeout) throws IOException {
+        // 熔断器打开时直接失败，不从连接池获取连接
+        CircuitBreaker circuitBreaker = acquireCircuitBreaker(httpRequest);
+        RouteMetrics metrics = httpClient.getRouteMetrics(URIUtils.extractHost(httpRequest.getURI()));
+        long startTime = System.nanoTime();
+        boolean failure = true;
+        int statusCode = 0;
+        long received = -1;
+        boolean timedOut = false;
+        // http执行超时处理，由HttpClient共享的定时器负责中断请求
+        HashedWheelTimer.Timeout timeout = null;
+        if (executeTimeout > 0) {
+            timeout = httpClient.scheduleHttpExecuteTimeout(httpRequest, executeTimeout);
+        }
+        //发送请求
+        HttpContext context = new BasicHttpContext();
+        try (CloseableHttpResponse resp = httpClient.getCloseableHttpClient().execute(httpRequest, context)) {
+            httpClient.recordCacheResponseStatus(context);
+            HttpResponse response = new HttpResponse(resp, context, getConfig());
+            //读取content时的异常（如读超时、连接重置）同样记为失败
+            failure = isServerError(response.getStatusCode());
+            if (getConfig().isHedgingEnabled() && !failure) {
+                httpClient.getLatencyTracker(URIUtils.extractHost(httpRequest.getURI())).record(System.nanoTime() - startTime);
             }
-        };
-        httpRequest.setURI(URI.create(finalUrl));
-        httpRequest.setConfig(generateRequestConfig());
-        // 设置header
-        httpRequest.setHeaders(generateHeaders());
-        // 设置请求体
-        httpRequest.setEntity(getEntity().getApacheHttpClientEntity(getConfig().getQueryCharset()));
-        // http执行超时处理
-        //TODO 修改为线程池的方式，池大小为=连接池大小、默认超时时间独立设置。
-        Thread timeoutThread = null;
-        boolean[] isTimeout = new boolean[]{false};
-        if (getConfig().getHttpExecuteTimeout() > 0) {
-            timeoutThread = new Thread(() -> {
+            statusCode = response.getStatusCode();
+            received = response.getContentSize();
+            return response;
+        } catch (IOException e) {
+            timedOut = isTimeout(e);
+            if (timeout != null && timeout.isExpired()) {
+                throw new HttpException("http execute timeout, url: " + finalUrl, e);
+            } else {
+                throw e;
+            }
+        } finally {
+            boolean timeoutExpired = timeout != null && timeout.isExpired();
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            //被对冲请求中断的请求不计入熔断器，归还HALF_OPEN的试探名额
+            if (circuitBreaker != null && (!httpRequest.isAborted() || timeoutExpired)) {
+                circuitBreaker.record(System.nanoTime() - startTime, failure);
+            } else if (circuitBreaker != null) {
+                circuitBreaker.release();
+            }
+            recordMetrics(metrics, httpRequest, System.nanoTime() - startTime, statusCode, received,
+                    timedOut || timeoutExpired, httpRequest.isAborted() && !timeoutExpired);
+        }
+    }
+
+    /**
+     * 通过HTTP/2传输发送请求，熔断、统计及执行超时的处理与{@link #execute}一致，不支持对冲及response缓存
+     */
+    private HttpResponse executeHttp2(String finalUrl, HttpEntityEnclosingRequestBase httpRequest, Http2Transport transport,
+                                      int executeTimeout) throws IOException {
+        CircuitBreaker circuitBreaker = acquireCircuitBreaker(httpRequest);
+        RouteMetrics metrics = httpClient.getRouteMetrics(URIUtils.extractHost(httpRequest.getURI()));
+        long startTime = System.nanoTime();
+        boolean failure = true;
+        int statusCode = 0;
+        long received = -1;
+        boolean timedOut = false;
+        //soTimeout作为获取到response header的超时时间
+        CompletableFuture<java.net.http.HttpResponse<InputStream>> future =
+                transport.send(httpRequest, httpRequest.getConfig().getSocketTimeout());
+        HashedWheelTimer.Timeout timeout = executeTimeout <= 0 ? null
+                : httpClient.scheduleHttpExecuteTimeout(() -> Http2Transport.abort(future), executeTimeout);
+        try {
+            HttpResponse response = Http2Transport.toHttpResponse(future.get(), getConfig());
+            statusCode = response.getStatusCode();
+            failure = isServerError(statusCode);
+            received = response.getContentSize();
+            return response;
+        } catch (ExecutionException e) {
+            //抛出JDK client的原始异常，按重试配置判断是否重试
+            Throwable cause = e.getCause();
+            timedOut = isTimeout(cause);
+            if (timeout != null && timeout.isExpired()) {
+                throw new HttpException("http execute timeout, url: " + finalUrl, cause);
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new HttpException("http execute failure, url: " + finalUrl, cause);
+        } catch (CancellationException | HttpException e) {
+            if (timeout != null && timeout.isExpired()) {
+                throw new HttpException("http execute timeout, url: " + finalUrl, e);
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Http2Transport.abort(future);
+            throw new InterruptedIOException("http execute interrupted, url: " + finalUrl);
+        } finally {
+            boolean timeoutExpired = timeout != null && timeout.isExpired();
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.record(System.nanoTime() - startTime, failure);
+            }
+            recordMetrics(metrics, httpRequest, System.nanoTime() - startTime, statusCode, received,
+                    timedOut || timeoutExpired, false);
+        }
+    }
+
+    /**
+     * 是否可以对冲，只有没有请求体的幂等请求可以对冲
+     */
+    private boolean isHedgeable() {
+        return getConfig().isHedgingEnabled() && getEntity().isEmpty() && (METHOD_GET.equals(getMethod())
+                || METHOD_HEAD.equals(getMethod()) || METHOD_OPTIONS.equals(getMethod()));
+    }
+
+    /**
+     * 对冲发送：超过对冲等待时间仍未返回时，在对冲线程池中再发送一次相同请求，
+     * 使用先成功返回的结果，并中断另一个请求。对冲请求数量受对冲预算限制。
+     */
+    private HttpResponse executeHedged(String finalUrl, HttpEntityEnclosingRequestBase primary, int executeTimeout) throws IOException {
+        HttpHost host = URIUtils.extractHost(primary.getURI());
+        RetryBudget hedgeBudget = httpClient.getHedgeBudget();
+        long hedgeDelay = getHedgeDelay(host);
+        if (hedgeBudget == null || hedgeDelay <= 0) {
+            return execute(finalUrl, primary, executeTimeout);
+        }
+        hedgeBudget.deposit();
+        // 0：对冲未发出，1：对冲已发出，2：原请求已结束，不再对冲
+        AtomicInteger hedgeState = new AtomicInteger();
+        AtomicBoolean decided = new AtomicBoolean();
+        AtomicReference<HttpEntityEnclosingRequestBase> hedgeRequest = new AtomicReference<>();
+        CompletableFuture<HttpResponse> hedgeResult = new CompletableFuture<>();
+        HashedWheelTimer.Timeout hedgeTimeout = httpClient.scheduleHedge(() -> {
+            //先确定原请求未结束再获取许可，原请求已结束时不消耗对冲预算和限流许可
+            if (!hedgeState.compareAndSet(0, 1)) {
+                return;
+            }
+            RateLimiter rateLimiter = httpClient.getRateLimiter(host.getHostName());
+            if (!hedgeBudget.tryAcquire() || rateLimiter != null && !rateLimiter.tryAcquire()) {
+                //不发送对冲，原请求失败时不再等待对冲结果
+                hedgeState.set(2);
+                hedgeResult.cancel(false);
+                return;
+            }
+            HttpEntityEnclosingRequestBase hedge = createHttpRequest(finalUrl);
+            hedgeRequest.set(hedge);
+            //获取许可期间原请求已经成功返回，此后原请求会中断已设置的对冲请求
+            if (decided.get()) {
+                hedgeResult.cancel(false);
+                return;
+            }
+            httpClient.executeHedge(() -> {
                 try {
-                    Thread.sleep(getConfig().getHttpExecuteTimeout());
-                    httpRequest.abort();
-                    isTimeout[0] = true;
-                } catch (InterruptedException e) {
-                    //thread finish
+                    HttpResponse response = execute(finalUrl, hedge, getExecuteTimeout(finalUrl));
+                    if (decided.compareAndSet(false, true)) {
+                        hedgeResult.complete(response);
+                        primary.abort();
+                    } else {
+                        hedgeResult.cancel(false);
+                    }
+                } catch (Exception e) {
+                    hedgeResult.completeExceptionally(e);
                 }
             });
-            timeoutThread.start();
+        }, hedgeDelay);
+        try {
+            HttpResponse response = execute(finalUrl, primary, executeTimeout);
+            if (decided.compareAndSet(false, true)) {
+                abortHedge(hedgeTimeout, hedgeState, hedgeRequest);
+                return response;
+            }
+            // 对冲请求已经成功返回
+        } catch (IOException | RuntimeException e) {
+            //对冲已经发出时等待对冲结果
+            if (!hedgeState.compareAndSet(0, 2)) {
+                HttpResponse hedgeResponse = awaitHedge(hedgeResult, hedgeRequest);
+                if (hedgeResponse != null) {
+                    httpClient.recordHedgeWin();
+                    return hedgeResponse;
+                }
+            }
+            hedgeTimeout.cancel();
+            throw e;
         }
-        //发送请求
+        httpClient.recordHedgeWin();
+        return hedgeResult.join();
+    }
+
+    private static void abortHedge(HashedWheelTimer.Timeout hedgeTimeout, AtomicInteger hedgeState,
+                                   AtomicReference<HttpEntityEnclosingRequestBase> hedgeRequest) {
+        hedgeTimeout.cancel();
+        if (!hedgeState.compareAndSet(0, 2)) {
+            HttpEntityEnclosingRequestBase hedge = hedgeRequest.get();
+            if (hedge != null) {
+                hedge.abort();
+            }
+        }
+    }
+
+    /**
+     * 原请求失败时等待已发出的对冲请求
+     *
+     * @return 对冲请求的结果，对冲请求也失败时返回null
+     */
+    private static HttpResponse awaitHedge(CompletableFuture<HttpResponse> hedgeResult,
+                                           AtomicReference<HttpEntityEnclosingRequestBase> hedgeRequest) {
+        try {
+            return hedgeResult.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            HttpEntityEnclosingRequestBase hedge = hedgeRequest.get();
+            if (hedge != null) {
+                hedge.abort();
+            }
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 对冲等待时间，未配置时使用该route最近请求耗时的p95
+     *
+     * @return 等待时间，单位为ms，无法确定时返回-1
+     */
+    private long getHedgeDelay(HttpHost host) {
+        if (getConfig().getHedgeDelay() > 0) {
+            return getConfig().getHedgeDelay();
+        }
+        long p95 = httpClient.getLatencyTracker(host).getPercentile(0.95);
+        return p95 < 0 ? -1 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(p95));
+    }
+
+    /**
+     * 流式发送请求，httpExecuteTimeout只限制获取到response header之前的时间，
+     * content的读取时间由调用方控制，读取过程仍然受soTimeout限制
+     */
+    @Override
+    protected HttpStreamingResponse _sendStreaming() throws IOException {
         HttpContext context = new BasicHttpContext();
-        try (CloseableHttpResponse resp = httpClient.getCloseableHttpClient().execute(httpRequest, context)) {
-            return new HttpResponse(resp, context, getConfig());
+        return new HttpStreamingResponse(executeStreaming(generateURLWithParams(), context), context, getConfig());
+    }
+
+    /**
+     * 发送请求，返回content未读取的response，由调用方负责关闭。
+     * 限流、截止时间、熔断及统计的处理与{@link #execute}一致，httpExecuteTimeout只限制获取到response header之前的时间
+     *
+     * @param headers 额外的请求头，如Range
+     */
+    CloseableHttpResponse executeStreaming(String finalUrl, HttpContext context, Header... headers) throws IOException {
+        acquireRateLimit(finalUrl);
+        int executeTimeout = getExecuteTimeout(finalUrl);
+        HttpEntityEnclosingRequestBase httpRequest = createHttpRequest(finalUrl);
+        for (Header header : headers) {
+            httpRequest.setHeader(header);
+        }
+        CircuitBreaker circuitBreaker = acquireCircuitBreaker(httpRequest);
+        RouteMetrics metrics = httpClient.getRouteMetrics(URIUtils.extractHost(httpRequest.getURI()));
+        long startTime = System.nanoTime();
+        boolean failure = true;
+        int statusCode = 0;
+        long received = -1;
+        boolean timedOut = false;
+        HashedWheelTimer.Timeout timeout = null;
+        if (executeTimeout > 0) {
+            timeout = httpClient.scheduleHttpExecuteTimeout(httpRequest, executeTimeout);
+        }
+        try {
+            CloseableHttpResponse resp = httpClient.getCloseableHttpClient().execute(httpRequest, context);
+            failure = isServerError(resp.getStatusLine().getStatusCode());
+            httpClient.recordCacheResponseStatus(context);
+            if (timeout != null && !timeout.cancel()) {
+                //获取到response的同时请求被中断，response已经不可用
+                resp.close();
+                throw new HttpException("http execute timeout, url: " + finalUrl);
+            }
+            statusCode = resp.getStatusLine().getStatusCode();
+            received = resp.getEntity() == null ? 0 : resp.getEntity().getContentLength();
+            //流式请求不再重新发送，只记录route不支持压缩
+            isCompressionRejected(httpRequest, isCompressed(httpRequest), statusCode);
+            return resp;
         } catch (IOException e) {
-            if (isTimeout[0]) {
+            timedOut = isTimeout(e);
+            if (timeout != null && timeout.isExpired()) {
                 throw new HttpException("http execute timeout, url: " + finalUrl, e);
             } else {
                 throw e;
             }
         } finally {
-            if (timeoutThread != null && timeoutThread.isAlive()) {
-                timeoutThread.interrupt();
+            if (timeout != null) {
+                timeout.cancel();
             }
+            //流式请求只统计获取到response header之前的结果和耗时，接收字节数取Content-Length
+            if (circuitBreaker != null) {
+                circuitBreaker.record(System.nanoTime() - startTime, failure);
+            }
+            boolean timeoutExpired = timeout != null && timeout.isExpired();
+            recordMetrics(metrics, httpRequest, System.nanoTime() - startTime, statusCode, received,
+                    timedOut || timeoutExpired, httpRequest.isAborted() && !timeoutExpired);
         }
     }
 
+    /**
+     * 下载文件
+     * content直接写入文件，不受{@link HttpRequestConfig#getMaxResponseContentLength()}限制。
+     * 下载失败时保留已下载的数据，再次下载同一个文件时会从中断处继续（需要服务端支持Range请求）。
+     *
+     * @param target 目标文件，已存在时将被覆盖
+     * @return 下载完成的文件
+     */
+    public Path downloadTo(Path target) {
+        return downloadTo(target, 1);
+    }
+
+    /**
+     * 分段并行下载文件
+     * 服务端支持Range请求时，文件被拆分为最多segments个分段，通过连接池并行下载；否则退化为单线程下载。
+     * 下载失败时保留已完成的分段，再次下载同一个文件时从中断处继续。
+     *
+     * @param target   目标文件，已存在时将被覆盖
+     * @param segments 最大并行分段数量
+     * @return 下载完成的文件
+     */
+    public Path downloadTo(Path target, int segments) {
+        return new HttpDownloader(this, target).download(segments);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> _sendAsync() {
+        String finalUrl = generateURLWithParams();
+        long rateLimitWait = reserveRateLimit(finalUrl);
+        if (rateLimitWait <= 0) {
+            return executeAsync(finalUrl);
+        }
+        // 需要等待限流许可时延迟发送，不占用线程
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(rateLimitWait, TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<HttpResponse> attempt;
+            try {
+                attempt = executeAsync(finalUrl);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            result.whenComplete((response, throwable) -> {
+                if (result.isCancelled()) {
+                    attempt.cancel(true);
+                }
+            });
+            attempt.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+        return result;
+    }
+
+    private CompletableFuture<HttpResponse> executeAsync(String finalUrl) {
+        HttpEntityEnclosingRequestBase httpRequest = createHttpRequest(finalUrl);
+        //异步client可能替换请求体，发送前判断是否压缩
+        boolean compressed = isCompressed(httpRequest);
+        CompletableFuture<HttpResponse> attempt = executeAsync(finalUrl, httpRequest);
+        if (!compressed) {
+            return attempt;
+        }
+        // 压缩的请求体被拒绝时，不压缩再发送一次
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<HttpResponse>> current = new AtomicReference<>(attempt);
+        attempt.whenComplete((response, throwable) -> {
+            if (throwable != null || !isCompressionRejected(httpRequest, true, response.getStatusCode()) || result.isDone()) {
+                complete(result, response, throwable);
+                return;
+            }
+            if (!tryAcquireResend()) {
+                result.complete(response);
+                return;
+            }
+            long rateLimitWait;
+            try {
+                rateLimitWait = reserveRateLimit(finalUrl);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            Runnable resend = () -> {
+                if (result.isDone()) {
+                    return;
+                }
+                CompletableFuture<HttpResponse> retry;
+                try {
+                    retry = executeAsync(finalUrl, createHttpRequest(finalUrl));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                current.set(retry);
+                retry.whenComplete((retryResponse, retryThrowable) -> complete(result, retryResponse, retryThrowable));
+            };
+            // 再发送一次同样需要获取限流许可，需要等待时延迟发送，不占用线程
+            if (rateLimitWait <= 0) {
+                resend.run();
+            } else {
+                CompletableFuture.delayedExecutor(rateLimitWait, TimeUnit.NANOSECONDS).execute(resend);
+            }
+        });
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                current.get().cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static void complete(CompletableFuture<HttpResponse> result, HttpResponse response, Throwable throwable) {
+        if (throwable != null) {
+            result.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable);
+        } else {
+            result.complete(response);
+        }
+    }
+
+    private CompletableFuture<HttpResponse> executeAsync(String finalUrl, HttpEntityEnclosingRequestBase httpRequest) {
+        int executeTimeout = getExecuteTimeout(finalUrl);
+        Http2Transport http2Transport = httpClient.getHttp2Transport();
+        if (http2Transport != null) {
+            return executeHttp2Async(finalUrl, httpRequest, http2Transport, executeTimeout);
+        }
+        CircuitBreaker circuitBreaker = acquireCircuitBreaker(httpRequest);
+        RouteMetrics metrics = httpClient.getRouteMetrics(URIUtils.extractHost(httpRequest.getURI()));
+        HttpClientContext context = HttpClientContext.create();
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        long startTime = System.nanoTime();
+        if (circuitBreaker != null) {
+            result.whenComplete((response, throwable) -> circuitBreaker.record(System.nanoTime() - startTime,
+                    response == null || isServerError(response.getStatusCode())));
+        }
+        Future<org.apache.http.HttpResponse> future;
+        try {
+            future = httpClient.getCloseableHttpAsyncClient().execute(
+                    HttpAsyncMethods.create(URIUtils.extractHost(httpRequest.getURI()), toAsyncRequest(httpRequest)),
+                    new LimitedAsyncResponseConsumer(getConfig().getMaxResponseContentLength()),
+                    context, new FutureCallback<>() {
+                        @Override
+                        public void completed(org.apache.http.HttpResponse response) {
+                            try {
+                                result.complete(new HttpResponse(response, context, getConfig()));
+                            } catch (Exception e) {
+                                result.completeExceptionally(e);
+                            }
+                        }
+
+                        @Override
+                        public void failed(Exception ex) {
+                            result.completeExceptionally(ex);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            result.cancel(false);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            //请求未能发出，同时结束result，释放熔断器放行的名额
+            result.completeExceptionally(e);
+            throw e;
+        }
+        // http执行超时处理，超时后以HttpException结束并取消请求
+        HashedWheelTimer.Timeout timeout = executeTimeout <= 0 ? null : httpClient.scheduleHttpExecuteTimeout(() -> {
+            result.completeExceptionally(new HttpException("http execute timeout, url: " + finalUrl));
+            future.cancel(true);
+        }, executeTimeout);
+        if (timeout != null) {
+            result.whenComplete((response, throwable) -> timeout.cancel());
+        }
+        if (metrics != null) {
+            result.whenComplete((response, throwable) -> {
+                boolean timeoutExpired = timeout != null && timeout.isExpired();
+                recordMetrics(metrics, httpRequest, System.nanoTime() - startTime,
+                        response == null ? 0 : response.getStatusCode(),
+                        response == null ? 0 : response.getContentSize(),
+                        timeoutExpired || isTimeout(throwable), result.isCancelled());
+            });
+        }
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 通过HTTP/2传输异步发送请求，content在HTTP/2传输的线程池中读取
+     */
+    private CompletableFuture<HttpResponse> executeHttp2Async(String finalUrl, HttpEntityEnclosingRequestBase httpRequest,
+                                                             Http2Transport transport, int executeTimeout) {
+        CircuitBreaker circuitBreaker = acquireCircuitBreaker(httpRequest);
+        RouteMetrics metrics = httpClient.getRouteMetrics(URIUtils.extractHost(httpRequest.getURI()));
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        long startTime = System.nanoTime();
+        if (circuitBreaker != null) {
+            result.whenComplete((response, throwable) -> circuitBreaker.record(System.nanoTime() - startTime,
+                    response == null || isServerError(response.getStatusCode())));
+        }
+        CompletableFuture<java.net.http.HttpResponse<InputStream>> future;
+        try {
+            future = transport.send(httpRequest, httpRequest.getConfig().getSocketTimeout());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+        future.thenApplyAsync(response -> Http2Transport.toHttpResponse(response, getConfig()), transport.getExecutor())
+                .whenComplete((response, throwable) -> {
+                    if (throwable == null) {
+                        result.complete(response);
+                    } else {
+                        result.completeExceptionally(throwable instanceof CompletionException
+                                && throwable.getCause() != null ? throwable.getCause() : throwable);
+                    }
+                });
+        HashedWheelTimer.Timeout timeout = executeTimeout <= 0 ? null : httpClient.scheduleHttpExecuteTimeout(() -> {
+            result.completeExceptionally(new HttpException("http execute timeout, url: " + finalUrl));
+            Http2Transport.abort(future);
+        }, executeTimeout);
+        if (timeout != null) {
+            result.whenComplete((response, throwable) -> timeout.cancel());
+        }
+        if (metrics != null) {
+            result.whenComplete((response, throwable) -> {
+                boolean timeoutExpired = timeout != null && timeout.isExpired();
+                recordMetrics(metrics, httpRequest, System.nanoTime() - startTime,
+                        response == null ? 0 : response.getStatusCode(),
+                        response == null ? 0 : response.getContentSize(),
+                        timeoutExpired || isTimeout(throwable), result.isCancelled());
+            });
+        }
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                Http2Transport.abort(future);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取限流许可，需要时阻塞等待
+     *
+     * @throws RateLimitExceededException 在允许的等待时间内无法获取许可
+     */
+    private void acquireRateLimit(String finalUrl) throws HttpException {
+        long wait = reserveRateLimit(finalUrl);
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpException("Interrupted while waiting for rate limit, url: " + finalUrl, e);
+        }
+    }
+
+    /**
+     * 预占限流许可，等待时间不超过{@link HttpRequestConfig#getRateLimitTimeout()}及截止时间的剩余时间
+     *
+     * @return 获取到许可前需要等待的时间，单位为ns，未开启限流时返回0
+     * @throws RateLimitExceededException 在允许的等待时间内无法获取许可
+     */
+    private long reserveRateLimit(String finalUrl) throws RateLimitExceededException {
+        RateLimiter rateLimiter = httpClient.getRateLimiter(URI.create(finalUrl).getHost());
+        if (rateLimiter == null) {
+            return 0;
+        }
+        int rateLimitTimeout = getConfig().getRateLimitTimeout();
+        long maxWait = rateLimitTimeout < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(rateLimitTimeout);
+        long remainingTime = getRemainingTime();
+        if (remainingTime != Long.MAX_VALUE) {
+            maxWait = Math.min(maxWait, TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingTime)));
+        }
+        long wait = rateLimiter.reserve(maxWait);
+        if (wait < 0) {
+            throw new RateLimitExceededException(rateLimiter.getHost());
+        }
+        return wait;
+    }
+
+    /**
+     * 获取请求对应route的熔断器并申请放行，未开启熔断器时返回null
+     *
+     * @throws CircuitBreakerOpenException 熔断器已打开
+     */
+    private CircuitBreaker acquireCircuitBreaker(HttpEntityEnclosingRequestBase httpRequest) throws CircuitBreakerOpenException {
+        CircuitBreaker circuitBreaker = httpClient.getCircuitBreaker(URIUtils.extractHost(httpRequest.getURI()));
+        if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            throw new CircuitBreakerOpenException(circuitBreaker.getRoute());
+        }
+        return circuitBreaker;
+    }
+
+    private static boolean isServerError(int statusCode) {
+        return statusCode >= 500;
+    }
+
+    /**
+     * 记录请求统计，statusCode为0表示没有得到response
+     */
+    private static void recordMetrics(RouteMetrics metrics, HttpEntityEnclosingRequestBase httpRequest, long latencyNanos,
+                                      int statusCode, long received, boolean timedOut, boolean aborted) {
+        if (metrics == null) {
+            return;
+        }
+        long sent = httpRequest.getEntity() == null ? 0 : httpRequest.getEntity().getContentLength();
+        if (statusCode > 0) {
+            metrics.recordResponse(statusCode, latencyNanos, sent, received);
+        } else {
+            metrics.recordFailure(latencyNanos, timedOut, aborted, sent);
+        }
+    }
+
+    /**
+     * 是否为连接、读取或从连接池获取连接超时，包括HTTP/2传输的连接及获取response超时
+     */
+    private static boolean isTimeout(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+                throwable.getCause() : throwable;
+        return cause instanceof SocketTimeoutException || cause instanceof ConnectTimeoutException
+                || cause instanceof ConnectionPoolTimeoutException || cause instanceof HttpTimeoutException;
+    }
+
+    @Override
+    protected void onRetry() {
+        RouteMetrics metrics = httpClient.getRouteMetrics(URIUtils.extractHost(URI.create(generateURLWithParams())));
+        if (metrics != null) {
+            metrics.recordRetry();
+        }
+    }
+
+    /**
+     * 生成Apache Http Client请求对象
+     */
+    protected HttpEntityEnclosingRequestBase createHttpRequest(String finalUrl) {
+        HttpEntityEnclosingRequestBase httpRequest = new HttpEntityEnclosingRequestBase() {
+            @Override
+            public String getMethod() {
+                return HttpMethod.super.getMethod();
+            }
+        };
+        httpRequest.setURI(URI.create(finalUrl));
+        httpRequest.setConfig(generateRequestConfig());
+        // 设置header
+        httpRequest.setHeaders(generateHeaders());
+        // 设置请求体
+        org.apache.http.HttpEntity entity = getEntity().getApacheHttpClientEntity(getConfig().getQueryCharset());
+        if (isCompressible(httpRequest, entity)) {
+            entity = new GzipCompressingEntity(entity);
+        }
+        httpRequest.setEntity(entity);
+        return httpRequest;
+    }
+
+    /**
+     * 请求体是否需要压缩：开启了压缩，请求体未经编码且不小于压缩阈值（长度未知时总是压缩），route未拒绝过压缩的请求体。
+     * 发送时序列化的JSON长度未知，但一定超过{@link #JSON_ENTITY_BUFFER_SIZE}，按该长度与阈值比较
+     */
+    private boolean isCompressible(HttpEntityEnclosingRequestBase httpRequest, org.apache.http.HttpEntity entity) {
+        if (!getConfig().isRequestCompressionEnabled() || entity == null || entity.getContentEncoding() != null
+                || httpRequest.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+            return false;
+        }
+        long length = entity instanceof JsonEntity ? JSON_ENTITY_BUFFER_SIZE + 1 : entity.getContentLength();
+        if (length >= 0 && length < getConfig().getRequestCompressionThreshold()) {
+            return false;
+        }
+        return !httpClient.isRequestCompressionRejected(URIUtils.extractHost(httpRequest.getURI()));
+    }
+
+    /**
+     * 异步client通过{@link org.apache.http.HttpEntity#getContent()}读取请求体，
+     * 对于不支持该方法的请求体（如较大的multipart、压缩的请求体），预先将其写入内存
+     */
+    private HttpEntityEnclosingRequestBase toAsyncRequest(HttpEntityEnclosingRequestBase httpRequest) {
+        org.apache.http.HttpEntity entity = httpRequest.getEntity();
+        if (entity == null || !entity.isRepeatable() && !(entity instanceof GzipCompressingEntity)) {
+            return httpRequest;
+        }
+        try {
+            entity.getContent().close();
+        } catch (UnsupportedOperationException | IOException e) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try {
+                entity.writeTo(buffer);
+            } catch (IOException ex) {
+                throw new HttpException("Http request entity write failure", ex);
+            }
+            NByteArrayEntity bufferedEntity = new NByteArrayEntity(buffer.toByteArray());
+            bufferedEntity.setContentType(entity.getContentType());
+            bufferedEntity.setContentEncoding(entity.getContentEncoding());
+            httpRequest.setEntity(bufferedEntity);
+        }
+        return httpRequest;
+    }
+
+    /**
+     * 限制response大小的异步response consumer，Content-Length超出限制时不再读取
+     */
+    private static class LimitedAsyncResponseConsumer extends BasicAsyncResponseConsumer {
+        private final int maxContentLength;
+
+        LimitedAsyncResponseConsumer(int maxContentLength) {
+            this.maxContentLength = maxContentLength;
+        }
+
+        @Override
+        protected void onEntityEnclosed(org.apache.http.HttpEntity entity, ContentType contentType) throws IOException {
+            if (entity.getContentLength() > maxContentLength) {
+                throw new ContentTooLongException("content length to large: " + entity.getContentLength());
+            }
+            super.onEntityEnclosed(entity, contentType);
+        }
+    }
 
     /**
      * 生成请求Headers
@@ -104,20 +920,48 @@ public abstract class HttpMethod<T extends HttpMethod<T>> extends AbstractHttpMe
      * 生成Apache Http Client请求配置
      */
     protected RequestConfig generateRequestConfig() {
+        long remainingTime = getRemainingTime();
         RequestConfig.Builder builder = RequestConfig.custom()
-                .setConnectTimeout(getConfig().getConnTimeout())
-                .setSocketTimeout(getConfig().getSoTimeout())
+                .setConnectTimeout(limitTimeout(getConfig().getConnTimeout(), remainingTime))
+                .setSocketTimeout(limitTimeout(getConfig().getSoTimeout(), remainingTime))
                 .setMaxRedirects(getConfig().getMaxRedirects())
                 .setCircularRedirectsAllowed(getConfig().isCircularRedirectsAllowed())
                 .setRedirectsEnabled(getConfig().isRedirectsEnabled())
                 .setCookieSpec(getConfig().getCookieSpecs())
-                .setConnectionRequestTimeout(getConfig().getConnectionRequestTimeout());
+                .setExpectContinueEnabled(getConfig().isExpectContinueEnabled())
+                .setConnectionRequestTimeout(limitTimeout(getConfig().getConnectionRequestTimeout(), remainingTime));
         if (getConfig().getProxy() != null) {
             builder.setProxy(getConfig().getProxy());
         }
         return builder.build();
     }
 
+    /**
+     * 本次请求的执行超时时间，不超过截止时间的剩余时间
+     *
+     * @return 执行超时时间，单位为ms，小于等于0时不限制
+     * @throws HttpException 已经超过截止时间
+     */
+    private int getExecuteTimeout(String finalUrl) throws HttpException {
+        long remainingTime = getRemainingTime();
+        if (remainingTime <= 0) {
+            throw new HttpException("http request deadline exceeded, url: " + finalUrl);
+        }
+        return limitTimeout(getConfig().getHttpExecuteTimeout(), remainingTime);
+    }
+
+    /**
+     * 将超时时间限制在截止时间的剩余时间之内，原超时时间小于等于0（不限制）时使用剩余时间
+     */
+    private static int limitTimeout(int timeout, long remainingTime) {
+        if (remainingTime == Long.MAX_VALUE) {
+            return timeout;
+        }
+        //Apache Http Client中超时时间为0表示不限制，所以至少为1ms
+        int limit = (int) Math.max(1, Math.min(Integer.MAX_VALUE, remainingTime));
+        return timeout > 0 ? Math.min(timeout, limit) : limit;
+    }
+
     /**
      * 拼装请求参数,生成最终URL
      */
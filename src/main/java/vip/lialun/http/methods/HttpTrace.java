@@ -1,11 +1,14 @@
 package vip.lialun.http.methods;
 
 import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpEntityWriter;
 import vip.lialun.http.HttpRequestConfig;
 import org.apache.http.entity.ContentType;
 
 import java.io.File;
+import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 
 import static vip.lialun.http.HttpConstants.METHOD_TRACE;
 
@@ -35,6 +38,11 @@ public class HttpTrace extends HttpMethod<HttpTrace> {
         throw new IllegalStateException(getMethod() + " requests may not include an entity.");
     }
 
+    @Override
+    public HttpTrace setJsonEntity(final Object object) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
     @Override
     public HttpTrace addMultiPartEntity(final String name, final byte[] entity) {
         throw new IllegalStateException(getMethod() + " requests may not include an entity.");
@@ -61,6 +69,36 @@ public class HttpTrace extends HttpMethod<HttpTrace> {
         throw new IllegalStateException(getMethod() + " requests may not include an entity.");
     }
 
+    @Override
+    public HttpTrace addMultiPartEntity(final String name, final Path file) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
+    @Override
+    public HttpTrace addMultiPartEntity(final String name, final InputStream inputStream, ContentType contentType, String fileName) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
+    @Override
+    public HttpTrace setEntity(final InputStream entity) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
+    @Override
+    public HttpTrace setEntity(final InputStream entity, final long length) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
+    @Override
+    public HttpTrace setEntity(final Path file) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
+    @Override
+    public HttpTrace setEntity(final HttpEntityWriter writer) {
+        throw new IllegalStateException(getMethod() + " requests may not include an entity.");
+    }
+
     @Override
     public HttpTrace addParamEntity(final String name, final String value) {
         throw new IllegalStateException(getMethod() + " requests may not include an entity.");
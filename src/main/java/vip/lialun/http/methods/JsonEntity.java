@@ -0,0 +1,158 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.json.JacksonHelper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 发送时使用{@link JacksonHelper#getDefaultMapper()}将对象直接序列化到连接中的请求体，使用chunked方式传输
+ * 每次发送都会重新序列化，所以可以被重试，请求体为发送时对象的内容
+ *
+ * @author lialun
+ */
+final class JsonEntity extends AbstractHttpEntity {
+    private static final ObjectWriter WRITER = JacksonHelper.getDefaultMapper().writer()
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final Object value;
+    private final Charset charset;
+
+    JsonEntity(Object value, ContentType contentType) {
+        this.value = value;
+        this.charset = charsetOf(contentType);
+        setContentType(contentType.toString());
+        setChunked(true);
+    }
+
+    static Charset charsetOf(ContentType contentType) {
+        return contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+    }
+
+    /**
+     * 序列化对象
+     *
+     * @param limit 最大字节数，超过时停止序列化并返回null
+     */
+    static byte[] toBytes(Object value, Charset charset, int limit) throws IOException {
+        LimitedOutputStream out = new LimitedOutputStream(limit);
+        try {
+            write(value, charset, out);
+        } catch (IOException | RuntimeException e) {
+            // Jackson会将输出流抛出的异常包装后再抛出
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof LimitExceededException) {
+                    return null;
+                }
+            }
+            throw e;
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(Object value, Charset charset, OutputStream out) throws IOException {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            WRITER.writeValue(out, value);
+        } else {
+            Writer writer = new OutputStreamWriter(out, charset);
+            WRITER.writeValue(writer, value);
+            writer.flush();
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * 首次读取时序列化到内存中，用于只能通过InputStream读取请求体的client
+     */
+    @Override
+    public InputStream getContent() {
+        return new InputStream() {
+            private InputStream content;
+
+            private InputStream content() throws IOException {
+                if (content == null) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    write(value, charset, out);
+                    content = new ByteArrayInputStream(out.toByteArray());
+                }
+                return content;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return content().read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return content().read(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        write(value, charset, outStream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * 超过最大字节数时抛出异常的输出流
+     */
+    private static final class LimitedOutputStream extends ByteArrayOutputStream {
+        private final int limit;
+
+        LimitedOutputStream(int limit) {
+            super(Math.min(limit, 1024));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            super.write(b, off, len);
+        }
+
+        private void ensureCapacity(int len) {
+            if (count + len > limit) {
+                throw new LimitExceededException();
+            }
+        }
+    }
+
+    private static final class LimitExceededException extends RuntimeException {
+        LimitExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
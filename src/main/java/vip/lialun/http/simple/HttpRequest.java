@@ -4,13 +4,10 @@ import vip.lialun.http.HttpClient;
 import vip.lialun.http.methods.*;
 import vip.lialun.logging.Log;
 import vip.lialun.logging.LogFactory;
-import vip.lialun.thread.SimpleThreadFactory;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.pool.PoolStats;
 
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 /**
  * http简易工具类
@@ -24,8 +21,7 @@ import java.util.concurrent.TimeUnit;
  * 　5.自动识别response content编码(通过Header ContentType)
  * 　6.更细化的参数设置,适用更多场景。
  * 　7.支持Html中meta信息ContentType解析
- * 不适用场景(未完成功能):
- * 　1.文件下载等resp content过大的场景。尚未支持使用流处理content或写入文件。
+ * 　8.支持流式处理response content，支持分段并行下载文件
  *
  * @author lialun
  */
@@ -37,17 +33,13 @@ public final class HttpRequest {
      */
     private static volatile HttpClient httpClient;
     /**
-     * HttpClient重建间隔
+     * 连接的最长存活时间，到期的连接逐个关闭并按需重建，使DNS变化等在该时间内生效
      */
-    private static ScheduledExecutorService httpRequestInstanceRecreateTimer;
+    private static final int CONNECTION_TIME_TO_LIVE_IN_MILLS = 30 * 60 * 1000;
     /**
-     * HttpClient重建间隔
+     * 连接的最长空闲时间
      */
-    private static final Integer HTTP_CLIENT_INSTANCE_RECREATE_INTERVAL_IN_HOURS = 3;
-    /**
-     * HttpClient重建时，老实例释放延迟时间
-     */
-    private static final Integer HTTP_CLIENT_CLOSE_AFTER_RECREATE_IN_MILLS = 5 * 60 * 1000;
+    private static final int CONNECTION_MAX_IDLE_TIME_IN_MILLS = 60 * 1000;
 
     public static HttpGet get(String url) {
         return getHttpClient().get(url);
@@ -91,7 +83,16 @@ public final class HttpRequest {
      * @return 连接池信息 {@link PoolStats}
      */
     public static PoolStats getPoolStats() {
-        return httpClient.getPoolStats();
+        return getHttpClient().getPoolStats();
+    }
+
+    /**
+     * 获取连接池中每个route的当前连接池信息
+     *
+     * @return key为scheme://host:port
+     */
+    public static Map<String, PoolStats> getRoutePoolStats() {
+        return getHttpClient().getRoutePoolStats();
     }
 
     private static HttpClient getHttpClient() {
@@ -100,41 +101,26 @@ public final class HttpRequest {
                 if (httpClient == null) {
                     log.info("HttpRequest实例初始化");
                     httpClient = createHttpClient();
-                    httpRequestInstanceRecreateTimer = new ScheduledThreadPoolExecutor(1,
-                            new SimpleThreadFactory("HttpClientConnectionManager"));
-                    httpRequestInstanceRecreateTimer.scheduleAtFixedRate(HttpRequest::recreateHttpClient,
-                            HTTP_CLIENT_INSTANCE_RECREATE_INTERVAL_IN_HOURS, HTTP_CLIENT_INSTANCE_RECREATE_INTERVAL_IN_HOURS, TimeUnit.HOURS);
                 }
             }
         }
         return httpClient;
     }
 
-    /**
-     * 重建HttpClient实例
-     * 由于client实例关闭时会断开所有连接，所以实例在替换掉后延长一段时间，等待连接处理完毕后，再进行关闭
-     */
-    private static void recreateHttpClient() {
-        try {
-            log.info("HttpRequest实例重建, 原始实例: " + httpClient);
-            HttpClient oldInstance = httpClient;
-            httpClient = createHttpClient();
-            log.info("HttpRequest实例重建, 新创建实例: " + httpClient);
-            Thread.sleep(HTTP_CLIENT_CLOSE_AFTER_RECREATE_IN_MILLS);
-            oldInstance.close();
-            log.info("HttpRequest实例重建, 原始实例关闭: " + oldInstance);
-        } catch (Exception ignored) {
-        }
-    }
-
     /**
      * 创建HttpClient实例
+     * 连接按存活时间及空闲时间逐个关闭，不需要定期重建整个实例
      */
     private static HttpClient createHttpClient() {
         return HttpClient.builder()
                 .setCookieSpecs(CookieSpecs.IGNORE_COOKIES)
                 .setMaxConnection(8000)
-                .setMaxConnectionPerRoute(2000)
+                // 每个route初始100个连接，有请求排队时自动扩大，最多2000个
+                .setMaxConnectionPerRoute(100)
+                .setPoolAutoTuneEnabled(true)
+                .setPoolAutoTuneMaxPerRoute(2000)
+                .setConnectionTimeToLive(CONNECTION_TIME_TO_LIVE_IN_MILLS)
+                .setConnectionMaxIdleTime(CONNECTION_MAX_IDLE_TIME_IN_MILLS)
                 .build();
     }
 }
@@ -0,0 +1,329 @@
+package vip.lialun.thread;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 时间轮定时器
+ * <p>
+ * 适用于大量短时、且大部分会被取消的超时任务（如请求超时）。
+ * 注册、取消操作均为O(1)，所有任务由一个后台线程按tick推进执行，执行精度为一个tick。
+ * 任务在后台线程中执行，所以任务本身应当足够轻量。
+ *
+ * @author lialun
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class HashedWheelTimer {
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Thread workerThread;
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_STATE_INIT);
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final LongAdder pendingCount = new LongAdder();
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private volatile long startTime;
+
+    /**
+     * @param threadName    后台线程名称
+     * @param tickDuration  每个tick的时长
+     * @param unit          tick时长单位
+     * @param ticksPerWheel 时间轮大小，会被调整为2的幂
+     */
+    public HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        Preconditions.checkArgument(tickDuration > 0, "tickDuration must be greater than 0");
+        Preconditions.checkArgument(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "ticksPerWheel out of range");
+        this.tickDuration = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.workerThread = new Thread(new Worker(), threadName);
+        this.workerThread.setDaemon(true);
+    }
+
+    public HashedWheelTimer(String threadName) {
+        this(threadName, 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * 注册超时任务
+     *
+     * @param task  到期后执行的任务
+     * @param delay 延迟时间
+     * @param unit  延迟时间单位
+     * @return 可用于取消任务的句柄
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(task);
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.add(timeout);
+        pendingCount.increment();
+        scheduledCount.increment();
+        return timeout;
+    }
+
+    /**
+     * 停止定时器，未执行的任务将不会再被执行
+     */
+    public void stop() {
+        if (workerState.getAndSet(WORKER_STATE_SHUTDOWN) == WORKER_STATE_STARTED) {
+            workerThread.interrupt();
+        }
+    }
+
+    /**
+     * 等待执行的任务数量
+     */
+    public long getPendingCount() {
+        return pendingCount.sum();
+    }
+
+    /**
+     * 累计注册的任务数量
+     */
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    /**
+     * 累计到期执行的任务数量
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * 累计被取消的任务数量
+     */
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    private void start() {
+        switch (workerState.get()) {
+            case WORKER_STATE_INIT:
+                if (workerState.compareAndSet(WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    // startTime为0时表示尚未初始化
+                    long now = System.nanoTime();
+                    startTime = now == 0 ? 1 : now;
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("HashedWheelTimer已经停止");
+        }
+        // 状态已经是STARTED时，startTime可能还未被启动的线程初始化
+        while (startTime == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private long tick;
+
+        @Override
+        public void run() {
+            while (workerState.get() == WORKER_STATE_STARTED) {
+                long deadline = waitForNextTick();
+                if (deadline < 0) {
+                    continue;
+                }
+                Bucket bucket = wheel[(int) (tick & mask)];
+                processCancelledTimeouts();
+                transferTimeoutsToBuckets();
+                bucket.expireTimeouts();
+                tick++;
+            }
+        }
+
+        private void transferTimeoutsToBuckets() {
+            // 每个tick最多转移10万个任务，避免worker线程长时间停留在转移操作中
+            for (int i = 0; i < 100_000; i++) {
+                Timeout timeout = pendingTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.state.get() == Timeout.ST_CANCELLED) {
+                    continue;
+                }
+                long calculated = timeout.deadline / tickDuration;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                // 已经过期的任务放入当前bucket中，尽快执行
+                long ticks = Math.max(calculated, tick);
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void processCancelledTimeouts() {
+            Timeout timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                timeout.remove();
+            }
+        }
+
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+            while (true) {
+                long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999_999) / 1_000_000;
+                if (sleepTimeMs <= 0) {
+                    return currentTime;
+                }
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (workerState.get() == WORKER_STATE_SHUTDOWN) {
+                        return -1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 超时任务句柄
+     */
+    public static final class Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+        long remainingRounds;
+        Timeout next;
+        Timeout prev;
+        Bucket bucket;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务
+         *
+         * @return 任务尚未执行且取消成功时返回true
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.cancelledCount.increment();
+            timer.pendingCount.decrement();
+            // 由worker线程负责从bucket中移除
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        void remove() {
+            if (bucket != null) {
+                bucket.remove(this);
+            }
+        }
+
+        void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timer.pendingCount.decrement();
+            timer.expiredCount.increment();
+            try {
+                task.run();
+            } catch (Throwable ignored) {
+                //任务异常不能影响worker线程
+            }
+        }
+    }
+
+    /**
+     * 时间轮中的一格，双向链表，只由worker线程访问
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.apache.http.conn.DnsResolver;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingDnsResolverTest extends BaseTest {
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    /**
+     * 内存中的解析，addresses为null时解析失败，每次解析耗时delay
+     */
+    private static class StubDnsResolver implements DnsResolver {
+        private final AtomicReference<InetAddress[]> addresses = new AtomicReference<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile long delay;
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            count.incrementAndGet();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            InetAddress[] result = addresses.get();
+            if (result == null) {
+                throw new UnknownHostException(host);
+            }
+            return result;
+        }
+    }
+
+    private static InetAddress address(String ip) throws UnknownHostException {
+        return InetAddress.getByName(ip);
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        StubDnsResolver stub = new StubDnsResolver();
+        stub.addresses.set(new InetAddress[]{address("10.0.0.1")});
+        try (CachingDnsResolver resolver = new CachingDnsResolver(stub, 200, 1000, CachingDnsResolver.Selection.ROUND_ROBIN)) {
+            assertEquals(address("10.0.0.1"), resolver.resolve("Example.com")[0]);
+            assertEquals(address("10.0.0.1"), resolver.resolve("example.com")[0]);
+            assertEquals(1, stub.count.get());
+            assertEquals(1, resolver.getHitCount());
+            assertEquals(1, resolver.getMissCount());
+
+            // 超过ttl的3/4后在后台刷新，先返回缓存的结果
+            Thread.sleep(160);
+            stub.addresses.set(new InetAddress[]{address("10.0.0.2")});
+            assertEquals(address("10.0.0.1"), resolver.resolve("example.com")[0]);
+            Thread.sleep(50);
+            assertEquals(2, stub.count.get());
+            assertEquals(address("10.0.0.2"), resolver.resolve("example.com")[0]);
+
+            // 过期后maxStale时间内使用过期的结果，同时在后台刷新
+            Thread.sleep(250);
+            stub.addresses.set(null);
+            assertEquals(address("10.0.0.2"), resolver.resolve("example.com")[0]);
+            assertEquals(1, resolver.getStaleCount());
+            assertThrows(UnknownHostException.class, () -> resolver.resolve("other.com"));
+
+            // 超过maxStale后不再使用
+            Thread.sleep(1000);
+            assertThrows(UnknownHostException.class, () -> resolver.resolve("example.com"));
+        }
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        StubDnsResolver stub = new StubDnsResolver();
+        stub.addresses.set(new InetAddress[]{address("10.0.0.1")});
+        try (CachingDnsResolver resolver = new CachingDnsResolver(stub, 100, 10_000, CachingDnsResolver.Selection.ROUND_ROBIN)) {
+            resolver.resolve("example.com");
+            Thread.sleep(150);
+            // 过期后不等待很慢的解析，直接返回过期的结果
+            stub.delay = 500;
+            stub.addresses.set(new InetAddress[]{address("10.0.0.2")});
+            long start = System.nanoTime();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(address("10.0.0.1"), resolver.resolve("example.com")[0]);
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+            assertEquals(5, resolver.getStaleCount());
+            // 后台只刷新一次，完成后使用新的结果
+            Thread.sleep(700);
+            assertEquals(2, stub.count.get());
+            assertEquals(address("10.0.0.2"), resolver.resolve("example.com")[0]);
+        }
+    }
+
+    @Test
+    public void testConcurrentMiss() throws Exception {
+        StubDnsResolver stub = new StubDnsResolver();
+        stub.addresses.set(new InetAddress[]{address("10.0.0.1")});
+        stub.delay = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (CachingDnsResolver resolver = new CachingDnsResolver(stub, 10_000, 0, CachingDnsResolver.Selection.ROUND_ROBIN)) {
+            // 同一个域名并发的解析只执行一次
+            List<Future<InetAddress[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> resolver.resolve("example.com")));
+            }
+            for (Future<InetAddress[]> future : futures) {
+                assertEquals(address("10.0.0.1"), future.get()[0]);
+            }
+            assertEquals(1, stub.count.get());
+
+            // 解析失败时所有等待的调用方都收到异常
+            stub.addresses.set(null);
+            futures.clear();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> resolver.resolve("other.com")));
+            }
+            for (Future<InetAddress[]> future : futures) {
+                ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+                assertInstanceOf(UnknownHostException.class, exception.getCause());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        StubDnsResolver stub = new StubDnsResolver();
+        stub.addresses.set(new InetAddress[]{address("10.0.0.1"), address("10.0.0.2"), address("::1")});
+        try (CachingDnsResolver resolver = new CachingDnsResolver(stub, 10_000, 0, CachingDnsResolver.Selection.ROUND_ROBIN)) {
+            assertArrayEquals(new InetAddress[]{address("10.0.0.1"), address("10.0.0.2"), address("::1")}, resolver.resolve("example.com"));
+            assertArrayEquals(new InetAddress[]{address("10.0.0.2"), address("::1"), address("10.0.0.1")}, resolver.resolve("example.com"));
+            assertArrayEquals(new InetAddress[]{address("::1"), address("10.0.0.1"), address("10.0.0.2")}, resolver.resolve("example.com"));
+            assertEquals(address("10.0.0.1"), resolver.resolve("example.com")[0]);
+        }
+    }
+
+    @Test
+    public void testLeastConnections() throws Exception {
+        StubDnsResolver stub = new StubDnsResolver();
+        stub.addresses.set(new InetAddress[]{address("10.0.0.1"), address("10.0.0.2")});
+        try (CachingDnsResolver resolver = new CachingDnsResolver(stub, 10_000, 0, CachingDnsResolver.Selection.LEAST_CONNECTIONS)) {
+            resolver.connectionOpened(address("10.0.0.1"));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(address("10.0.0.2"), resolver.resolve("example.com")[0]);
+            }
+            resolver.connectionOpened(address("10.0.0.2"));
+            resolver.connectionOpened(address("10.0.0.2"));
+            assertEquals(address("10.0.0.1"), resolver.resolve("example.com")[0]);
+            resolver.connectionClosed(address("10.0.0.2"));
+            resolver.connectionClosed(address("10.0.0.2"));
+            assertEquals(0, resolver.getConnectionCount(address("10.0.0.2")));
+        }
+    }
+
+    @Test
+    public void testHttpClient() throws Exception {
+        StubDnsResolver stub = new StubDnsResolver();
+        stub.addresses.set(new InetAddress[]{address("127.0.0.1")});
+        int port = URI.create(server.url("")).getPort();
+        String url = "http://stub.local:" + port + "/echo";
+        try (CachingDnsResolver resolver = new CachingDnsResolver(stub, 10_000, 0, CachingDnsResolver.Selection.LEAST_CONNECTIONS)) {
+            try (HttpClient client = HttpClient.builder().setDnsResolver(resolver).build()) {
+                assertEquals(200, client.get(url).send().getStatusCode());
+                assertEquals(200, client.get(url).sendAsync().join().getStatusCode());
+                assertEquals(1, stub.count.get());
+                // 连接池中保持一个连接
+                assertEquals(1, resolver.getConnectionCount(address("127.0.0.1")));
+            }
+            assertEquals(0, resolver.getConnectionCount(address("127.0.0.1")));
+        }
+    }
+}
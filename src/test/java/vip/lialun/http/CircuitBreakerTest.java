@@ -0,0 +1,166 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest extends BaseTest {
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        // 返回的content少于Content-Length后关闭连接
+        server.handle("/truncated", exchange -> {
+            exchange.sendResponseHeaders(200, 1000);
+            exchange.getResponseBody().write(new byte[10]);
+            exchange.getResponseBody().flush();
+            exchange.close();
+        });
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testStateTransition() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("http://localhost:80", 50, 100, 1000, 10, 4, 100, 2);
+        List<String> transitions = new CopyOnWriteArrayList<>();
+        circuitBreaker.addListener((cb, from, to) -> transitions.add(from + "->" + to));
+        // 请求数量不足时不计算失败率
+        for (int i = 0; i < 3; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.record(0, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.record(0, false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertEquals(1, circuitBreaker.getRejectedCount());
+
+        // 打开一段时间后只放行2个试探请求
+        Thread.sleep(150);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.record(0, false);
+        circuitBreaker.record(0, true);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        Thread.sleep(150);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.record(0, false);
+        circuitBreaker.record(0, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"),
+                transitions);
+    }
+
+    @Test
+    public void testRelease() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("http://localhost:80", 50, 100, 1000, 10, 1, 100, 1);
+        circuitBreaker.record(0, true);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Thread.sleep(150);
+        // 试探请求没有结果时归还名额，否则一直停留在HALF_OPEN
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.release();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.record(0, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        // CLOSED状态不受影响
+        circuitBreaker.release();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("http://localhost:80", 50, 100, 1000, 4, 4, 100, 2);
+        circuitBreaker.record(0, true);
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.record(0, false);
+        }
+        // 早期的失败已经移出窗口
+        assertEquals(0, circuitBreaker.getFailureRate());
+        circuitBreaker.record(0, true);
+        assertEquals(25, circuitBreaker.getFailureRate());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testSlowCall() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("http://localhost:80", 50, 50, 100, 10, 2, 100, 2);
+        circuitBreaker.record(TimeUnit.MILLISECONDS.toNanos(10), false);
+        circuitBreaker.record(TimeUnit.MILLISECONDS.toNanos(200), false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testHttpClient() throws Exception {
+        List<CircuitBreaker.State> states = new CopyOnWriteArrayList<>();
+        try (HttpClient client = HttpClient.builder()
+                .setCircuitBreakerEnabled(true)
+                .setCircuitBreakerMinimumCalls(5)
+                .setCircuitBreakerOpenDuration(300)
+                .setCircuitBreakerHalfOpenCalls(1)
+                .setCircuitBreakerListener((cb, from, to) -> states.add(to))
+                .build()) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(503, client.get(server.url("/status?code=503")).send(0).getStatusCode());
+            }
+            CircuitBreaker circuitBreaker = client.getCircuitBreaker(HttpHost.create(server.url("")));
+            assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+            assertEquals(1, client.getCircuitBreakers().size());
+
+            // 打开时直接失败，请求不会发送到服务端，也不会重试
+            int before = server.getRequestCount();
+            assertThrows(CircuitBreakerOpenException.class, () -> client.get(server.url("/status?code=200")).send(3, 0));
+            CompletionException exception = assertThrows(CompletionException.class,
+                    () -> client.get(server.url("/status?code=200")).sendAsync(3, 0).join());
+            assertInstanceOf(CircuitBreakerOpenException.class, exception.getCause());
+            assertThrows(CircuitBreakerOpenException.class, () -> client.get(server.url("/status?code=200")).sendStreaming());
+            assertEquals(before, server.getRequestCount());
+
+            Thread.sleep(400);
+            assertEquals(200, client.get(server.url("/status?code=200")).send().getStatusCode());
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+            assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), states);
+        }
+    }
+
+    @Test
+    public void testContentReadFailure() throws IOException {
+        try (HttpClient client = HttpClient.builder().setCircuitBreakerEnabled(true).build()) {
+            // 读取content失败的200响应记为失败
+            assertThrows(HttpException.class, () -> client.get(server.url("/truncated")).send(0));
+            CircuitBreaker circuitBreaker = client.getCircuitBreaker(HttpHost.create(server.url("")));
+            assertEquals(100, circuitBreaker.getFailureRate());
+        }
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        try (HttpClient client = HttpClient.builder().build()) {
+            assertNull(client.getCircuitBreaker(HttpHost.create(server.url(""))));
+            assertEquals(503, client.get(server.url("/status?code=503")).send(0).getStatusCode());
+            assertTrue(client.getCircuitBreakers().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest extends BaseTest {
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testRoutePoolStats() throws IOException {
+        try (HttpClient client = HttpClient.builder().setMaxConnectionPerRoute(2).build()) {
+            HttpHost host = HttpHost.create(server.url(""));
+            assertEquals(200, client.get(server.url("/echo")).send().getStatusCode());
+            PoolStats stats = client.getPoolStats(host);
+            assertEquals(0, stats.getLeased());
+            assertEquals(1, stats.getAvailable());
+            assertEquals(2, stats.getMax());
+            Map<String, PoolStats> routeStats = client.getRoutePoolStats();
+            assertEquals(1, routeStats.size());
+            assertEquals(1, routeStats.get("http://" + host.getHostName() + ":" + host.getPort()).getAvailable());
+            assertTrue(client.getAsyncRoutePoolStats().isEmpty());
+
+            // 运行中修改route最大连接数
+            client.setMaxConnectionPerRoute(host, 5);
+            assertEquals(5, client.getMaxConnectionPerRoute(host));
+            assertEquals(5, client.getPoolStats(host).getMax());
+            client.setMaxConnectionPerRoute(host, 0);
+            assertEquals(2, client.getMaxConnectionPerRoute(host));
+            client.setMaxConnectionPerRoute(3);
+            assertEquals(3, client.getMaxConnectionPerRoute(host));
+
+            // 异步连接池创建时同样使用修改后的大小
+            client.setMaxConnectionPerRoute(host, 4);
+            assertEquals(200, client.get(server.url("/echo")).sendAsync().join().getStatusCode());
+            assertEquals(4, client.getAsyncRoutePoolStats().values().iterator().next().getMax());
+        }
+    }
+
+    @Test
+    public void testRouteMaxConnections() throws IOException {
+        HttpHost host = HttpHost.create(server.url(""));
+        try (HttpClient client = HttpClient.builder()
+                .setRouteMaxConnections(Collections.singletonMap(server.url(""), 7)).build()) {
+            assertEquals(7, client.getMaxConnectionPerRoute(host));
+            assertEquals(100, client.getMaxConnectionPerRoute(HttpHost.create("https://example.com")));
+        }
+    }
+
+    @Test
+    public void testAutoTune() throws Exception {
+        HttpHost host = HttpHost.create(server.url(""));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (HttpClient client = HttpClient.builder().setMaxConnection(4).setMaxConnectionPerRoute(1)
+                .setPoolAutoTuneEnabled(true).setPoolAutoTuneInterval(50).build()) {
+            // 请求排队时扩大route最大连接数，不超过连接池最大连接数
+            for (int i = 0; i < 4; i++) {
+                executor.execute(() -> client.get(server.url("/delay?ms=1000")).send());
+            }
+            assertTrue(waitFor(() -> client.getMaxConnectionPerRoute(host) == 4));
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            // 空闲后逐步缩小，不低于默认的route最大连接数
+            assertTrue(waitFor(() -> client.getMaxConnectionPerRoute(host) == 1));
+
+            // 单独设置过的route不参与调整
+            client.setMaxConnectionPerRoute(host, 3);
+            Thread.sleep(50 * (ConnectionPoolTuner.SHRINK_AFTER_ROUNDS + 2));
+            assertEquals(3, client.getMaxConnectionPerRoute(host));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPrewarm() throws IOException, InterruptedException {
+        HttpHost host = HttpHost.create(server.url(""));
+        int before = server.getRequestCount();
+        try (HttpClient client = HttpClient.builder()
+                .prewarm(Collections.singletonList(server.url("")), 3).build()) {
+            // 在后台只建立连接，不发送请求
+            assertTrue(waitFor(() -> client.getPoolStats(host).getAvailable() == 3));
+            assertEquals(before, server.getRequestCount());
+            assertEquals(200, client.get(server.url("/echo")).send().getStatusCode());
+            assertEquals(3, client.getPoolStats(host).getAvailable());
+        }
+        // 无法连接的route只记录日志
+        try (HttpClient client = HttpClient.builder().setConnTimeout(200)
+                .prewarm(Collections.singletonList("http://127.0.0.1:1"), 2).build()) {
+            assertEquals(0, client.getPoolStats(HttpHost.create("http://127.0.0.1:1")).getAvailable());
+        }
+    }
+
+    @Test
+    public void testPrewarmNotBlocking() throws IOException {
+        // 不接受连接且backlog已满的端口，建立连接时一直等待到超时
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            List<Socket> sockets = new ArrayList<>();
+            try {
+                while (true) {
+                    Socket socket = new Socket();
+                    sockets.add(socket);
+                    socket.connect(serverSocket.getLocalSocketAddress(), 200);
+                }
+            } catch (SocketTimeoutException ignored) {
+            }
+            try {
+                long start = System.currentTimeMillis();
+                try (HttpClient ignored = HttpClient.builder().setConnTimeout(2000)
+                        .prewarm(Collections.singletonList("http://127.0.0.1:" + serverSocket.getLocalPort()), 1).build()) {
+                    assertTrue(System.currentTimeMillis() - start < 1000);
+                }
+            } finally {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMinIdle() throws IOException {
+        HttpHost host = HttpHost.create(server.url(""));
+        HttpRoute route = new HttpRoute(host);
+        try (PoolingHttpClientConnectionManager connMgr = new PoolingHttpClientConnectionManager()) {
+            ConnectionPrewarmer prewarmer = new ConnectionPrewarmer(connMgr, Collections.singletonList(route), 2, 1000);
+            prewarmer.run();
+            assertEquals(2, connMgr.getStats(route).getAvailable());
+            prewarmer.run();
+            assertEquals(2, connMgr.getStats(route).getAvailable());
+            // 空闲连接被关闭后补充到下限
+            connMgr.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+            assertEquals(0, connMgr.getStats(route).getAvailable());
+            prewarmer.run();
+            assertEquals(2, connMgr.getStats(route).getAvailable());
+        }
+    }
+
+    @Test
+    public void testSslSessionCache() throws IOException {
+        try (HttpClient client = HttpClient.builder().setSslSessionCacheSize(500).setSslSessionTimeout(60_000).build()) {
+            assertEquals(500, client.getSslContext().getClientSessionContext().getSessionCacheSize());
+            assertEquals(60, client.getSslContext().getClientSessionContext().getSessionTimeout());
+        }
+    }
+
+    @Test
+    public void testConnectionTimeToLive() throws Exception {
+        try (HttpClient client = HttpClient.builder().setConnectionTimeToLive(300).build()) {
+            HttpHost host = HttpHost.create(server.url(""));
+            assertEquals(200, client.get(server.url("/echo")).send().getStatusCode());
+            assertEquals(200, client.get(server.url("/echo")).sendAsync().join().getStatusCode());
+            client.closeExpiredConnections();
+            assertEquals(1, client.getPoolStats(host).getAvailable());
+            assertEquals(1, client.getAsyncRoutePoolStats().values().iterator().next().getAvailable());
+            Thread.sleep(400);
+            client.closeExpiredConnections();
+            assertEquals(0, client.getPoolStats(host).getAvailable());
+            assertTrue(client.getAsyncRoutePoolStats().values().stream().allMatch(stats -> stats.getAvailable() == 0));
+        }
+    }
+
+    @Test
+    public void testConnectionMaxIdleTime() throws Exception {
+        try (HttpClient client = HttpClient.builder().setConnectionMaxIdleTime(300).build()) {
+            HttpHost host = HttpHost.create(server.url(""));
+            assertEquals(200, client.get(server.url("/echo")).send().getStatusCode());
+            assertEquals(1, client.getPoolStats(host).getAvailable());
+            // 由定时任务关闭空闲连接
+            assertTrue(waitFor(() -> client.getPoolStats(host).getAvailable() == 0));
+        }
+    }
+
+    @Test
+    public void testKeepAliveHint() throws Exception {
+        server.handle("/keep-alive", exchange -> {
+            exchange.getResponseHeaders().add("Keep-Alive", "timeout=1");
+            LocalHttpServer.respond(exchange, 200, "ok".getBytes());
+        });
+        try (HttpClient client = HttpClient.builder().setConnectionMaxIdleTime(60_000).build()) {
+            HttpHost host = HttpHost.create(server.url(""));
+            assertEquals(200, client.get(server.url("/keep-alive")).send().getStatusCode());
+            client.closeExpiredConnections();
+            assertEquals(1, client.getPoolStats(host).getAvailable());
+            Thread.sleep(1100);
+            client.closeExpiredConnections();
+            assertEquals(0, client.getPoolStats(host).getAvailable());
+        }
+        // 自定义保持时间策略
+        try (HttpClient client = HttpClient.builder().setKeepAliveStrategy((response, context) -> 0).build()) {
+            HttpHost host = HttpHost.create(server.url(""));
+            assertEquals(200, client.get(server.url("/keep-alive")).send().getStatusCode());
+            Thread.sleep(1100);
+            client.closeExpiredConnections();
+            assertEquals(1, client.getPoolStats(host).getAvailable());
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+}
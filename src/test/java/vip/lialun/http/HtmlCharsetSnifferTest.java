@@ -0,0 +1,62 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HtmlCharsetSnifferTest extends BaseTest {
+
+    @Test
+    public void testMetaCharset() {
+        assertEquals(Charset.forName("GBK"), sniff("<html><head><meta charset=\"gbk\"></head></html>"));
+        assertEquals(Charset.forName("GBK"), sniff("<!DOCTYPE html><HTML><HEAD><META CHARSET=GBK></HEAD>"));
+        assertEquals(StandardCharsets.UTF_8, sniff("<meta charset='utf-8'>"));
+    }
+
+    @Test
+    public void testMetaHttpEquiv() {
+        assertEquals(Charset.forName("GB2312"),
+                sniff("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=gb2312\">"));
+        assertEquals(Charset.forName("Shift_JIS"),
+                sniff("<meta content='text/html;charset=\"shift_jis\"' http-equiv=content-type>"));
+        //缺少http-equiv时content中的charset无效
+        assertNull(sniff("<meta content=\"text/html; charset=gb2312\">"));
+        //content中已经得到编码时，charset属性不再覆盖
+        assertEquals(Charset.forName("GBK"),
+                sniff("<meta http-equiv=content-type content=\"text/html;charset=gbk\" charset=utf-8>"));
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(sniff("<!-- <meta charset=\"gbk\"> --><p>text</p>"));
+        assertNull(sniff("<div title='<meta charset=gbk>'></div>"));
+        assertNull(sniff("<meta charset=\"not-a-charset\">"));
+        assertNull(sniff(""));
+        assertNull(sniff("plain text"));
+        //UTF-16声明视为UTF-8
+        assertEquals(StandardCharsets.UTF_8, sniff("<meta charset=\"utf-16\">"));
+        assertEquals(Charset.forName("GBK"), sniff("<!--> --><meta charset=\"gbk\">"));
+    }
+
+    @Test
+    public void testPrescanLimit() {
+        String padding = "<p>" + "a".repeat(HtmlCharsetSniffer.PRESCAN_LIMIT) + "</p>";
+        assertNull(sniff(padding + "<meta charset=\"gbk\">"));
+    }
+
+    @Test
+    public void testExtractCharsetFromContent() {
+        assertEquals("utf-8", HtmlCharsetSniffer.extractCharsetFromContent("text/html; charset=utf-8"));
+        assertEquals("gbk", HtmlCharsetSniffer.extractCharsetFromContent("text/html; charset = gbk ; a=b"));
+        assertNull(HtmlCharsetSniffer.extractCharsetFromContent("text/html; charset=\"gbk"));
+        assertNull(HtmlCharsetSniffer.extractCharsetFromContent("text/html"));
+    }
+
+    private static Charset sniff(String html) {
+        return HtmlCharsetSniffer.sniff(html.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,113 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import vip.lialun.http.methods.HttpPost;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地服务端只支持HTTP/1.1，验证HTTP/2传输在协商失败时的行为与HTTP/1.1一致
+ */
+public class Http2TransportTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static final AtomicInteger unavailableCount = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        // 前两次返回503，之后返回200
+        server.handle("/unavailable", exchange -> LocalHttpServer.respond(exchange,
+                unavailableCount.incrementAndGet() <= 2 ? 503 : 200, "ok".getBytes(StandardCharsets.UTF_8)));
+        server.handle("/gzip", exchange -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                out.write("compressed".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            LocalHttpServer.respond(exchange, 200, buffer.toByteArray());
+        });
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static HttpClient createClient() {
+        return HttpClient.builder().setProtocol(HttpProtocol.HTTP_2).build();
+    }
+
+    @Test
+    public void testSend() throws IOException {
+        try (HttpClient client = createClient()) {
+            assertNotNull(client.getHttp2Transport());
+            HttpPost post = client.post(server.url("/echo"));
+            post.setEntity("hello http2");
+            HttpResponse response = post.send();
+            assertEquals(200, response.getStatusCode());
+            assertEquals("hello http2", response.getString());
+            assertEquals("POST", response.getFirstHeader("X-Method").getValue());
+            assertEquals(server.url("/echo"), response.getLastRequestUrl());
+
+            assertEquals("compressed", client.get(server.url("/gzip")).send().getString());
+
+            RouteMetrics.Snapshot snapshot = client.getRouteMetrics(HttpHost.create(server.url(""))).snapshot();
+            assertEquals(2, snapshot.getRequestCount());
+        }
+        try (HttpClient client = HttpClient.builder().build()) {
+            assertNull(client.getHttp2Transport());
+        }
+    }
+
+    @Test
+    public void testSendAsync() throws IOException {
+        try (HttpClient client = createClient()) {
+            List<CompletableFuture<HttpResponse>> futures = IntStream.range(0, 20)
+                    .mapToObj(i -> client.get(server.url("/echo")).addParam("i", String.valueOf(i)).sendAsync())
+                    .collect(Collectors.toList());
+            for (CompletableFuture<HttpResponse> future : futures) {
+                assertEquals(200, future.join().getStatusCode());
+            }
+        }
+    }
+
+    @Test
+    public void testRetry() throws IOException {
+        unavailableCount.set(0);
+        try (HttpClient client = createClient()) {
+            HttpResponse response = client.get(server.url("/unavailable"))
+                    .setRetryableStatus(statusCode -> statusCode >= 500).send(2, 10);
+            assertEquals(200, response.getStatusCode());
+            assertEquals(3, unavailableCount.get());
+        }
+    }
+
+    @Test
+    public void testExecuteTimeout() throws IOException {
+        try (HttpClient client = createClient()) {
+            HttpException e = assertThrows(HttpException.class, () -> client.get(server.url("/delay?ms=2000"))
+                    .setHttpExecuteTimeout(200).send());
+            assertTrue(e.getMessage().contains("http execute timeout"));
+            CompletionException ce = assertThrows(CompletionException.class, () -> client.get(server.url("/delay?ms=2000"))
+                    .setHttpExecuteTimeout(200).sendAsync().join());
+            assertInstanceOf(HttpException.class, ce.getCause());
+            assertTrue(ce.getCause().getMessage().contains("timeout"));
+            assertEquals(2, client.getHttpExecuteTimeoutAbortedCount());
+        }
+    }
+}
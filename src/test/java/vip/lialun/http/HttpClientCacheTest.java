@@ -0,0 +1,117 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpClientCacheTest extends BaseTest {
+    private static final String ETAG = "\"v1\"";
+    private static LocalHttpServer server;
+    private static final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        // 可缓存1秒，过期后通过ETag验证
+        server.handle("/cached", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=1");
+                LocalHttpServer.respond(exchange, 304, new byte[0]);
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=1");
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            LocalHttpServer.respond(exchange, 200, "cached body".getBytes(StandardCharsets.UTF_8));
+        });
+        server.handle("/nostore", exchange -> {
+            exchange.getResponseHeaders().add("Cache-Control", "no-store");
+            LocalHttpServer.respond(exchange, 200, "no store".getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testCacheAndRevalidate() throws Exception {
+        try (HttpClient client = HttpClient.builder().setCacheEnabled(true).build()) {
+            assertCacheFlow(client);
+        }
+    }
+
+    @Test
+    public void testDiskCache(@TempDir Path dir) throws Exception {
+        Path cacheDir = dir.resolve("cache");
+        try (HttpClient client = HttpClient.builder().setCacheEnabled(true)
+                .setCacheDirectory(cacheDir).build()) {
+            assertCacheFlow(client);
+            try (Stream<Path> files = Files.list(cacheDir)) {
+                assertTrue(files.findAny().isPresent());
+            }
+        }
+        // 关闭时删除缓存文件
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    @Test
+    public void testNoStore() throws IOException {
+        try (HttpClient client = HttpClient.builder().setCacheEnabled(true).build()) {
+            int before = server.getRequestCount();
+            for (int i = 0; i < 3; i++) {
+                assertEquals("no store", client.get(server.url("/nostore")).send().getString());
+            }
+            assertEquals(3, server.getRequestCount() - before);
+            assertEquals(0, client.getCacheHitCount());
+        }
+    }
+
+    @Test
+    public void testCacheDisabled() throws IOException {
+        try (HttpClient client = HttpClient.builder().build()) {
+            int before = server.getRequestCount();
+            client.get(server.url("/cached")).send();
+            client.get(server.url("/cached")).send();
+            assertEquals(2, server.getRequestCount() - before);
+            assertEquals(0, client.getCacheMissCount());
+        }
+    }
+
+    private void assertCacheFlow(HttpClient client) throws InterruptedException {
+        int before = server.getRequestCount();
+        int notModifiedBefore = notModifiedCount.get();
+        assertEquals("cached body", client.get(server.url("/cached")).send().getString());
+        assertEquals(1, client.getCacheMissCount());
+        // 新鲜期内直接由缓存返回
+        HttpResponse hit = client.get(server.url("/cached")).send();
+        assertEquals(200, hit.getStatusCode());
+        assertEquals("cached body", hit.getString());
+        assertEquals(1, client.getCacheHitCount());
+        assertEquals(1, server.getRequestCount() - before);
+        // 过期后使用If-None-Match验证，服务端返回304，仍然得到缓存的内容
+        Thread.sleep(2100);
+        HttpResponse validated = client.get(server.url("/cached")).send();
+        assertEquals(200, validated.getStatusCode());
+        assertEquals("cached body", validated.getString());
+        assertEquals(1, client.getCacheValidatedCount());
+        assertEquals(1, notModifiedCount.get() - notModifiedBefore);
+        assertEquals(2, server.getRequestCount() - before);
+    }
+}
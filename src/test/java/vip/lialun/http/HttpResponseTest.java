@@ -0,0 +1,122 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpResponseTest extends BaseTest {
+
+    @Test
+    public void testReadContentWithLength() throws IOException {
+        byte[] body = randomBytes(1000);
+        assertArrayEquals(body, HttpResponse.readContent(new ByteArrayInputStream(body), body.length, 1000));
+        //实际长度小于Content-Length
+        assertArrayEquals(body, HttpResponse.readContent(new ByteArrayInputStream(body), 2000, 5000));
+        //实际长度大于Content-Length
+        assertArrayEquals(body, HttpResponse.readContent(new ByteArrayInputStream(body), 10, 5000));
+        assertThrows(HttpException.class, () -> HttpResponse.readContent(new ByteArrayInputStream(body), 1001, 1000));
+    }
+
+    @Test
+    public void testReadContentChunked() throws IOException {
+        byte[] small = randomBytes(100);
+        assertArrayEquals(small, HttpResponse.readContent(new ByteArrayInputStream(small), -1, 1000));
+        //超过池化缓冲区大小
+        byte[] large = randomBytes(300 * 1024);
+        assertArrayEquals(large, HttpResponse.readContent(new ByteArrayInputStream(large), -1, large.length));
+        assertArrayEquals(new byte[0], HttpResponse.readContent(new ByteArrayInputStream(new byte[0]), -1, 1000));
+    }
+
+    @Test
+    public void testReadContentChunkedStopEarly() {
+        //无限长度的流，超过最大长度后应立即停止读取
+        CountingInputStream inputStream = new CountingInputStream();
+        assertThrows(HttpException.class, () -> HttpResponse.readContent(inputStream, -1, 100 * 1024));
+        assertTrue(inputStream.count <= 256 * 1024);
+    }
+
+    @Test
+    public void testHeaders() {
+        HttpResponse response = createResponse("{}", ContentType.APPLICATION_JSON);
+        assertEquals("1", response.getFirstHeader("x-multi").getValue());
+        assertEquals("2", response.getLastHeader("X-MULTI").getValue());
+        assertEquals(2, response.getHeaders("X-Multi").length);
+        assertEquals(0, response.getHeaders("X-None").length);
+        assertNull(response.getFirstHeader("X-None"));
+        assertTrue(response.containsHeader("x-single"));
+        assertFalse(response.containsHeader("X-None"));
+        assertEquals(0, response.getHeaders(null).length);
+        assertNull(response.getFirstHeader(null));
+        assertNull(response.getLastHeader(null));
+        assertFalse(response.containsHeader(null));
+        assertThrows(UnsupportedOperationException.class, () -> response.getAllHeaders().clear());
+    }
+
+    @Test
+    public void testLazyContent() {
+        HttpResponse response = createResponse("{\"a\":\"中文\"}", ContentType.APPLICATION_JSON);
+        assertSame(response.getString(), response.getString());
+        ObjectNode json = response.getJsonObject();
+        assertSame(json, response.getJsonObject());
+        assertSame(response.getBytes(), response.getBytes());
+        assertEquals("中文", json.get("a").asText());
+        assertEquals(response.getBytes().length, response.getContentSize());
+        //被共享时每次返回副本，修改不影响其他调用方
+        HttpResponse shared = createResponse("{\"a\":\"中文\"}", ContentType.APPLICATION_JSON);
+        shared.markShared();
+        shared.getJsonObject().put("a", "changed");
+        assertEquals("中文", shared.getJsonObject().get("a").asText());
+        shared.getBytes()[0] = 'x';
+        assertEquals('{', shared.getBytes()[0]);
+        assertThrows(HttpException.class, response::getJsonArray);
+
+        HttpResponse gbk = createResponse("[\"中文\"]", ContentType.create("application/json", "GBK"));
+        assertEquals("中文", gbk.getJsonArray().get(0).asText());
+        assertThrows(HttpException.class, createResponse("not json", ContentType.TEXT_PLAIN)::getJsonObject);
+    }
+
+    private static HttpResponse createResponse(String body, ContentType contentType) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("X-Multi", "1");
+        response.addHeader("X-Single", "s");
+        response.addHeader("x-multi", "2");
+        response.setEntity(new ByteArrayEntity(body.getBytes(contentType.getCharset() == null
+                ? StandardCharsets.UTF_8 : contentType.getCharset()), contentType));
+        return new HttpResponse(response, new BasicHttpContext(), new DefaultHttpRequestConfig());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class CountingInputStream extends InputStream {
+        long count;
+
+        @Override
+        public int read() {
+            count++;
+            return 1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            count += len;
+            return len;
+        }
+    }
+}
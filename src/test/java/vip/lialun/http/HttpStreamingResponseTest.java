@@ -0,0 +1,96 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpStreamingResponseTest extends BaseTest {
+    private static final int LARGE_CONTENT_LENGTH = 5_000_000;
+    private static LocalHttpServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        server.handle("/large", exchange -> {
+            byte[] body = new byte[LARGE_CONTENT_LENGTH];
+            Arrays.fill(body, (byte) 'a');
+            LocalHttpServer.respond(exchange, 200, body);
+        });
+        // 带有content的错误响应，content读取完之前占用连接
+        server.handle("/error", exchange -> LocalHttpServer.respond(exchange, 500, new byte[8192]));
+        client = HttpClient.builder().setMaxResponseContentLength(1000).build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testSendWithHandler() {
+        assertThrows(HttpException.class, () -> client.get(server.url("/large")).send());
+
+        long length = client.get(server.url("/large")).send(response -> {
+            assertEquals(200, response.getStatusCode());
+            assertEquals(LARGE_CONTENT_LENGTH, response.getContentLength());
+            long count = 0;
+            byte[] buffer = new byte[8192];
+            try (InputStream in = response.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    count += read;
+                }
+            }
+            return count;
+        });
+        assertEquals(LARGE_CONTENT_LENGTH, length);
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testCloseWithoutReading() {
+        try (HttpStreamingResponse response = client.get(server.url("/large")).sendStreaming()) {
+            assertEquals(1, client.getPoolStats().getLeased());
+            assertEquals('a', response.getInputStream().read());
+        } catch (IOException e) {
+            fail(e);
+        }
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testRetryReleasesConnection() {
+        try (HttpStreamingResponse response = client.get(server.url("/status?code=500"))
+                .setRetryTimes(2).sendStreaming()) {
+            assertEquals(500, response.getStatusCode());
+        }
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testRetryReleasesConnectionBeforeWaiting() throws Exception {
+        try (HttpClient retryClient = HttpClient.builder().setRetryInterval(500).build()) {
+            CompletableFuture<Integer> statusCode = CompletableFuture.supplyAsync(() -> {
+                try (HttpStreamingResponse response = retryClient.get(server.url("/error"))
+                        .setRetryTimes(1).sendStreaming()) {
+                    return response.getStatusCode();
+                }
+            });
+            // 等待重试期间不占用连接
+            Thread.sleep(250);
+            assertEquals(0, retryClient.getPoolStats().getLeased());
+            assertEquals(500, statusCode.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package vip.lialun.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用本地HTTP服务，监听127.0.0.1随机端口
+ */
+public class LocalHttpServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    public LocalHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        // 原样返回请求体，并通过响应头返回请求方法
+        handle("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("X-Method", exchange.getRequestMethod());
+            respond(exchange, 200, body);
+        });
+        // 延迟指定时间（query: ms）后返回
+        handle("/delay", exchange -> {
+            try {
+                Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery().replace("ms=", "")));
+            } catch (InterruptedException ignored) {
+            }
+            respond(exchange, 200, "delay".getBytes(StandardCharsets.UTF_8));
+        });
+        // 读取完请求体后返回指定状态码（query: code）
+        handle("/status", exchange -> {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            respond(exchange, Integer.parseInt(exchange.getRequestURI().getQuery().replace("code=", "")), new byte[0]);
+        });
+        server.start();
+    }
+
+    public LocalHttpServer handle(String path, HttpHandler handler) {
+        server.createContext(path, exchange -> {
+            requestCount.incrementAndGet();
+            try (InputStream ignored = exchange.getRequestBody()) {
+                handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        return this;
+    }
+
+    public static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,135 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest extends BaseTest {
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testBurst() {
+        RateLimiter rateLimiter = new RateLimiter("localhost", 10, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.tryAcquire());
+        }
+        assertFalse(rateLimiter.tryAcquire());
+        // 第4个许可需要等待约100ms
+        long wait = rateLimiter.reserve(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(50) && wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(4, rateLimiter.getAcquiredCount());
+        assertEquals(1, rateLimiter.getRejectedCount());
+        assertEquals(1, rateLimiter.getWaitedCount());
+    }
+
+    @Test
+    public void testAcquire() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter("localhost", 20, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquire();
+        }
+        // 第1个许可不需要等待，之后每个间隔50ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+        assertTrue(rateLimiter.getTotalWaitTime() >= 190);
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+        assertTrue(rateLimiter.tryAcquire(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter("localhost", 100, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger acquired = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500)) {
+                    if (rateLimiter.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        // 500ms内最多51个许可
+        assertTrue(acquired.get() <= 52, "acquired: " + acquired.get());
+        assertTrue(acquired.get() >= 40, "acquired: " + acquired.get());
+    }
+
+    @Test
+    public void testSetRate() {
+        RateLimiter rateLimiter = new RateLimiter("localhost", 1, 1);
+        assertTrue(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire());
+        rateLimiter.setRate(1000, 5);
+        assertEquals(5, rateLimiter.getBurst());
+        assertEquals(1000, rateLimiter.getPermitsPerSecond(), 1);
+    }
+
+    @Test
+    public void testHttpClient() throws IOException {
+        try (HttpClient client = HttpClient.builder().setRateLimitPerSecond(10).build()) {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(200, client.get(server.url("/status?code=200")).send().getStatusCode());
+            }
+            assertTrue(System.currentTimeMillis() - start >= 390);
+            RateLimiter rateLimiter = client.getRateLimiter("127.0.0.1");
+            assertEquals(5, rateLimiter.getAcquiredCount());
+            assertEquals(4, rateLimiter.getWaitedCount());
+
+            // 不等待时直接失败，不发送请求
+            int before = server.getRequestCount();
+            assertThrows(RateLimitExceededException.class, () -> client.get(server.url("/status?code=200"))
+                    .setRateLimitTimeout(0).send());
+            assertEquals(before, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testHttpClientAsync() throws IOException {
+        try (HttpClient client = HttpClient.builder().build()) {
+            assertNull(client.getRateLimiter("127.0.0.1"));
+            client.setRateLimit("127.0.0.1", 10, 1);
+            long start = System.currentTimeMillis();
+            List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(client.get(server.url("/status?code=200")).sendAsync());
+            }
+            for (CompletableFuture<HttpResponse> future : futures) {
+                assertEquals(200, future.join().getStatusCode());
+            }
+            assertTrue(System.currentTimeMillis() - start >= 390);
+
+            CompletionException exception = assertThrows(CompletionException.class, () -> client.get(server.url("/status?code=200"))
+                    .setRateLimitTimeout(0).sendAsync().join());
+            assertInstanceOf(RateLimitExceededException.class, exception.getCause());
+            assertEquals(1, client.getRateLimiters().size());
+        }
+    }
+}
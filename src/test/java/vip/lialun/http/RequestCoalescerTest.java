@@ -0,0 +1,168 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.methods.HttpGet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        client = HttpClient.builder().setRequestCoalescingEnabled(true).build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testExecute() throws InterruptedException {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        futures.add(CompletableFuture.supplyAsync(() -> coalescer.execute("key", () -> {
+            executed.incrementAndGet();
+            started.countDown();
+            await(release);
+            throw new HttpException("failure");
+        }), executor));
+        started.await();
+        for (int i = 0; i < 7; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> coalescer.execute("key", () -> {
+                executed.incrementAndGet();
+                return null;
+            }), executor));
+        }
+        while (coalescer.getCoalescedCount() < 7) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (CompletableFuture<HttpResponse> future : futures) {
+            Exception exception = assertThrows(Exception.class, future::join);
+            assertInstanceOf(HttpException.class, exception.getCause());
+        }
+        assertEquals(1, executed.get());
+        assertEquals(0, coalescer.getInFlightCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testShared() throws InterruptedException {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        // 没有等待者时不标记为共享
+        HttpResponse single = coalescer.execute("key", () -> client.get(server.url("/delay?ms=0")).send());
+        assertSame(single.getBytes(), single.getBytes());
+
+        HttpResponse response = client.get(server.url("/delay?ms=0")).send();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<HttpResponse> leader = CompletableFuture.supplyAsync(() -> coalescer.execute("key", () -> {
+            started.countDown();
+            await(release);
+            return response;
+        }));
+        started.await();
+        CompletableFuture<HttpResponse> follower = CompletableFuture.supplyAsync(() -> coalescer.execute("key", () -> null));
+        while (coalescer.getCoalescedCount() < 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        assertSame(leader.join(), follower.join());
+        assertNotSame(response.getBytes(), response.getBytes());
+    }
+
+    @Test
+    public void testCoalesceGet() throws InterruptedException {
+        int before = server.getRequestCount();
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> client.get(server.url("/delay?ms=300")).send(), executor));
+        }
+        for (CompletableFuture<HttpResponse> future : futures) {
+            assertEquals("delay", future.join().getString());
+        }
+        // 线程启动时间不同，可能产生少量未合并的请求
+        assertTrue(server.getRequestCount() - before < 5);
+        assertTrue(client.getRequestCoalescer().getCoalescedCount() > 0);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNotCoalesced() {
+        RequestCoalescer coalescer = client.getRequestCoalescer();
+        long executed = coalescer.getExecutedCount();
+        // 请求头不同
+        CompletableFuture<HttpResponse> a = CompletableFuture.supplyAsync(() ->
+                client.get(server.url("/delay?ms=200")).addHeader("X-Id", "a").send());
+        CompletableFuture<HttpResponse> b = CompletableFuture.supplyAsync(() ->
+                client.get(server.url("/delay?ms=200")).addHeader("X-Id", "b").send());
+        a.join();
+        b.join();
+        assertEquals(executed + 2, coalescer.getExecutedCount());
+        // 非幂等请求不合并
+        client.post(server.url("/echo")).setEntity("body").send();
+        assertEquals(executed + 2, coalescer.getExecutedCount());
+        // response解码方式不同
+        CompletableFuture<HttpResponse> utf8 = CompletableFuture.supplyAsync(() ->
+                client.get(server.url("/delay?ms=200")).send());
+        CompletableFuture<HttpResponse> gbk = CompletableFuture.supplyAsync(() ->
+                client.get(server.url("/delay?ms=200")).setResponseCharset(Charset.forName("GBK")).send());
+        utf8.join();
+        gbk.join();
+        assertEquals(executed + 4, coalescer.getExecutedCount());
+    }
+
+    @Test
+    public void testWaitTimeout() throws InterruptedException {
+        RequestCoalescer coalescer = client.getRequestCoalescer();
+        CompletableFuture<HttpResponse> leader = CompletableFuture.supplyAsync(() ->
+                client.get(server.url("/delay?ms=1000")).send());
+        long coalesced = coalescer.getCoalescedCount();
+        while (coalescer.getInFlightCount() == 0) {
+            Thread.sleep(5);
+        }
+        // 等待的请求受自身截止时间限制，不等待正在执行的请求完成
+        long start = System.nanoTime();
+        HttpGet follower = client.get(server.url("/delay?ms=1000"));
+        follower.setDeadline(Duration.ofMillis(200));
+        HttpException e = assertThrows(HttpException.class, follower::send);
+        assertTrue(e.getMessage().contains("timeout"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 800);
+        assertEquals(coalesced + 1, coalescer.getCoalescedCount());
+        assertEquals("delay", leader.join().getString());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
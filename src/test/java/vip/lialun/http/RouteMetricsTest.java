@@ -0,0 +1,98 @@
+package vip.lialun.http;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.methods.HttpPost;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteMetricsTest extends BaseTest {
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(500_500, snapshot.getMean(), 1);
+        // 相对误差不超过1/8
+        assertEquals(500_000, snapshot.getPercentile(0.5), 500_000 / 8.0);
+        assertEquals(990_000, snapshot.getPercentile(0.99), 990_000 / 8.0);
+        assertEquals(1_000_000, snapshot.getPercentile(1));
+        assertEquals(0, new LatencyHistogram().snapshot().getPercentile(0.99));
+    }
+
+    @Test
+    public void testBucketIndex() {
+        for (long micros : new long[]{0, 1, 7, 8, 9, 15, 16, 1000, 123_456_789L, 1L << 36}) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            assertTrue(micros < LatencyHistogram.bucketUpperBound(index));
+            assertTrue(index == 0 || micros >= LatencyHistogram.bucketUpperBound(index - 1));
+        }
+        // 超出范围的值计入最后一个桶
+        assertEquals(LatencyHistogram.bucketIndex(1L << 36), LatencyHistogram.bucketIndex(Long.MAX_VALUE) - 7);
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        try (HttpClient client = HttpClient.builder().build()) {
+            // 异步请求的统计在返回结果之后记录
+            assertEquals(200, client.get(server.url("/echo")).sendAsync().join().getStatusCode());
+            byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+            HttpPost post = client.post(server.url("/echo"));
+            post.setEntity(body);
+            assertEquals(200, post.send().getStatusCode());
+            // 5xx重试2次
+            assertEquals(503, client.get(server.url("/status?code=503")).send(2, 10).getStatusCode());
+            assertThrows(HttpException.class, () -> client.get(server.url("/delay?ms=1000")).setHttpExecuteTimeout(100).send());
+
+            Map<String, RouteMetrics.Snapshot> snapshots = client.getMetricsSnapshot();
+            assertEquals(1, snapshots.size());
+            RouteMetrics.Snapshot snapshot = client.getRouteMetrics(HttpHost.create(server.url(""))).snapshot();
+            assertEquals(snapshot.getRoute(), snapshots.keySet().iterator().next());
+            assertEquals(2, snapshot.getLatency().get("2xx").getCount());
+            assertEquals(3, snapshot.getLatency().get("5xx").getCount());
+            assertEquals(1, snapshot.getErrorCount());
+            assertEquals(6, snapshot.getRequestCount());
+            assertEquals(2, snapshot.getRetries());
+            assertEquals(1, snapshot.getTimeouts());
+            assertEquals(0, snapshot.getAborts());
+            assertEquals(body.length, snapshot.getBytesSent());
+            assertEquals(body.length, snapshot.getBytesReceived());
+            // 只统计同步请求获取连接的等待时间
+            assertEquals(5, snapshot.getLeaseWait().getCount());
+            assertTrue(snapshot.getLatency().get("error").getMax() >= TimeUnit.MILLISECONDS.toMicros(100));
+        }
+    }
+
+    @Test
+    public void testMetricsDisabled() throws IOException {
+        try (HttpClient client = HttpClient.builder().setMetricsEnabled(false).build()) {
+            assertEquals(200, client.get(server.url("/echo")).send().getStatusCode());
+            assertNull(client.getRouteMetrics(HttpHost.create(server.url(""))));
+            assertTrue(client.getMetricsSnapshot().isEmpty());
+        }
+    }
+}
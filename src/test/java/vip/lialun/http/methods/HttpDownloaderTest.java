@@ -0,0 +1,236 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpException;
+import vip.lialun.http.LocalHttpServer;
+import vip.lialun.http.RouteMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpDownloaderTest extends BaseTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final byte[] FILE = new byte[5 * 1024 * 1024 + 123];
+    private static final byte[] NEW_FILE = new byte[3 * 1024 * 1024 + 7];
+    private static final AtomicBoolean FAIL_NEXT_SEGMENT = new AtomicBoolean();
+    /**
+     * /versioned返回的文件版本
+     */
+    private static final AtomicInteger VERSION = new AtomicInteger(1);
+    /**
+     * 探测请求之后文件发生变化
+     */
+    private static final AtomicBoolean CHANGE_AFTER_PROBE = new AtomicBoolean();
+    /**
+     * 下一个分段返回与请求不一致的Content-Range
+     */
+    private static final AtomicBoolean SHIFT_NEXT_RANGE = new AtomicBoolean();
+    private static final AtomicInteger SEGMENT_FAILURES = new AtomicInteger();
+    private static final List<String> IF_RANGES = new CopyOnWriteArrayList<>();
+    /**
+     * 请求使用的客户端端口，用于统计连接数量
+     */
+    private static final Set<Integer> CLIENT_PORTS = ConcurrentHashMap.newKeySet();
+    private static LocalHttpServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        new Random(1).nextBytes(FILE);
+        new Random(2).nextBytes(NEW_FILE);
+        server = new LocalHttpServer();
+        server.handle("/file", HttpDownloaderTest::serveRange);
+        server.handle("/versioned", HttpDownloaderTest::serveVersioned);
+        server.handle("/segment-error", exchange -> {
+            Matcher matcher = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+            if (matcher.matches() && (matcher.group(2).equals("0") || SEGMENT_FAILURES.getAndDecrement() <= 0)) {
+                serveRange(exchange);
+            } else {
+                LocalHttpServer.respond(exchange, 503, new byte[0]);
+            }
+        });
+        server.handle("/no-range", exchange -> LocalHttpServer.respond(exchange, 200, FILE));
+        client = HttpClient.builder().setMaxResponseContentLength(1000).build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private static void serveRange(HttpExchange exchange) throws IOException {
+        CLIENT_PORTS.add(exchange.getRemoteAddress().getPort());
+        Matcher matcher = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+        if (!matcher.matches()) {
+            LocalHttpServer.respond(exchange, 200, FILE);
+            return;
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = Integer.parseInt(matcher.group(2));
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + FILE.length);
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        int length = end - start + 1;
+        exchange.sendResponseHeaders(206, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (start > 0 && FAIL_NEXT_SEGMENT.compareAndSet(true, false)) {
+                //只返回一半数据后断开连接
+                out.write(FILE, start, length / 2);
+                out.flush();
+                throw new IOException("broken");
+            }
+            out.write(FILE, start, length);
+        }
+    }
+
+    private static void serveVersioned(HttpExchange exchange) throws IOException {
+        int version = VERSION.get();
+        byte[] file = version == 1 ? FILE : NEW_FILE;
+        String etag = "\"v" + version + "\"";
+        exchange.getResponseHeaders().add("ETag", etag);
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange != null) {
+            IF_RANGES.add(ifRange);
+        }
+        Matcher matcher = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+        if (!matcher.matches() || ifRange != null && !ifRange.equals(etag)) {
+            LocalHttpServer.respond(exchange, 200, file);
+            return;
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = Integer.parseInt(matcher.group(2));
+        if (end == 0 && CHANGE_AFTER_PROBE.compareAndSet(true, false)) {
+            VERSION.incrementAndGet();
+        }
+        int shift = start > 0 && SHIFT_NEXT_RANGE.compareAndSet(true, false) ? 1 : 0;
+        exchange.getResponseHeaders().add("Content-Range",
+                "bytes " + (start + shift) + "-" + (end + shift) + "/" + file.length);
+        int length = end - start + 1;
+        exchange.sendResponseHeaders(206, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(file, start, length);
+        }
+    }
+
+    @Test
+    public void testDownload(@TempDir Path dir) throws IOException {
+        Path target = client.get(server.url("/file")).downloadTo(dir.resolve("single.bin"));
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+
+        target = client.get(server.url("/file")).downloadTo(dir.resolve("segments.bin"), 4);
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+        assertFalse(Files.exists(dir.resolve("segments.bin.part")));
+        assertFalse(Files.exists(dir.resolve("segments.bin.part.state")));
+
+        target = client.get(server.url("/no-range")).downloadTo(dir.resolve("no-range.bin"), 4);
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testResume(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("resume.bin");
+        FAIL_NEXT_SEGMENT.set(true);
+        assertThrows(HttpException.class, () -> client.get(server.url("/file")).downloadTo(target, 4));
+        assertTrue(Files.exists(dir.resolve("resume.bin.part.state")));
+
+        int before = server.getRequestCount();
+        client.get(server.url("/file")).downloadTo(target, 4);
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+        //探测请求 + 未完成的分段
+        assertEquals(2, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testSegmentRetry(@TempDir Path dir) throws IOException {
+        FAIL_NEXT_SEGMENT.set(true);
+        HttpGet request = client.get(server.url("/file"));
+        request.setRetryTimes(1);
+        Path target = request.downloadTo(dir.resolve("retry.bin"), 4);
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testClientPolicies(@TempDir Path dir) throws IOException {
+        try (HttpClient metricsClient = HttpClient.builder().setMetricsEnabled(true).build()) {
+            CLIENT_PORTS.clear();
+            metricsClient.get(server.url("/file")).downloadTo(dir.resolve("metrics.bin"));
+            //探测请求的content被读完，分段请求复用同一个连接
+            assertEquals(1, CLIENT_PORTS.size());
+            RouteMetrics.Snapshot snapshot = metricsClient.getRouteMetrics(HttpHost.create(server.url(""))).snapshot();
+            assertEquals(2, snapshot.getRequestCount());
+
+            HttpGet request = metricsClient.get(server.url("/file"));
+            request.setDeadline(Duration.ZERO);
+            HttpException e = assertThrows(HttpException.class, () -> request.downloadTo(dir.resolve("deadline.bin")));
+            assertTrue(e.getMessage().contains("deadline exceeded"));
+        }
+    }
+
+    @Test
+    public void testResourceChanged(@TempDir Path dir) throws IOException {
+        VERSION.set(1);
+        IF_RANGES.clear();
+        CHANGE_AFTER_PROBE.set(true);
+        Path target = client.get(server.url("/versioned")).downloadTo(dir.resolve("changed.bin"), 4);
+        //分段请求携带探测时的ETag，文件变化后服务端返回200，重新下载新文件
+        assertTrue(IF_RANGES.contains("\"v1\""));
+        assertTrue(IF_RANGES.contains("\"v2\""));
+        assertArrayEquals(NEW_FILE, Files.readAllBytes(target));
+        assertFalse(Files.exists(dir.resolve("changed.bin.part.state")));
+    }
+
+    @Test
+    public void testContentRangeMismatch(@TempDir Path dir) throws IOException {
+        VERSION.set(1);
+        SHIFT_NEXT_RANGE.set(true);
+        int before = server.getRequestCount();
+        Path target = client.get(server.url("/versioned")).downloadTo(dir.resolve("mismatch.bin"), 4);
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+        //两次探测请求 + 两次的分段请求
+        assertEquals(10, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testSegmentRetryPolicy(@TempDir Path dir) throws IOException {
+        AtomicInteger backoffs = new AtomicInteger();
+        SEGMENT_FAILURES.set(2);
+        HttpGet request = client.get(server.url("/segment-error"));
+        request.setRetryTimes(2);
+        request.setBackoffPolicy((retryTime, retryInterval, previousDelay) -> {
+            backoffs.incrementAndGet();
+            return 0;
+        });
+        Path target = request.downloadTo(dir.resolve("policy.bin"));
+        assertArrayEquals(FILE, Files.readAllBytes(target));
+        assertEquals(2, backoffs.get());
+
+        //重试次数用完后返回失败的状态码
+        SEGMENT_FAILURES.set(3);
+        HttpGet failure = client.get(server.url("/segment-error"));
+        failure.setRetryTimes(2);
+        failure.setRetryInterval(0);
+        HttpException e = assertThrows(HttpException.class, () -> failure.downloadTo(dir.resolve("failure.bin")));
+        assertTrue(e.getMessage().contains("status code: 503"));
+    }
+}
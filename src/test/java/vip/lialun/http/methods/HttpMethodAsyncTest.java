@@ -0,0 +1,76 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpException;
+import vip.lialun.http.HttpResponse;
+import vip.lialun.http.LocalHttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpMethodAsyncTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        client = HttpClient.builder().build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testSendAsync() {
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(client.post(server.url("/echo")).setEntity("body" + i).sendAsync());
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            HttpResponse response = futures.get(i).join();
+            assertEquals(200, response.getStatusCode());
+            assertEquals("body" + i, response.getString());
+            assertEquals("POST", response.getFirstHeader("X-Method").getValue());
+        }
+        assertNotNull(client.getAsyncPoolStats());
+    }
+
+    @Test
+    public void testSendAsyncRetry() {
+        int before = server.getRequestCount();
+        HttpResponse response = client.get(server.url("/status?code=503")).sendAsync(2, 10).join();
+        assertEquals(503, response.getStatusCode());
+        assertEquals(3, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testSendAsyncExecuteTimeout() {
+        CompletableFuture<HttpResponse> future = client.get(server.url("/delay?ms=2000"))
+                .setHttpExecuteTimeout(100).sendAsync();
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(HttpException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().contains("timeout"));
+    }
+
+    @Test
+    public void testSendExecuteTimeout() {
+        long aborted = client.getHttpExecuteTimeoutAbortedCount();
+        HttpException exception = assertThrows(HttpException.class, () -> client.get(server.url("/delay?ms=2000"))
+                .setHttpExecuteTimeout(100).send());
+        assertTrue(exception.getMessage().contains("timeout"));
+        assertEquals(aborted + 1, client.getHttpExecuteTimeoutAbortedCount());
+    }
+}
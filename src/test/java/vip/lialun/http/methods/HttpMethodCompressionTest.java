@@ -0,0 +1,217 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpProtocol;
+import vip.lialun.http.HttpResponse;
+import vip.lialun.http.LocalHttpServer;
+import vip.lialun.http.RateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpMethodCompressionTest extends BaseTest {
+    private static final String LARGE_BODY = "krupp,request,compression\n".repeat(200);
+
+    private static LocalHttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        // 解压请求体后原样返回，并通过响应头返回请求的Content-Encoding
+        server.handle("/gunzip", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            exchange.getResponseHeaders().add("X-Content-Encoding", String.valueOf(encoding));
+            LocalHttpServer.respond(exchange, 200, readBody(exchange, encoding));
+        });
+        // 不支持压缩的请求体
+        server.handle("/identity", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if (encoding != null) {
+                exchange.getRequestBody().readAllBytes();
+                LocalHttpServer.respond(exchange, 415, new byte[0]);
+            } else {
+                LocalHttpServer.respond(exchange, 200, exchange.getRequestBody().readAllBytes());
+            }
+        });
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    private static byte[] readBody(HttpExchange exchange, String encoding) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(encoding)) {
+            in = new GZIPInputStream(in);
+        }
+        return in.readAllBytes();
+    }
+
+    private static HttpClient createClient(HttpProtocol protocol) {
+        return HttpClient.builder().setProtocol(protocol)
+                .setRequestCompressionEnabled(true).setRequestCompressionThreshold(1024).build();
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        for (HttpProtocol protocol : HttpProtocol.values()) {
+            try (HttpClient client = createClient(protocol)) {
+                HttpPost small = client.post(server.url("/gunzip"));
+                small.setEntity("small");
+                HttpResponse response = small.send();
+                assertEquals("null", response.getFirstHeader("X-Content-Encoding").getValue());
+                assertEquals("small", response.getString());
+
+                HttpPost large = client.post(server.url("/gunzip"));
+                large.setEntity(LARGE_BODY);
+                response = large.send();
+                assertEquals("gzip", response.getFirstHeader("X-Content-Encoding").getValue(), protocol.name());
+                assertEquals(LARGE_BODY, response.getString());
+
+                HttpPost async = client.post(server.url("/gunzip"));
+                async.setEntity(LARGE_BODY);
+                response = async.sendAsync().join();
+                assertEquals("gzip", response.getFirstHeader("X-Content-Encoding").getValue(), protocol.name());
+                assertEquals(LARGE_BODY, response.getString());
+
+                // 长度未知的流总是压缩
+                HttpPost stream = client.post(server.url("/gunzip"));
+                stream.setEntity(new ByteArrayInputStream("stream".getBytes(StandardCharsets.UTF_8)));
+                response = stream.send();
+                assertEquals("gzip", response.getFirstHeader("X-Content-Encoding").getValue(), protocol.name());
+                assertEquals("stream", response.getString());
+            }
+        }
+    }
+
+    @Test
+    public void testJsonCompression() throws IOException {
+        List<String> large = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            large.add("item-" + i);
+        }
+        try (HttpClient client = createClient(HttpProtocol.HTTP_1_1)) {
+            // 按序列化后的长度判断是否压缩
+            HttpPost small = client.post(server.url("/gunzip"));
+            small.setJsonEntity(Map.of("name", "small"));
+            assertEquals("null", small.send().getFirstHeader("X-Content-Encoding").getValue());
+
+            HttpPost post = client.post(server.url("/gunzip"));
+            post.setJsonEntity(large);
+            HttpResponse response = post.send();
+            assertEquals("gzip", response.getFirstHeader("X-Content-Encoding").getValue());
+            assertEquals(large.size(), response.getJsonArray().size());
+        }
+        // 发送时序列化的JSON按缓存大小与阈值比较
+        try (HttpClient client = HttpClient.builder().setRequestCompressionEnabled(true)
+                .setRequestCompressionThreshold(AbstractHttpMethod.JSON_ENTITY_BUFFER_SIZE * 2).build()) {
+            HttpPost post = client.post(server.url("/gunzip"));
+            post.setJsonEntity(large);
+            assertEquals("null", post.send().getFirstHeader("X-Content-Encoding").getValue());
+        }
+    }
+
+    @Test
+    public void testCompressionDisabled() throws IOException {
+        try (HttpClient client = HttpClient.builder().build()) {
+            HttpPost post = client.post(server.url("/gunzip"));
+            post.setEntity(LARGE_BODY);
+            assertEquals("null", post.send().getFirstHeader("X-Content-Encoding").getValue());
+        }
+    }
+
+    @Test
+    public void testCompressionRejected() throws IOException {
+        HttpHost host = HttpHost.create(server.url(""));
+        try (HttpClient client = createClient(HttpProtocol.HTTP_1_1)) {
+            int requestCount = server.getRequestCount();
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            HttpResponse response = post.send();
+            assertEquals(200, response.getStatusCode());
+            assertEquals(LARGE_BODY, response.getString());
+            assertEquals(requestCount + 2, server.getRequestCount());
+            assertTrue(client.isRequestCompressionRejected(host));
+
+            // 之后不再压缩
+            post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            assertEquals(200, post.send().getStatusCode());
+            assertEquals(requestCount + 3, server.getRequestCount());
+        }
+        try (HttpClient client = createClient(HttpProtocol.HTTP_1_1)) {
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            HttpResponse response = post.sendAsync().join();
+            assertEquals(200, response.getStatusCode());
+            assertEquals(LARGE_BODY, response.getString());
+            assertTrue(client.isRequestCompressionRejected(host));
+
+            // route已拒绝压缩，流不压缩发送
+            post = client.post(server.url("/identity"));
+            post.setEntity(new ByteArrayInputStream(LARGE_BODY.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(200, post.send().getStatusCode());
+        }
+        // 流只能发送一次，不再重新发送，返回415
+        try (HttpClient client = createClient(HttpProtocol.HTTP_1_1)) {
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(new ByteArrayInputStream(LARGE_BODY.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(415, post.send().getStatusCode());
+            assertTrue(client.isRequestCompressionRejected(host));
+        }
+    }
+
+    @Test
+    public void testCompressionRejectedPolicies() throws IOException {
+        HttpHost host = HttpHost.create(server.url(""));
+        // 不压缩再发送一次与正常请求一样获取限流许可
+        try (HttpClient client = HttpClient.builder().setRequestCompressionEnabled(true).setRequestCompressionThreshold(1024)
+                .setRateLimitPerSecond(1000).setRateLimitBurst(10).build()) {
+            RateLimiter rateLimiter = client.getRateLimiter(host.getHostName());
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            assertEquals(200, post.send().getStatusCode());
+            assertEquals(2, rateLimiter.getAcquiredCount());
+        }
+        try (HttpClient client = HttpClient.builder().setRequestCompressionEnabled(true).setRequestCompressionThreshold(1024)
+                .setRateLimitPerSecond(1000).setRateLimitBurst(10).build()) {
+            RateLimiter rateLimiter = client.getRateLimiter(host.getHostName());
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            assertEquals(200, post.sendAsync().join().getStatusCode());
+            assertEquals(2, rateLimiter.getAcquiredCount());
+        }
+        // 重试预算不足时不再发送，返回415
+        try (HttpClient client = HttpClient.builder().setRequestCompressionEnabled(true).setRequestCompressionThreshold(1024)
+                .setRetryBudgetRatio(0.1).setRetryBudgetMinPerSecond(0).build()) {
+            int requestCount = server.getRequestCount();
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            assertEquals(415, post.send(0).getStatusCode());
+            assertEquals(requestCount + 1, server.getRequestCount());
+            assertEquals(1, client.getRetryBudget().getRejectedCount());
+        }
+        try (HttpClient client = HttpClient.builder().setRequestCompressionEnabled(true).setRequestCompressionThreshold(1024)
+                .setRetryBudgetRatio(0.1).setRetryBudgetMinPerSecond(0).build()) {
+            HttpPost post = client.post(server.url("/identity"));
+            post.setEntity(LARGE_BODY);
+            assertEquals(415, post.sendAsync(0, 0).join().getStatusCode());
+            assertEquals(1, client.getRetryBudget().getRejectedCount());
+        }
+    }
+}
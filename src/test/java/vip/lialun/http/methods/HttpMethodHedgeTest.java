@@ -0,0 +1,162 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.CircuitBreaker;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpResponse;
+import vip.lialun.http.LatencyTracker;
+import vip.lialun.http.LocalHttpServer;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpMethodHedgeTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static final AtomicInteger slowCount = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        // 前slowCount个请求延迟2秒返回，之后的请求立即返回
+        server.handle("/hedge", exchange -> {
+            if (slowCount.getAndDecrement() > 0) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException ignored) {
+                }
+                LocalHttpServer.respond(exchange, 200, "slow".getBytes(StandardCharsets.UTF_8));
+            } else {
+                LocalHttpServer.respond(exchange, 200, "fast".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testHedge() throws IOException {
+        try (HttpClient client = HttpClient.builder().setHedgeBudgetRatio(2).build()) {
+            slowCount.set(1);
+            long start = System.currentTimeMillis();
+            HttpResponse response = client.get(server.url("/hedge")).setHedgingEnabled(true).setHedgeDelay(100).send();
+            assertEquals("fast", response.getString());
+            assertTrue(System.currentTimeMillis() - start < 1500);
+            assertEquals(1, client.getHedgeCount());
+            assertEquals(1, client.getHedgeWinCount());
+
+            // 原请求在对冲等待时间内返回，不发送对冲请求
+            int before = server.getRequestCount();
+            assertEquals("fast", client.get(server.url("/hedge")).setHedgingEnabled(true).setHedgeDelay(500).send().getString());
+            assertEquals(1, server.getRequestCount() - before);
+            assertEquals(1, client.getHedgeCount());
+        }
+    }
+
+    @Test
+    public void testHedgeDisabled() throws IOException {
+        try (HttpClient client = HttpClient.builder().setHedgeBudgetRatio(2).build()) {
+            slowCount.set(1);
+            // 未开启对冲，或者非幂等请求
+            assertEquals("slow", client.get(server.url("/hedge")).setHedgeDelay(100).send().getString());
+            slowCount.set(1);
+            HttpPost post = client.post(server.url("/hedge"));
+            post.setHedgingEnabled(true);
+            post.setHedgeDelay(100);
+            assertEquals("slow", post.send().getString());
+            assertEquals(0, client.getHedgeCount());
+        }
+    }
+
+    @Test
+    public void testHedgeBudget() throws IOException {
+        try (HttpClient client = HttpClient.builder().setHedgeBudgetRatio(0.1).build()) {
+            // 预算不足时不对冲
+            slowCount.set(1);
+            assertEquals("slow", client.get(server.url("/hedge")).setHedgingEnabled(true).setHedgeDelay(100).send().getString());
+            assertEquals(0, client.getHedgeCount());
+            assertEquals(1, client.getHedgeBudget().getRejectedCount());
+        }
+    }
+
+    @Test
+    public void testHedgeRateLimited() throws IOException {
+        try (HttpClient client = HttpClient.builder().setHedgeBudgetRatio(2)
+                .setRateLimitPerSecond(0.1).setRateLimitBurst(1).build()) {
+            // 原请求占用了唯一的限流许可，不发送对冲
+            slowCount.set(1);
+            assertEquals("slow", client.get(server.url("/hedge")).setHedgingEnabled(true).setHedgeDelay(100).send(0).getString());
+            assertEquals(0, client.getHedgeCount());
+        }
+    }
+
+    @Test
+    public void testHedgeByPercentile() throws IOException {
+        try (HttpClient client = HttpClient.builder().setHedgeBudgetRatio(2).build()) {
+            slowCount.set(0);
+            // 样本不足时不对冲
+            for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+                assertEquals("fast", client.get(server.url("/hedge")).setHedgingEnabled(true).send().getString());
+            }
+            assertEquals(0, client.getHedgeCount());
+            LatencyTracker tracker = client.getLatencyTracker(HttpHost.create(server.url("")));
+            assertEquals(LatencyTracker.MIN_SAMPLES, tracker.getCount());
+            assertTrue(tracker.getPercentile(0.95) < TimeUnit.SECONDS.toNanos(1));
+
+            slowCount.set(1);
+            long start = System.currentTimeMillis();
+            assertEquals("fast", client.get(server.url("/hedge")).setHedgingEnabled(true).send().getString());
+            assertTrue(System.currentTimeMillis() - start < 1500);
+            assertEquals(1, client.getHedgeWinCount());
+        }
+    }
+
+    @Test
+    public void testHedgeHalfOpen() throws Exception {
+        try (HttpClient client = HttpClient.builder()
+                .setHedgeBudgetRatio(2)
+                .setCircuitBreakerEnabled(true)
+                .setCircuitBreakerMinimumCalls(1)
+                .setCircuitBreakerOpenDuration(100)
+                .setCircuitBreakerHalfOpenCalls(2)
+                .build()) {
+            assertEquals(503, client.get(server.url("/status?code=503")).send(0).getStatusCode());
+            CircuitBreaker circuitBreaker = client.getCircuitBreaker(HttpHost.create(server.url("")));
+            assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+            Thread.sleep(150);
+
+            // 原请求和对冲请求各占一个试探名额，被中断的原请求归还名额
+            slowCount.set(1);
+            assertEquals("fast", client.get(server.url("/hedge")).setHedgingEnabled(true).setHedgeDelay(100).send(0).getString());
+            assertEquals(1, client.getHedgeWinCount());
+            assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+            assertEquals("fast", client.get(server.url("/hedge")).send(0).getString());
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        }
+    }
+
+    @Test
+    public void testLatencyTracker() {
+        LatencyTracker tracker = new LatencyTracker(100);
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(i);
+        }
+        assertEquals(95, tracker.getPercentile(0.95));
+        assertEquals(50, tracker.getPercentile(0.5));
+        // 超过样本数量后覆盖最早的样本
+        for (int i = 0; i < 100; i++) {
+            tracker.record(1000);
+        }
+        assertEquals(1000, tracker.getPercentile(0.5));
+    }
+}
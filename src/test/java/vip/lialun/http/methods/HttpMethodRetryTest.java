@@ -0,0 +1,224 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.BackoffPolicy;
+import vip.lialun.http.DefaultHttpRequestConfig;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpException;
+import vip.lialun.http.HttpResponse;
+import vip.lialun.http.LocalHttpServer;
+import vip.lialun.http.RetryBudget;
+import org.apache.http.ContentTooLongException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.RedirectException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpMethodRetryTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static HttpClient client;
+    private static final AtomicInteger retryAfterCount = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        // 第一次返回503及Retry-After，之后返回200
+        server.handle("/retry-after", exchange -> {
+            String seconds = exchange.getRequestURI().getQuery().substring("s=".length());
+            if (retryAfterCount.getAndIncrement() % 2 == 0) {
+                exchange.getResponseHeaders().add("Retry-After", seconds);
+                LocalHttpServer.respond(exchange, 503, new byte[0]);
+            } else {
+                LocalHttpServer.respond(exchange, 200, "ok".getBytes());
+            }
+        });
+        client = HttpClient.builder().build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testRetryAfter() {
+        retryAfterCount.set(0);
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.get(server.url("/retry-after?s=1")).send(2, 10);
+        assertEquals(200, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    @Test
+    public void testRetryAfterTooLong() {
+        retryAfterCount.set(0);
+        int before = server.getRequestCount();
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.get(server.url("/retry-after?s=120")).send(2, 10);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, server.getRequestCount() - before);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testRetryAfterIgnored() {
+        retryAfterCount.set(0);
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.get(server.url("/retry-after?s=120"))
+                .setRespectRetryAfter(false).send(2, 10);
+        assertEquals(200, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testRetryAfterAsync() {
+        retryAfterCount.set(0);
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.get(server.url("/retry-after?s=1")).sendAsync(2, 10).join();
+        assertEquals(200, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    @Test
+    public void testRetryableStatus() {
+        int before = server.getRequestCount();
+        HttpResponse response = client.get(server.url("/status?code=404"))
+                .setRetryableStatus(statusCode -> statusCode >= 500).send(2, 10);
+        assertEquals(404, response.getStatusCode());
+        assertEquals(1, server.getRequestCount() - before);
+
+        before = server.getRequestCount();
+        response = client.get(server.url("/status?code=503"))
+                .setRetryableStatus(statusCode -> statusCode >= 500).sendAsync(2, 10).join();
+        assertEquals(503, response.getStatusCode());
+        assertEquals(3, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testRetryableException() {
+        AtomicInteger tested = new AtomicInteger();
+        // 未监听的端口，连接失败
+        assertThrows(HttpException.class, () -> client.get("http://127.0.0.1:1/")
+                .setRetryableException(e -> {
+                    tested.incrementAndGet();
+                    return false;
+                }).send(2, 10));
+        assertEquals(1, tested.get());
+    }
+
+    @Test
+    public void testDefaultRetryableException() {
+        Predicate<Exception> retryable = new DefaultHttpRequestConfig().getRetryableException();
+        assertTrue(retryable.test(new UnknownHostException()));
+        assertTrue(retryable.test(new SocketTimeoutException()));
+        assertTrue(retryable.test(new ConnectException()));
+        assertTrue(retryable.test(new ConnectTimeoutException()));
+        assertTrue(retryable.test(new SSLHandshakeException("handshake")));
+        assertTrue(retryable.test(new NoHttpResponseException("no response")));
+        // 可能已经发送了部分请求体或者重试也不会成功的异常不重试
+        assertFalse(retryable.test(new SocketException("Connection reset")));
+        assertFalse(retryable.test(new ContentTooLongException("too long")));
+        assertFalse(retryable.test(new ClientProtocolException()));
+        assertFalse(retryable.test(new RedirectException("redirect")));
+        assertFalse(retryable.test(new IOException()));
+        assertFalse(retryable.test(new HttpException("failure")));
+    }
+
+    @Test
+    public void testBackoffPolicy() {
+        int before = server.getRequestCount();
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.get(server.url("/status?code=503"))
+                .setBackoffPolicy(BackoffPolicy.exponential(1000)).send(3, 100);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(4, server.getRequestCount() - before);
+        // 100 + 200 + 400
+        assertTrue(System.currentTimeMillis() - start >= 650);
+
+        assertEquals(100, BackoffPolicy.exponential(1000).nextDelay(1, 100, 0));
+        assertEquals(800, BackoffPolicy.exponential(1000).nextDelay(4, 100, 400));
+        assertEquals(1000, BackoffPolicy.exponential(1000).nextDelay(40, 100, 1000));
+        for (int i = 0; i < 100; i++) {
+            long delay = BackoffPolicy.decorrelatedJitter(1000).nextDelay(2, 100, 200);
+            assertTrue(delay >= 100 && delay <= 600);
+        }
+    }
+
+    @Test
+    public void testRetryBudget() throws IOException {
+        try (HttpClient budgetClient = HttpClient.builder().setRetryBudgetRatio(0.1).setRetryBudgetMinPerSecond(1).build()) {
+            RetryBudget budget = budgetClient.getRetryBudget();
+            assertNotNull(budget);
+            int before = server.getRequestCount();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(503, budgetClient.get(server.url("/status?code=503")).send(2, 0).getStatusCode());
+            }
+            // 初始只有1个令牌，加上5次请求存入的0.5个令牌，最多重试1次
+            assertEquals(6, server.getRequestCount() - before);
+            assertEquals(1, budget.getAcquiredCount());
+            assertTrue(budget.getRejectedCount() >= 4);
+        }
+        assertNull(client.getRetryBudget());
+    }
+
+    @Test
+    public void testDeadline() {
+        int before = server.getRequestCount();
+        long start = System.currentTimeMillis();
+        // 每次请求都会超时，重试不会超过截止时间
+        assertThrows(HttpException.class, () -> client.get(server.url("/delay?ms=2000"))
+                .setDeadline(Duration.ofMillis(500)).send(3, 10));
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(1, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testDeadlineStopsRetry() {
+        int before = server.getRequestCount();
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.get(server.url("/status?code=503"))
+                .setDeadline(Duration.ofMillis(1000)).send(10, 300);
+        assertEquals(503, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertTrue(server.getRequestCount() - before <= 4);
+    }
+
+    @Test
+    public void testDeadlineAsync() {
+        long start = System.currentTimeMillis();
+        CompletionException exception = assertThrows(CompletionException.class, () -> client.get(server.url("/delay?ms=2000"))
+                .setDeadline(Duration.ofMillis(500)).sendAsync(3, 10).join());
+        assertInstanceOf(HttpException.class, exception.getCause());
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(3000, AbstractHttpRequest.parseRetryAfter("3"));
+        assertEquals(-1, AbstractHttpRequest.parseRetryAfter("-3"));
+        assertEquals(-1, AbstractHttpRequest.parseRetryAfter("soon"));
+        assertEquals(-1, AbstractHttpRequest.parseRetryAfter(null));
+        long delay = AbstractHttpRequest.parseRetryAfter(DateUtils.formatDate(new Date(System.currentTimeMillis() + 10_000)));
+        assertTrue(delay > 8000 && delay <= 10_000);
+        assertEquals(0, AbstractHttpRequest.parseRetryAfter(DateUtils.formatDate(new Date(0))));
+    }
+}
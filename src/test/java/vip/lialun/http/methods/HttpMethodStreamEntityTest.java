@@ -0,0 +1,157 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpResponse;
+import vip.lialun.http.LocalHttpServer;
+import vip.lialun.json.JacksonHelper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.http.entity.ContentType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpMethodStreamEntityTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static HttpClient client;
+    private static final List<String> RECEIVED_BODIES = new CopyOnWriteArrayList<>();
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        //记录请求体并返回503
+        server.handle("/record", exchange -> {
+            RECEIVED_BODIES.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            LocalHttpServer.respond(exchange, 503, new byte[0]);
+        });
+        //返回请求的Content-Length
+        server.handle("/length", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            String length = String.valueOf(exchange.getRequestHeaders().getFirst("Content-Length"));
+            LocalHttpServer.respond(exchange, 200, length.getBytes(StandardCharsets.UTF_8));
+        });
+        client = HttpClient.builder().build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testInputStreamEntity() {
+        byte[] body = "input stream body".getBytes(StandardCharsets.UTF_8);
+        HttpResponse response = client.post(server.url("/echo"))
+                .setEntity(new ByteArrayInputStream(body))
+                .send();
+        assertEquals(200, response.getStatusCode());
+        assertEquals("input stream body", response.getString());
+    }
+
+    @Test
+    public void testInputStreamEntityNotRetried() {
+        int before = server.getRequestCount();
+        HttpResponse response = client.post(server.url("/status?code=503"))
+                .setEntity(new ByteArrayInputStream(new byte[16]), 16)
+                .send(3, 10);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testPathEntity(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("body.txt");
+        Files.write(file, "file body".getBytes(StandardCharsets.UTF_8));
+        HttpResponse response = client.put(server.url("/echo")).setEntity(file).send();
+        assertEquals("file body", response.getString());
+    }
+
+    @Test
+    public void testWriterEntity() {
+        HttpResponse response = client.post(server.url("/echo"))
+                .setEntity(out -> {
+                    for (int i = 0; i < 3; i++) {
+                        out.write(("line" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                })
+                .send();
+        assertEquals("line0\nline1\nline2\n", response.getString());
+    }
+
+    @Test
+    public void testJsonEntity() throws IOException {
+        //小对象缓存为byte[]
+        Map<String, Object> small = Map.of("name", "中文", "count", 1);
+        HttpPost post = client.post(server.url("/echo"));
+        post.setJsonEntity(small);
+        assertTrue(post.isRetryable());
+        assertEquals(small, post.send(new TypeReference<Map<String, Object>>() {
+        }));
+        //使用Content-Length发送
+        String json = JacksonHelper.getDefaultMapper().writeValueAsString(small);
+        assertEquals(String.valueOf(json.getBytes(StandardCharsets.UTF_8).length),
+                client.post(server.url("/length")).setJsonEntity(small).send().getString());
+        //设置时缓存序列化结果，重试时发送相同的内容
+        Map<String, Object> mutable = new HashMap<>(small);
+        RECEIVED_BODIES.clear();
+        post = client.post(server.url("/record"));
+        post.setJsonEntity(mutable);
+        post.setRetryableStatus(statusCode -> {
+            mutable.put("count", 2);
+            return statusCode >= 500;
+        });
+        assertEquals(503, post.send(1, 10).getStatusCode());
+        assertEquals(2, RECEIVED_BODIES.size());
+        assertEquals(RECEIVED_BODIES.get(0), RECEIVED_BODIES.get(1));
+        //已经序列化的JSON直接发送
+        assertEquals("{\"a\":1}", client.post(server.url("/echo")).setJsonEntity("{\"a\":1}").send().getString());
+    }
+
+    @Test
+    public void testLargeJsonEntity() throws IOException {
+        List<String> large = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            large.add("item-" + i);
+        }
+        HttpPost post = client.post(server.url("/echo"));
+        post.setJsonEntity(large);
+        //超过缓存大小时在发送时序列化对象当前的内容
+        large.add("added-after-set");
+        //流式请求体每次发送时重新序列化，仍然可以重试
+        assertTrue(post.isRetryable());
+        assertEquals(large, post.send(new TypeReference<List<String>>() {
+        }));
+        assertEquals("null", client.post(server.url("/length")).setJsonEntity(large).send().getString());
+        //异步client通过InputStream读取请求体
+        assertEquals(JacksonHelper.getDefaultMapper().writeValueAsString(large),
+                client.post(server.url("/echo")).setJsonEntity(large).sendAsync().join().getString());
+        int before = server.getRequestCount();
+        HttpResponse response = client.post(server.url("/status?code=503")).setJsonEntity(large).send(2, 10);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(3, server.getRequestCount() - before);
+    }
+
+    @Test
+    public void testJsonEntityCharset() {
+        HttpResponse response = client.post(server.url("/echo"))
+                .setContentType(ContentType.create("application/json", "GBK"))
+                .setJsonEntity(Map.of("name", "中文"))
+                .send();
+        assertEquals("{\"name\":\"中文\"}", response.getString("GBK"));
+    }
+}
@@ -0,0 +1,75 @@
+package vip.lialun.http.methods;
+
+import vip.lialun.BaseTest;
+import vip.lialun.http.HttpClient;
+import vip.lialun.http.HttpException;
+import vip.lialun.http.HttpResponse;
+import vip.lialun.http.LocalHttpServer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpMethodTypedResponseTest extends BaseTest {
+    private static LocalHttpServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = new LocalHttpServer();
+        client = HttpClient.builder().build();
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testSendClass() {
+        Item item = client.post(server.url("/echo")).setEntity("{\"name\":\"中文\",\"count\":3}").send(Item.class);
+        assertEquals("中文", item.name);
+        assertEquals(3, item.count);
+    }
+
+    @Test
+    public void testSendTypeReference() {
+        List<Map<String, Integer>> list = client.post(server.url("/echo")).setEntity("[{\"a\":1},{\"b\":2}]")
+                .send(new TypeReference<List<Map<String, Integer>>>() {
+                });
+        assertEquals(2, list.size());
+        assertEquals(2, list.get(1).get("b"));
+    }
+
+    @Test
+    public void testSendEmptyOrFailure() {
+        assertNull(client.post(server.url("/echo")).send(Item.class));
+        HttpException exception = assertThrows(HttpException.class,
+                () -> client.get(server.url("/status?code=404")).send(Item.class));
+        assertTrue(exception.getMessage().contains("404"));
+        assertThrows(HttpException.class, () -> client.post(server.url("/echo")).setEntity("not json").send(Item.class));
+    }
+
+    @Test
+    public void testResponseAs() {
+        HttpResponse response = client.post(server.url("/echo")).setEntity("{\"name\":\"a\",\"count\":1}").send();
+        assertEquals("a", response.as(Item.class).name);
+        assertEquals(1, response.as(new TypeReference<Map<String, Object>>() {
+        }).get("count"));
+        //已经解析过JsonNode时直接从JsonNode转换
+        response.getJsonObject();
+        assertEquals(1, response.as(Item.class).count);
+    }
+
+    public static class Item {
+        public String name;
+        public int count;
+    }
+}
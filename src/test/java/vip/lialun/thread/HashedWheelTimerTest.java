@@ -0,0 +1,101 @@
+package vip.lialun.thread;
+
+import vip.lialun.BaseTest;
+import com.google.common.base.Stopwatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedWheelTimerTest extends BaseTest {
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    public void before() {
+        timer = new HashedWheelTimer("HashedWheelTimerTest", 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    public void after() {
+        timer.stop();
+    }
+
+    @Test
+    public void expire() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(latch::countDown, 200, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 190);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(1, timer.getExpiredCount());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void expireAfterMultipleRounds() throws InterruptedException {
+        // 8个tick一轮，共80ms，延迟超过一轮
+        CountDownLatch latch = new CountDownLatch(1);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        timer.newTimeout(latch::countDown, 300, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 290);
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(counter::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+            assertTrue(timeout.cancel());
+            assertTrue(timeout.isCancelled());
+        }
+        Thread.sleep(200);
+        assertEquals(0, counter.get());
+        assertEquals(1000, timer.getScheduledCount());
+        assertEquals(1000, timer.getCancelledCount());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void concurrentStart() throws InterruptedException {
+        // 多个线程同时启动定时器，所有任务都按照已初始化的startTime计算到期时间
+        for (int round = 0; round < 20; round++) {
+            HashedWheelTimer wheelTimer = new HashedWheelTimer("HashedWheelTimerTest", 10, TimeUnit.MILLISECONDS, 8);
+            try {
+                int threads = 8;
+                CountDownLatch ready = new CountDownLatch(1);
+                CountDownLatch expired = new CountDownLatch(threads);
+                for (int i = 0; i < threads; i++) {
+                    new Thread(() -> {
+                        try {
+                            ready.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        wheelTimer.newTimeout(expired::countDown, 20, TimeUnit.MILLISECONDS);
+                    }).start();
+                }
+                ready.countDown();
+                assertTrue(expired.await(2, TimeUnit.SECONDS));
+            } finally {
+                wheelTimer.stop();
+            }
+        }
+    }
+
+    @Test
+    public void stop() {
+        timer.newTimeout(() -> {
+        }, 1, TimeUnit.SECONDS);
+        timer.stop();
+        assertThrows(IllegalStateException.class, () -> timer.newTimeout(() -> {
+        }, 1, TimeUnit.SECONDS));
+    }
+}